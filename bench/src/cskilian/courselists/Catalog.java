@@ -0,0 +1,66 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+// Catalog makes made-up courses for the benchmarks. Every subject has a number of lectures, and every lecture has the
+// same number of tutorials, spread over the week so that some of them conflict. The same seed always makes the same
+// catalog, so the numbers of 2 runs can be compared
+public class Catalog {
+    public static final String TERM = "Fall";
+    private static final long SEED = 2401;
+    /**
+     * makes new courses, the same arguments always make equal courses
+     * @param subjects int of the number of subjects (root categories)
+     * @param sections int of the number of sections in every category
+     * @return List<Course> of the lectures followed by the tutorials
+     */
+    public static List<Course> make(int subjects, int sections) {
+        Random random = new Random(SEED);
+        List<Course> lectures = new ArrayList<Course>();
+        List<Course> tutorials = new ArrayList<Course>();
+        int crn = 10000;
+        for (int s = 0; s < subjects; s++) {
+            String subject = "SUBJ" + (1000 + s);
+            for (int l = 0; l < sections; l++) {
+                char letter = (char) ('A' + l);
+                // lectures are 1:25 twice a week, on Mon/Wed or Tue/Thu
+                int first = random.nextInt(2);
+                int hour = 8 + random.nextInt(12);
+                Set<Block> schedule = new LinkedHashSet<Block>();
+                schedule.add(new Block(Day.values()[first], TERM, hour * 100 + 35, (hour + 1) * 100 + 55));
+                schedule.add(new Block(Day.values()[first + 2], TERM, hour * 100 + 35, (hour + 1) * 100 + 55));
+                lectures.add(new Course(crn++, subject, "" + letter, "Lecture", "", 1 + random.nextInt(10), schedule));
+                for (int t = 1; t <= sections; t++) {
+                    // tutorials are 1:25 once a week, on any weekday
+                    int day = random.nextInt(5);
+                    int start = 8 + random.nextInt(12);
+                    Set<Block> slot = new LinkedHashSet<Block>();
+                    slot.add(new Block(Day.values()[day], TERM, start * 100 + 35, (start + 1) * 100 + 55));
+                    tutorials.add(new Course(crn++, subject, "" + letter + t, "Tutorial", "", 1 + random.nextInt(10), slot));
+                }
+            }
+        }
+        List<Course> courses = new ArrayList<Course>(lectures);
+        courses.addAll(tutorials);
+        return courses;
+    }
+    /**
+     * makes a parser with the Carleton section rules that doesn't fetch anything, so no UI or network is needed
+     * @return Parser for the course tree
+     */
+    public static Parser parser() {
+        return new Parser() {
+            @Override
+            public boolean subordinate(Course course, Course node) {
+                return CarletonParser.sectionSubordinate(course, node);
+            }
+            @Override
+            public Collection<Course> makeCourses(String subject, String number, String term) {
+                return new ArrayList<Course>();
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// ComparatorBenchmark times sorting course sets with the comparators against scoring them once and sorting the scores
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparatorBenchmark {
+    @Param({"3", "5"})
+    public int courses;
+    @Param({"2", "4"})
+    public int sections;
+    // number of course sets that are sorted
+    @Param({"1000"})
+    public int sets;
+    private List<Set<Course>> unsorted;
+    private List<Schedule> schedules;
+    private List<Set<Course>> copy;
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        List<Course> catalog = Catalog.make(courses, sections);
+        Random random = new Random(sets);
+        unsorted = new ArrayList<Set<Course>>();
+        schedules = new ArrayList<Schedule>();
+        for (int i = 0; i < sets; i++) {
+            Set<Course> set = new TreeSet<Course>();
+            Schedule schedule = Schedule.EMPTY;
+            // 1 lecture and 1 tutorial of every subject
+            for (int s = 0; s < courses; s++) {
+                int lecture = s * sections + random.nextInt(sections);
+                int tutorial = courses * sections + lecture * sections + random.nextInt(sections);
+                for (Course course : new Course[]{catalog.get(lecture), catalog.get(tutorial)}) {
+                    set.add(course);
+                    schedule = schedule.merge(Schedule.of(course));
+                }
+            }
+            unsorted.add(set);
+            schedules.add(schedule);
+        }
+    }
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        copy = new ArrayList<Set<Course>>(unsorted);
+    }
+    @Benchmark
+    public List<Set<Course>> maxComparator() {
+        Collections.sort(copy, new MaxComparator());
+        return copy;
+    }
+    @Benchmark
+    public List<Set<Course>> maxMinComparator() {
+        Collections.sort(copy, new MaxMinComparator());
+        return copy;
+    }
+    @Benchmark
+    public List<ScoredSchedule> maxMinScored() {
+        List<ScoredSchedule> scored = new ArrayList<ScoredSchedule>(schedules.size());
+        for (Schedule schedule : schedules) {
+            scored.add(ScoredSchedule.of(schedule, SortingAlgorithm.MaxMin));
+        }
+        ScoredSchedule.sort(scored);
+        return scored;
+    }
+}
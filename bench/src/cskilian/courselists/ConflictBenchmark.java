@@ -0,0 +1,83 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+// ConflictBenchmark times the conflict tests between schedules, on the occupancy bitmaps and on the blocks themselves,
+// and merging a schedule with a section
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflictBenchmark {
+    private static final int PAIRS = 1024;
+    @Param({"3", "5"})
+    public int courses;
+    @Param({"2", "4"})
+    public int sections;
+    private Course[] left = new Course[PAIRS];
+    private Course[] right = new Course[PAIRS];
+    // schedules of 1 section of every subject, and single sections to test them against
+    private Schedule[] partial = new Schedule[PAIRS];
+    private Schedule[] single = new Schedule[PAIRS];
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Course> catalog = Catalog.make(courses, sections);
+        Random random = new Random(PAIRS);
+        for (int i = 0; i < PAIRS; i++) {
+            left[i] = catalog.get(random.nextInt(catalog.size()));
+            right[i] = catalog.get(random.nextInt(catalog.size()));
+            Schedule schedule = Schedule.EMPTY;
+            for (Course course : pick(catalog, random)) {
+                schedule = schedule.merge(Schedule.of(course));
+            }
+            partial[i] = schedule;
+            single[i] = Schedule.of(right[i]);
+        }
+    }
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void coursesConflict(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(Schedule.coursesConflict(left[i], right[i]));
+        }
+    }
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void schedulesConflict(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(partial[i].conflicts(single[i]));
+        }
+    }
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void merge(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(partial[i].merge(single[i]));
+        }
+    }
+    // helper for 1 random lecture of every subject
+    private List<Course> pick(List<Course> catalog, Random random) {
+        List<Course> out = new ArrayList<Course>();
+        for (int s = 0; s < courses; s++) {
+            out.add(catalog.get(s * sections + random.nextInt(sections)));
+        }
+        return out;
+    }
+}
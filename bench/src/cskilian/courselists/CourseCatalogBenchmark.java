@@ -0,0 +1,83 @@
+package cskilian.courselists;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// CourseCatalogBenchmark times making a catalog snapshot out of courses, looking sections up in it and making a
+// snapshot without 1 section, with and without a conflict graph to keep up to date. Snapshots never change, so every
+// call works on the same filled one
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CourseCatalogBenchmark {
+    @Param({"3", "5"})
+    public int courses;
+    @Param({"2", "4"})
+    public int sections;
+    private CourseCatalog empty;
+    private CourseCatalog filled;
+    // filled with its conflict graph already made
+    private CourseCatalog graphed;
+    // courses for with
+    private List<Course> catalog;
+    // sections in the catalog that are looked up and removed, in a random order
+    private Course[] targets;
+    private int next = 0;
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        empty = CourseCatalog.empty(Catalog.parser());
+        catalog = Catalog.make(courses, sections);
+        filled = empty.with(catalog);
+        graphed = empty.with(catalog);
+        graphed.getConflicts();
+        List<Course> shuffled = Catalog.make(courses, sections);
+        Collections.shuffle(shuffled, new Random(0));
+        targets = shuffled.toArray(new Course[0]);
+    }
+    @Benchmark
+    public CourseCatalog with() {
+        return empty.with(catalog);
+    }
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Course getByCrn() {
+        return filled.get(next().crn);
+    }
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Course getBySection() {
+        Course target = next();
+        return filled.get(target.subject, target.section, target.type);
+    }
+    @Benchmark
+    public CourseCatalog without() {
+        return filled.without(next().crn);
+    }
+    @Benchmark
+    public ConflictGraph conflicts() {
+        return ConflictGraph.of(catalog);
+    }
+    @Benchmark
+    public CourseCatalog withoutGraphed() {
+        return graphed.without(next().crn);
+    }
+    private Course next() {
+        next = next + 1 == targets.length ? 0 : next + 1;
+        return targets[next];
+    }
+}
@@ -0,0 +1,52 @@
+package cskilian.courselists;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// ParserBenchmark times turning saved course search result pages into courses, the pages are under fixtures/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"comp1405.html", "stat2507.html"})
+    public String fixture;
+    private CarletonParser parser;
+    private String html;
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        parser = new CarletonParser();
+        try (InputStream in = ParserBenchmark.class.getResourceAsStream("/fixtures/" + fixture)) {
+            if (in == null) {
+                throw new IOException("missing fixture " + fixture);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            html = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+    @Benchmark
+    public Collection<Course> htmlToCourses() throws Exception {
+        return parser.htmlToCourses(html, Catalog.TERM);
+    }
+}
@@ -0,0 +1,68 @@
+package cskilian.courselists;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// TimetableBenchmark times making the choices of a session on a filled catalog. join only joins the memoized
+// combinations of every subject, rebuild makes a new catalog snapshot and combines every subject again, rescore only
+// scores the valid schedules that were found once again, as after the ranks change
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimetableBenchmark {
+    @Param({"3", "5"})
+    public int courses;
+    @Param({"2", "4"})
+    public int sections;
+    // 0 makes and sorts every combination, otherwise only the best ones are searched for
+    @Param({"0", "200"})
+    public int limit;
+    @Param({"Max", "MaxMin"})
+    public SortingAlgorithm sorter;
+    // in the format of Constraints.parse, empty for none
+    @Param({"", "from 1000, Fri, days 4"})
+    public String constraints;
+    private List<Course> catalog;
+    private Timetable timetable;
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        catalog = Catalog.make(courses, sections);
+        timetable = new Timetable(CourseCatalog.empty(Catalog.parser()).with(catalog));
+        timetable.setSortingAlgorithm(sorter);
+        timetable.setConstraints(Constraints.parse(constraints));
+        timetable.setLimit(limit);
+        timetable.setParallelism(1);
+        timetable.makeChoices();
+    }
+    @Benchmark
+    public Collection<Set<Course>> join() {
+        timetable.makeChoices();
+        return timetable.getChoices();
+    }
+    @Benchmark
+    public List<ScoredSchedule> rescore() {
+        // the valid schedules are only found on the first call of a trial
+        return timetable.rescore(limit > 0 ? limit : Integer.MAX_VALUE);
+    }
+    @Benchmark
+    public Collection<Set<Course>> rebuild() {
+        // the catalog copies the courses, so the same ones can be added every time
+        timetable.setCatalog(CourseCatalog.empty(timetable.getCatalog().getParser()).with(catalog));
+        return timetable.getChoices();
+    }
+}
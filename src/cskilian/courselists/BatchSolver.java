@@ -0,0 +1,372 @@
+package cskilian.courselists;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+// BatchSolver finds the best schedules of many students in 1 run, without the UI. Every course code any student asks
+// for is fetched once into 1 catalog snapshot per term, then every student is solved in a session of their own on the
+// subjects they asked for, side by side. The combinations of a subject are made once and shared by every student. The
+// batch file has 1 student per line, with fields separated by ;
+//     student;term;sorter;course codes;ranks;constraints
+//     s1001;Fall;MaxMin;COMP 1405,MATH 1104;31234=8,31240=3;from 1000, Fri
+// An empty sorter is MaxMin, and sections without a rank keep the one the parser gave them. The constraints are
+// optional, in the format of Constraints.parse. Lines starting with # are comments
+public class BatchSolver {
+    private static final int DEFAULT_TOP = 10;
+    private static final String USAGE = "usage: BatchSolver [--catalog courses.txt] [--top 10] [--threads n] " +
+            "[--format csv|jsonl] [--out results] [--metrics seconds] [--snapshot term.snapshot] batch.txt|-";
+    // Format is how the schedules are written out
+    public enum Format {
+        // student,rank,score,crns with the crns separated by spaces
+        CSV,
+        // 1 JSON object per schedule
+        JSONL
+    }
+    private final Parser parser;
+    private final int top;
+    private final int threads;
+    /**
+     * Constructor
+     * @param parser Parser that fetches the catalog and decides which section goes under which
+     * @param top int of the number of schedules kept for every student
+     * @param threads int of the number of students solved at once
+     */
+    public BatchSolver(Parser parser, int top, int threads) {
+        this.parser = parser;
+        this.top = Math.max(1, top);
+        this.threads = Math.max(1, threads);
+    }
+    public static void main(String[] args) throws Exception {
+        Parser parser = null;
+        int top = DEFAULT_TOP;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Format format = Format.CSV;
+        String out = null;
+        String in = null;
+        long metrics = 0;
+        String snapshot = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--catalog": parser = new FileParser(args[++i]); break;
+                    case "--top": top = Integer.parseInt(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--format": format = Format.valueOf(args[++i].toUpperCase()); break;
+                    case "--out": out = args[++i]; break;
+                    case "--metrics": metrics = Long.parseLong(args[++i]); break;
+                    case "--snapshot": snapshot = args[++i]; break;
+                    default: in = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            in = null;
+        }
+        if (in == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (parser == null) {
+            parser = new CachingParser(new CarletonParser());
+        }
+        if (snapshot != null) {
+            // the term of the snapshot is read from it, every other term goes to the parser behind it
+            parser = new SnapshotParser(Paths.get(snapshot), parser);
+        }
+        Metrics.register();
+        if (metrics > 0) {
+            // the metrics go to stderr, so they never end up in the results
+            Metrics.report(System.err, metrics);
+        }
+        try (Reader reader = new BufferedReader(new InputStreamReader(
+                in.equals("-") ? System.in : new FileInputStream(in), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(
+                     out == null ? System.out : new FileOutputStream(out), StandardCharsets.UTF_8))) {
+            new BatchSolver(parser, top, threads).run(reader, writer, format);
+        }
+        if (metrics > 0) {
+            System.err.println(Metrics.get().getReport());
+        }
+    }
+    /**
+     * solves every student of a batch file and writes their best schedules in the order of the file
+     * @param in Reader of the batch file
+     * @param out Writer the schedules are written to
+     * @param format Format of the schedules
+     * @throws Exception thrown if the batch file can't be read or the catalog can't be fetched
+     */
+    public void run(Reader in, Writer out, Format format) throws Exception {
+        final List<Request> requests = read(in);
+        final Catalogs catalog = load(requests);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<ScoredSchedule>>> results = new ArrayList<Future<List<ScoredSchedule>>>();
+            for (final Request request : requests) {
+                results.add(executor.submit(() -> solve(request, catalog)));
+            }
+            if (format == Format.CSV) {
+                out.write("student,rank,score,crns\n");
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                try {
+                    write(out, format, requests.get(i), results.get(i).get());
+                } catch (ExecutionException e) {
+                    // 1 bad student doesn't stop the rest
+                    System.err.println(requests.get(i).student + ": " + e.getCause());
+                }
+            }
+            out.flush();
+        } finally {
+            executor.shutdown();
+        }
+    }
+    /**
+     * finds the best schedules of 1 student in a session of their own
+     * @param request Request of the student
+     * @param catalog Catalogs of every term, it isn't changed
+     * @return List<ScoredSchedule> of the best schedules, best first
+     */
+    private List<ScoredSchedule> solve(Request request, Catalogs catalog) {
+        Set<String> subjects = new HashSet<String>();
+        for (String[] code : request.courses) {
+            subjects.addAll(catalog.subjects.get(key(request.term, code)));
+        }
+        // the session only sees the subjects of the student, its ranks don't touch the shared catalog
+        Timetable timetable = new Timetable(catalog.terms.get(request.term).select(subjects));
+        for (Map.Entry<Integer, Integer> rank : request.ranks.entrySet()) {
+            timetable.setRank(rank.getKey(), rank.getValue());
+        }
+        timetable.setSortingAlgorithm(request.sorter);
+        timetable.setConstraints(request.constraints);
+        Propagation propagation = timetable.propagate();
+        if (!propagation.isFeasible()) {
+            System.err.println(request.student + ": no valid schedule, every section of " + propagation.getBlocking() +
+                    " was eliminated");
+        }
+        return timetable.top(top);
+    }
+    /**
+     * fetches every course code of the batch once, a term at a time
+     * @param requests List<Request> of the students
+     * @return Catalogs of every term
+     * @throws Exception thrown if the parser can't fetch the courses
+     */
+    private Catalogs load(List<Request> requests) throws Exception {
+        Map<String, Map<String, String[]>> codes = new LinkedHashMap<String, Map<String, String[]>>();
+        for (Request request : requests) {
+            if (!codes.containsKey(request.term)) {
+                codes.put(request.term, new LinkedHashMap<String, String[]>());
+            }
+            for (String[] code : request.courses) {
+                codes.get(request.term).put(key(request.term, code), code);
+            }
+        }
+        Catalogs catalog = new Catalogs();
+        for (Map.Entry<String, Map<String, String[]>> term : codes.entrySet()) {
+            List<String> keys = new ArrayList<String>(term.getValue().keySet());
+            List<Collection<Course>> fetched = parser.makeCourses(new ArrayList<String[]>(term.getValue().values()),
+                    term.getKey());
+            List<Course> courses = new ArrayList<Course>();
+            for (int i = 0; i < keys.size(); i++) {
+                // a course code is usually 1 subject, but the parser decides what a subject is
+                Set<String> subjects = new HashSet<String>();
+                for (Course course : fetched.get(i)) {
+                    subjects.add(course.subject);
+                }
+                catalog.subjects.put(keys.get(i), subjects);
+                courses.addAll(fetched.get(i));
+            }
+            catalog.terms.put(term.getKey(), CourseCatalog.empty(parser).with(courses));
+        }
+        return catalog;
+    }
+    /**
+     * reads the students out of a batch file
+     * @param in Reader of the batch file
+     * @return List<Request> of the students in the order of the file
+     * @throws IOException thrown if the file can't be read or a line isn't valid
+     */
+    private static List<Request> read(Reader in) throws IOException {
+        List<Request> requests = new ArrayList<Request>();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(";", -1);
+            if (fields.length < 4) {
+                throw new IOException("line " + number + ": expected student;term;sorter;courses;ranks");
+            }
+            try {
+                requests.add(new Request(fields[0].trim(), fields[1].trim(), toSorter(fields[2]), toCodes(fields[3]),
+                        toRanks(fields.length > 4 ? fields[4] : ""),
+                        Constraints.parse(fields.length > 5 ? fields[5] : "")));
+            } catch (RuntimeException e) {
+                throw new IOException("line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        return requests;
+    }
+    /**
+     * writes the schedules of 1 student
+     * @param out Writer the schedules are written to
+     * @param format Format of the schedules
+     * @param request Request of the student
+     * @param schedules List<ScoredSchedule> of the best schedules, best first
+     * @throws IOException thrown if the schedules can't be written
+     */
+    private static void write(Writer out, Format format, Request request, List<ScoredSchedule> schedules)
+            throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < schedules.size(); i++) {
+            ScoredSchedule schedule = schedules.get(i);
+            line.setLength(0);
+            if (format == Format.CSV) {
+                line.append(csv(request.student)).append(',').append(i + 1).append(',').append(schedule.score)
+                        .append(',');
+                String separator = "";
+                for (Course course : schedule.schedule.courses()) {
+                    line.append(separator).append(course.crn);
+                    separator = " ";
+                }
+            } else {
+                line.append("{\"student\":").append(json(request.student)).append(",\"rank\":").append(i + 1)
+                        .append(",\"score\":").append(schedule.score).append(",\"crns\":[");
+                String separator = "";
+                for (Course course : schedule.schedule.courses()) {
+                    line.append(separator).append(course.crn);
+                    separator = ",";
+                }
+                line.append("]}");
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+    /**
+     * reads a comma separated list of course codes, ie. COMP 1405,MATH1104
+     * @param field String of the course codes
+     * @return List<String[]> of {subject, number} of every course code
+     * @throws IllegalArgumentException thrown if a course code isn't valid
+     */
+    static List<String[]> toCodes(String field) {
+        List<String[]> codes = new ArrayList<String[]>();
+        for (String code : field.split(",")) {
+            if (!code.trim().isEmpty()) {
+                codes.add(toCode(code.trim()));
+            }
+        }
+        return codes;
+    }
+    /**
+     * reads a comma separated list of ranks, ie. 31234=8,31240=3
+     * @param field String of the ranks
+     * @return Map<Integer, Integer> of the rank of every crn
+     * @throws IllegalArgumentException thrown if a rank isn't valid
+     */
+    static Map<Integer, Integer> toRanks(String field) {
+        Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+        for (String rank : field.split(",")) {
+            if (!rank.trim().isEmpty()) {
+                String[] pair = rank.trim().split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("not a rank: " + rank.trim());
+                }
+                ranks.put(Integer.parseInt(pair[0].trim()), Integer.parseInt(pair[1].trim()));
+            }
+        }
+        return ranks;
+    }
+    /**
+     * reads the name of a sorting algorithm, an empty name is MaxMin
+     * @param field String of the name
+     * @return SortingAlgorithm of the name
+     * @throws IllegalArgumentException thrown if there's no such sorting algorithm
+     */
+    static SortingAlgorithm toSorter(String field) {
+        return field.trim().isEmpty() ? SortingAlgorithm.MaxMin : SortingAlgorithm.valueOf(field.trim());
+    }
+    // helper for splitting a course code like COMP 1405 or COMP1405 into its subject and number
+    private static String[] toCode(String code) {
+        int i = 0;
+        while (i < code.length() && Character.isLetter(code.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == code.length()) {
+            throw new IllegalArgumentException("not a course code: " + code);
+        }
+        return new String[] {code.substring(0, i), code.substring(i).trim()};
+    }
+    // helper for the catalog key of a course code in a term
+    private static String key(String term, String[] code) {
+        return term + "\u0000" + code[0] + "\u0000" + code[1];
+    }
+    // helper for quoting a CSV field when it needs it
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    // helper for a JSON string
+    static String json(String value) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+    // Catalogs is what the batch is solved on: the snapshot of every term and the subjects of every course code
+    private static class Catalogs {
+        private final Map<String, CourseCatalog> terms = new HashMap<String, CourseCatalog>();
+        private final Map<String, Set<String>> subjects = new HashMap<String, Set<String>>();
+    }
+    // Request is 1 line of the batch file
+    private static class Request {
+        private final String student;
+        private final String term;
+        private final SortingAlgorithm sorter;
+        // {subject, number} of every course code
+        private final List<String[]> courses;
+        // rank of every ranked crn
+        private final Map<Integer, Integer> ranks;
+        private final Constraints constraints;
+        private Request(String student, String term, SortingAlgorithm sorter, List<String[]> courses,
+                        Map<Integer, Integer> ranks, Constraints constraints) {
+            this.student = student;
+            this.term = term;
+            this.sorter = sorter;
+            this.courses = courses;
+            this.ranks = ranks;
+            this.constraints = constraints;
+        }
+    }
+}
@@ -22,11 +22,18 @@ public class Block {
     }
     /**
      * checks if the 2 blocks are equal
-     * @param other Block that is compared to
+     * @param other Object that is compared to
      * @return true if they're equal, false otherwise
      */
-    public boolean equals(final Block other) {
-        return this.day == other.day && this.term.equals(other.term) && this.start == other.start && this.end == other.end;
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof Block)) { return false; }
+        Block block = (Block) other;
+        return this.day == block.day && this.term.equals(block.term) && this.start == block.start && this.end == block.end;
+    }
+    @Override
+    public int hashCode() {
+        return ((day.ordinal() * 31 + term.hashCode()) * 31 + start) * 31 + end;
     }
 
     /**
@@ -0,0 +1,346 @@
+package cskilian.courselists;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+// CachingParser is a read-through cache in front of another Parser. Parsed sections are kept in an in-memory LRU tier
+// and in a directory on disk, both in a compact binary format, and are only fetched again once they expire. Every hit
+// decodes fresh Course objects, since the course tree hangs its children off the courses it is given. The format has no
+// null, so a section without an instructor comes back from the cache with an empty instructor
+public class CachingParser implements Parser {
+    // bumped whenever the binary format changes, older files are treated as misses
+    private static final int VERSION = 1;
+    private static final long DEFAULT_TTL_MILLIS = 6 * 60 * 60 * 1000;
+    private static final int DEFAULT_CAPACITY = 256;
+    private final Parser parser;
+    private final File directory;
+    private final long ttl;
+    private final int capacity;
+    // access ordered, so the eldest entry is the least recently used one
+    private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * Constructor with the default directory, time to live and capacity
+     * @param parser Parser that fetches on a miss
+     */
+    public CachingParser(Parser parser) {
+        this(parser, new File(System.getProperty("user.home"), ".courselists" + File.separator + "cache"),
+                DEFAULT_TTL_MILLIS, DEFAULT_CAPACITY);
+    }
+    /**
+     * Constructor
+     * @param parser Parser that fetches on a miss
+     * @param directory File of the directory of the disk tier, null keeps everything in memory
+     * @param ttl long of how many milliseconds sections are kept
+     * @param capacity int of the number of course codes kept in memory
+     */
+    public CachingParser(Parser parser, File directory, long ttl, int capacity) {
+        this.parser = parser;
+        this.directory = directory;
+        this.ttl = ttl;
+        this.capacity = Math.max(1, capacity);
+    }
+    @Override
+    public boolean subordinate(Course course, Course node) {
+        return parser.subordinate(course, node);
+    }
+    @Override
+    public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+        Collection<Course> courses = lookup(subject, number, term);
+        if (courses == null) {
+            courses = parser.makeCourses(subject, number, term);
+            store(subject, number, term, courses);
+        }
+        return courses;
+    }
+    @Override
+    public List<Collection<Course>> makeCourses(List<String[]> requests, String term) throws Exception {
+        List<Collection<Course>> out = new ArrayList<Collection<Course>>();
+        List<String[]> missed = new ArrayList<String[]>();
+        for (String[] request : requests) {
+            Collection<Course> courses = lookup(request[0], request[1], term);
+            out.add(courses);
+            if (courses == null) {
+                missed.add(request);
+            }
+        }
+        if (missed.isEmpty()) {
+            return out;
+        }
+        // only the misses go to the wrapped parser, which may fetch them side by side
+        List<Collection<Course>> fetched = parser.makeCourses(missed, term);
+        for (int i = 0, j = 0; i < out.size(); i++) {
+            if (out.get(i) == null) {
+                String[] request = missed.get(j);
+                store(request[0], request[1], term, fetched.get(j));
+                out.set(i, fetched.get(j++));
+            }
+        }
+        return out;
+    }
+    /**
+     * drops a course code from both tiers, the next lookup fetches it again
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     */
+    public void invalidate(String subject, String number, String term) {
+        String key = key(subject, number, term);
+        synchronized (memory) {
+            memory.remove(key);
+        }
+        if (directory != null) {
+            new File(directory, key + ".bin").delete();
+        }
+    }
+    /**
+     * drops everything from both tiers
+     */
+    public void invalidateAll() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".bin")) {
+                    file.delete();
+                }
+            }
+        }
+    }
+    /**
+     * fetches a course code again and replaces what's cached
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     * @return Collection<Course> of the fresh courses
+     * @throws Exception thrown by the wrapped parser
+     */
+    public Collection<Course> refresh(String subject, String number, String term) throws Exception {
+        invalidate(subject, number, term);
+        return makeCourses(subject, number, term);
+    }
+    /**
+     * getter for the number of lookups answered from memory
+     * @return long of memory hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+    /**
+     * getter for the number of lookups answered from disk
+     * @return long of disk hits
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+    /**
+     * getter for the number of lookups that went to the wrapped parser
+     * @return long of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+    /**
+     * getter for the number of course codes pushed out of memory to make room
+     * @return long of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+    @Override
+    public String toString() {
+        return "memory hits: " + memoryHits + ", disk hits: " + diskHits + ", misses: " + misses + ", evictions: "
+                + evictions;
+    }
+    /**
+     * looks a course code up in memory, then on disk
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     * @return Collection<Course> of fresh courses, null on a miss
+     */
+    private Collection<Course> lookup(String subject, String number, String term) {
+        String key = key(subject, number, term);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && entry.expires <= now) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            memoryHits.incrementAndGet();
+            Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+            return decode(entry.data);
+        }
+        if (directory != null) {
+            File file = new File(directory, key + ".bin");
+            try {
+                if (file.isFile()) {
+                    byte[] data = Files.readAllBytes(file.toPath());
+                    long expires = expires(data);
+                    Collection<Course> courses = expires > now ? decode(data) : null;
+                    if (courses != null) {
+                        remember(key, new Entry(data, expires));
+                        diskHits.incrementAndGet();
+                        Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+                        return courses;
+                    }
+                    file.delete();
+                }
+            } catch (IOException e) {
+                // a damaged file is a miss, it's overwritten once the course code is fetched again
+            }
+        }
+        misses.incrementAndGet();
+        Metrics.count(Metrics.Counter.CACHE_MISSES, 1);
+        return null;
+    }
+    /**
+     * puts freshly fetched courses into both tiers
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     * @param courses Collection<Course> that was fetched
+     */
+    private void store(String subject, String number, String term, Collection<Course> courses) {
+        String key = key(subject, number, term);
+        long expires = System.currentTimeMillis() + ttl;
+        byte[] data;
+        try {
+            data = encode(courses, expires);
+        } catch (IOException e) {
+            return;
+        }
+        remember(key, new Entry(data, expires));
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory.toPath());
+                // write to the side and move it in, so a reader never sees half a file
+                File temp = File.createTempFile(key, ".tmp", directory);
+                Files.write(temp.toPath(), data);
+                Files.move(temp.toPath(), new File(directory, key + ".bin").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // the disk tier is best effort, memory still has it
+            }
+        }
+    }
+    // puts an entry into the memory tier, evicting the least recently used one if it's full
+    private void remember(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+            while (memory.size() > capacity) {
+                String eldest = memory.keySet().iterator().next();
+                memory.remove(eldest);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+    /**
+     * writes courses in the binary format: version, expiry, then every course with its blocks. A null instructor is
+     * written as an empty String
+     * @param courses Collection<Course> of courses
+     * @param expires long of when the entry expires
+     * @return byte[] of the encoded courses
+     * @throws IOException never for an in-memory stream
+     */
+    private static byte[] encode(Collection<Course> courses, long expires) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VERSION);
+        out.writeLong(expires);
+        out.writeInt(courses.size());
+        for (Course course : courses) {
+            out.writeInt(course.crn);
+            out.writeUTF(course.subject);
+            out.writeUTF(course.section);
+            out.writeUTF(course.type);
+            out.writeUTF(course.instructor == null ? "" : course.instructor);
+            out.writeInt(course.getRank());
+            out.writeShort(course.schedule.size());
+            for (Block block : course.schedule) {
+                out.writeByte(block.day.ordinal());
+                out.writeUTF(block.term);
+                out.writeShort(block.start);
+                out.writeShort(block.end);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    /**
+     * reads courses back out of the binary format
+     * @param data byte[] of encoded courses
+     * @return Collection<Course> of new courses, with "" for an instructor that was null, null if the data can't be read
+     */
+    private static Collection<Course> decode(byte[] data) {
+        Collection<Course> courses = new LinkedList<Course>();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int crn = in.readInt();
+                String subject = in.readUTF();
+                String section = in.readUTF();
+                String type = in.readUTF();
+                String instructor = in.readUTF();
+                int rank = in.readInt();
+                int blocks = in.readShort();
+                Set<Block> schedule = new LinkedHashSet<Block>();
+                for (int j = 0; j < blocks; j++) {
+                    Day day = Day.values()[in.readByte()];
+                    String term = in.readUTF();
+                    int start = in.readShort();
+                    int end = in.readShort();
+                    schedule.add(new Block(day, term, start, end));
+                }
+                courses.add(new Course(crn, subject, section, type, instructor, rank, schedule));
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return courses;
+    }
+    // reads the expiry out of the header, 0 if it isn't in the current format
+    private static long expires(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        return in.readInt() == VERSION ? in.readLong() : 0;
+    }
+    // helper for the key of a course code, it doubles as the file name
+    private static String key(String subject, String number, String term) {
+        return (term + "_" + subject + "_" + number).replaceAll("[^A-Za-z0-9_]", "");
+    }
+    // Entry is an encoded course code in memory and when it expires
+    private static class Entry {
+        private final byte[] data;
+        private final long expires;
+        private Entry(byte[] data, long expires) {
+            this.data = data;
+            this.expires = expires;
+        }
+    }
+}
@@ -1,18 +1,61 @@
 package cskilian.courselists;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.io.*;
 import java.net.*;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import org.jsoup.*;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 public class CarletonParser implements Parser{
+    private static final String BASE_URL = "https://central.carleton.ca/prod/";
+    // a term code and session id are good for a while, after that they're fetched again
+    private static final long SESSION_TTL_MILLIS = 10 * 60 * 1000;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    // how each Day is written in the meeting rows, by ordinal
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    // an option of the subject list of the search page
+    private static final Pattern SUBJECT_OPTION = Pattern.compile("<option[^>]*value=\"([^\"]*)\"", Pattern.CASE_INSENSITIVE);
     private final String USER_AGENT = "Mozilla/5.0";
-    private String termCode;
-    private String sessionId;
+    private final String baseUrl;
+    // term code and session id of every term looked up so far, or being looked up
+    private final Map<String, CompletableFuture<Session>> sessions =
+            new ConcurrentHashMap<String, CompletableFuture<Session>>();
+    // caps the number of requests to the server at once
+    private volatile Semaphore permits = new Semaphore(DEFAULT_CONCURRENCY);
+    private volatile int concurrency = DEFAULT_CONCURRENCY;
+    /**
+     * Constructor for Carleton Central
+     */
+    public CarletonParser() {
+        this(BASE_URL);
+    }
+    /**
+     * Constructor
+     * @param baseUrl String of the url the bwysched pages are under, ending in /
+     */
+    public CarletonParser(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+    /**
+     * sets how many requests are sent to the server at once
+     * @param concurrency int of the number of requests, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        this.permits = new Semaphore(this.concurrency);
+    }
     /**
      * compares the 3 digit course section numbers and checks if course is a child of node
      * @param course Course of the intended parent
@@ -21,7 +64,17 @@ public class CarletonParser implements Parser{
      */
     @Override
     public boolean subordinate(Course course, Course node) {
-        if (CourseTree.root.crn == node.crn && course.type.equals("Lecture")) {
+        return sectionSubordinate(course, node);
+    }
+    /**
+     * the Carleton rules for section hierarchies, a B1 or T1 tutorial or an L1 laboratory belongs to the B lecture
+     * @param course Course of the intended child
+     * @param node Course of the intended parent
+     * @return true, if they're related, else false
+     */
+    public static boolean sectionSubordinate(Course course, Course node) {
+        // the dummy root node of any tree has crn -1
+        if (node.crn == -1 && course.type.equals("Lecture")) {
             return true;
         } else if (course.subject.equals(node.subject)) {
             if (node.type.equals("Lecture")) {
@@ -44,51 +97,195 @@ public class CarletonParser implements Parser{
      */
     @Override
     public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
-        // getTermCode
+        Metrics.MakeCoursesEvent event = new Metrics.MakeCoursesEvent();
+        event.begin();
+        Semaphore semaphore = permits;
+        semaphore.acquire();
+        try {
+            Collection<Course> courses = getCourses(subject, number, term, getTermCodeAndSessionID(term));
+            event.subject = subject;
+            event.number = number;
+            event.term = term;
+            event.sections = courses.size();
+            event.commit();
+            return courses;
+        } finally {
+            semaphore.release();
+        }
+    }
+    /**
+     * fetches the courses of several course codes at once. The term code and session id are looked up once, then the
+     * searches run side by side, at most concurrency at a time
+     * @param requests List<String[]> of {subject, number} pairs
+     * @param term String of term
+     * @return List<Collection<Course>> of the courses of each request, in the same order
+     * @throws Exception thrown for IO or parsing problems of any request
+     */
+    @Override
+    public List<Collection<Course>> makeCourses(List<String[]> requests, final String term) throws Exception {
         getTermCodeAndSessionID(term);
-        // getCourses
-        return getCourses(subject, number, term);
+        ExecutorService executor = newExecutor(concurrency);
+        try {
+            List<Future<Collection<Course>>> futures = new ArrayList<Future<Collection<Course>>>();
+            for (final String[] request : requests) {
+                futures.add(executor.submit(() -> makeCourses(request[0], request[1], term)));
+            }
+            List<Collection<Course>> out = new ArrayList<Collection<Course>>();
+            for (Future<Collection<Course>> future : futures) {
+                try {
+                    out.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return out;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    /**
+     * fetches every section of a term, 1 course search per subject with the course number left empty
+     * @param term String of term
+     * @param subjects List<String> of the subjects, ie. COMP, null for every subject the search page offers
+     * @return Collection<Course> of every section, each crn once
+     * @throws Exception thrown for IO or parsing problems of any subject
+     */
+    public Collection<Course> makeTerm(String term, List<String> subjects) throws Exception {
+        if (subjects == null) {
+            subjects = getSubjects(term);
+        }
+        List<String[]> requests = new ArrayList<String[]>();
+        for (String subject : subjects) {
+            requests.add(new String[]{subject, ""});
+        }
+        Map<Integer, Course> courses = new LinkedHashMap<Integer, Course>();
+        for (Collection<Course> subject : makeCourses(requests, term)) {
+            for (Course course : subject) {
+                courses.putIfAbsent(course.crn, course);
+            }
+        }
+        return courses.values();
+    }
+    /**
+     * fetches the subjects a term can be searched by, out of the subject list of the search page
+     * @param term String of term
+     * @return List<String> of the subject codes, ie. COMP
+     * @throws Exception thrown for IO problems
+     */
+    public List<String> getSubjects(String term) throws Exception {
+        Session session = getTermCodeAndSessionID(term);
+        long start = System.nanoTime();
+        URL url = new URL(baseUrl + "bwysched.p_search_fields");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setDoOutput(true);
+        try (DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
+            out.writeBytes("wsea_code=EXT&term_code=" + session.termCode + "&session_id=" + session.sessionId);
+            out.flush();
+        }
+        StringBuilder page = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            String inputLine = null;
+            while ((inputLine = in.readLine()) != null) {
+                page.append(inputLine).append('\n');
+            }
+        }
+        Metrics.since(Metrics.Phase.FETCH, start);
+        List<String> subjects = new ArrayList<String>();
+        int from = page.indexOf("name=\"sel_subj\"");
+        if (from < 0) {
+            return subjects;
+        }
+        int to = page.indexOf("</select>", from);
+        Matcher option = SUBJECT_OPTION.matcher(page.substring(from, to < 0 ? page.length() : to));
+        while (option.find()) {
+            String subject = option.group(1).trim();
+            if (!subject.isEmpty() && !subject.equals("dummy") && !subject.equals("%")) {
+                subjects.add(subject);
+            }
+        }
+        return subjects;
     }
     /**
-     * helper for getting a term code and session id to make a valid post request
+     * helper for getting a term code and session id to make a valid post request, they're reused until they expire.
+     * Only the first thread to ask for a term looks it up, the others wait for that lookup and no lock is held
+     * across it, so lookups of other terms and searches with a session already known go on meanwhile
      * @param term String of term
+     * @return Session of the term
      * @throws Exception thrown for IO or parsing errors
      */
-    private void getTermCodeAndSessionID(String term) throws Exception {
+    private Session getTermCodeAndSessionID(String term) throws Exception {
+        while (true) {
+            CompletableFuture<Session> known = sessions.get(term);
+            if (known != null && !(known.isDone() && known.join().expires <= System.currentTimeMillis())) {
+                try {
+                    return known.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            CompletableFuture<Session> promise = new CompletableFuture<Session>();
+            if (known == null ? sessions.putIfAbsent(term, promise) != null : !sessions.replace(term, known, promise)) {
+                // another thread started a lookup first
+                continue;
+            }
+            try {
+                Session session = lookUp(term);
+                promise.complete(session);
+                return session;
+            } catch (Exception | Error e) {
+                // a failed lookup isn't kept, the ones waiting on it get the error and the next one tries again
+                sessions.remove(term, promise);
+                promise.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+    // helper for fetching the term code and session id of a term from the term selection page
+    private Session lookUp(String term) throws Exception {
+        long start = System.nanoTime();
+        String termCode = null;
+        String sessionId = null;
         // make a connection
-        URL url = new URL("https://central.carleton.ca/prod/bwysched.p_select_term?wsea_code=EXT");
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+        URL url = new URL(baseUrl + "bwysched.p_select_term?wsea_code=EXT");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("GET");
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        String inputLine = null;
-        while ((inputLine = in.readLine()) != null) {
-            if (inputLine.contains(term)) {
-                this.termCode = getValue(inputLine);
-            }
-            if (inputLine.contains("session_id")) {
-                this.sessionId = getValue(inputLine);
+        // reading the response to the end and closing it lets the connection be kept alive for the next request
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            String inputLine = null;
+            while ((inputLine = in.readLine()) != null) {
+                if (inputLine.contains(term)) {
+                    termCode = getValue(inputLine);
+                }
+                if (inputLine.contains("session_id")) {
+                    sessionId = getValue(inputLine);
+                }
             }
         }
+        Metrics.since(Metrics.Phase.FETCH, start);
+        return new Session(termCode, sessionId, System.currentTimeMillis() + SESSION_TTL_MILLIS);
     }
     /**
      * makes a post request for getting the courses from online
      * @param subject String of subject
      * @param number String of number
      * @param term String of term
+     * @param session Session of the term
      * @return Collection<Course> of valid course list
      * @throws Exception thrown for IO or parsing problems
      */
-    private Collection<Course> getCourses(String subject, String number,String term) throws Exception {
-        StringBuilder buffer = new StringBuilder(); // holds the web page that we get back
+    private Collection<Course> getCourses(String subject, String number, String term, Session session) throws Exception {
+        long start = System.nanoTime();
         // make a connection and fetch the page
-        URL url = new URL("https://central.carleton.ca/prod/bwysched.p_course_search");
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+        URL url = new URL(baseUrl + "bwysched.p_course_search");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("POST");
         connection.setRequestProperty("User-Agent", USER_AGENT);
         connection.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
         connection.setRequestProperty("Accept-Language", "en-US,en;q=0.5");
         connection.setDoOutput(true);
-        String parameters = "wsea_code=EXT&term_code=" + termCode + "&session_id=" + sessionId + "&ws_numb=&sel_aud=dummy" +
+        String parameters = "wsea_code=EXT&term_code=" + session.termCode + "&session_id=" + session.sessionId + "&ws_numb=&sel_aud=dummy" +
                 "&sel_subj=dummy&sel_camp=dummy&sel_sess=dummy&sel_attr=dummy&sel_levl=dummy&sel_schd=dummy&sel_insm=dummy" +
                 "&sel_link=dummy&sel_wait=dummy&sel_day=dummy&sel_begin_hh=dummy&sel_begin_mi=dummy&sel_begin_am_pm=dummy" +
                 "&sel_end_hh=dummy&sel_end_mi=dummy&sel_end_am_pm=dummy&sel_instruct=dummy&sel_special=dummy&sel_resd=dummy" +
@@ -96,34 +293,47 @@ public class CarletonParser implements Parser{
                 "&sel_crn=&sel_special=O&sel_sess=&sel_schd=&sel_instruct=&sel_begin_hh=0&sel_begin_mi=0" +
                 "&sel_begin_am_pm=a&sel_end_hh=0&sel_end_mi=0&sel_end_am_pm=a&sel_day=m&sel_day=t&sel_day=w&sel_day=r" +
                 "&sel_day=f&sel_day=s&sel_day=u&block_button=";
-        DataOutputStream out = new DataOutputStream(connection.getOutputStream());
-        out.writeBytes(parameters);
-        out.flush();
-        String inputLine;
-        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        while ((inputLine = in.readLine()) != null) {
-            buffer.append(inputLine);
-        }
-        in.close();
-        out.close();
-        return htmlToCourses(buffer.toString(), term);
+        try (DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
+            out.writeBytes(parameters);
+            out.flush();
+        }
+        // the courses are read out of the page as it arrives, then the rest is drained so the connection can be reused.
+        // Time spent waiting on the page is fetching, the rest of the time spent reading it is parsing
+        TimedReader timed = new TimedReader(new InputStreamReader(connection.getInputStream()));
+        try (Reader in = new BufferedReader(timed)) {
+            long parsing = System.nanoTime();
+            Collection<Course> courses = htmlToCourses(in, term);
+            parsing = System.nanoTime() - parsing - timed.waited;
+            while (in.skip(8192) > 0) { }
+            Metrics.record(Metrics.Phase.PARSE, parsing);
+            Metrics.record(Metrics.Phase.FETCH, System.nanoTime() - start - parsing);
+            return courses;
+        }
     }
     /**
      * creates the course data from the raw html
-     * @param buffer String of the html we got back
+     * @param html String of the html we got back
+     * @param term String of the term
+     * @return Collection<Course> of the valid courses
+     * @throws Exception thrown if parsing problems are encountered
+     */
+    public Collection<Course> htmlToCourses(String html, String term) throws Exception {
+        return htmlToCourses(new StringReader(html), term);
+    }
+    /**
+     * creates the course data from the html in a single pass, the rows of the third table are read as they come in
+     * and each cell is only looked at once
+     * @param in Reader of the html we got back
      * @param term String of the term
      * @return Collection<Course> of the valid courses
      * @throws Exception thrown if parsing problems are encountered
      */
-    private Collection<Course> htmlToCourses(String buffer, String term) throws Exception {
+    public Collection<Course> htmlToCourses(Reader in, String term) throws Exception {
         // holds parsed courses
         Collection<Course> courses = new LinkedList<Course>();
-        // parse in raw html
-        Document doc = Jsoup.parse(buffer);
-        Elements tables = doc.getElementsByTag("table");
-        Elements rows = tables.get(2).getElementsByTag("tr");
+        HtmlTableReader rows = new HtmlTableReader(in, 2);
         // check if we have any courses
-        if (rows.get(0).toString().contains("DRAFT TIMETABLE")) { return courses; }
+        if (!rows.nextRow() || draft(rows)) { return courses; }
         // parse each course from the htmls rows
         boolean parsingCourse = false;
         int crn = -1;
@@ -133,42 +343,31 @@ public class CarletonParser implements Parser{
         String instructor = null;
         int rank = 0;
         Set<Block> schedule = null;
-        for (int i = 0; i < rows.size(); i++) {
-            if (rows.get(i).getElementsByTag("td").size() >= 2 && rows.get(i).getElementsByTag("td").get(1).text().equals("Open")) {
+        do {
+            if (rows.cells() >= 11 && equals(rows.cell(1), "Open")) {
                 // set flag to true
                 parsingCourse = true;
                 // parse crn, subject, section, type, instructor
-                crn = Integer.parseInt(rows.get(i).getElementsByTag("td").get(2).getElementsByTag("font").get(0).text());
-                subject = rows.get(i).getElementsByTag("td").get(3).getElementsByTag("font").get(0).text();
-                section = rows.get(i).getElementsByTag("td").get(4).text();
-                type = rows.get(i).getElementsByTag("td").get(7).text();
-                instructor = rows.get(i).getElementsByTag("td").get(10).text();
+                crn = toInt(rows.cell(2), 0);
+                subject = rows.cell(3).toString();
+                section = rows.cell(4).toString();
+                type = rows.cell(7).toString();
+                instructor = rows.cell(10).toString();
                 schedule = new LinkedHashSet<Block>();
-            } else if (rows.get(i).getElementsByTag("td").size() >= 2 && rows.get(i).getElementsByTag("td").get(1).html().contains("Meeting Date:")) {
-                // parse dates
-                String rowText = rows.get(i).getElementsByTag("td").get(1).text();
-                int startTime = Integer.parseInt(rowText.split("Time:")[1].split("Building:")[0].split(" - ")[0].trim().replace(":",""));
-                int endTime = Integer.parseInt(rowText.split("Time:")[1].split("Building:")[0].split(" - ")[1].trim().replace(":",""));
-                if (rowText.contains("Mon")) {
-                    schedule.add(new Block(Day.Monday, term, startTime, endTime));
-                }
-                if (rowText.contains("Tue")) {
-                    schedule.add(new Block(Day.Tuesday, term, startTime, endTime));
-                }
-                if (rowText.contains("Wed")) {
-                    schedule.add(new Block(Day.Wednesday, term, startTime, endTime));
-                }
-                if (rowText.contains("Thu")) {
-                    schedule.add(new Block(Day.Thursday, term, startTime, endTime));
-                }
-                if (rowText.contains("Fri")) {
-                    schedule.add(new Block(Day.Friday, term, startTime, endTime));
-                }
-                if (rowText.contains("Sat")) {
-                    schedule.add(new Block(Day.Saturday, term, startTime, endTime));
-                }
-                if (rowText.contains("Sun")) {
-                    schedule.add(new Block(Day.Sunday, term, startTime, endTime));
+            } else if (rows.cells() >= 2 && indexOf(rows.cell(1), "Meeting Date:") >= 0) {
+                // parse dates, the time is HH:MM - HH:MM after Time:
+                CharSequence rowText = rows.cell(1);
+                int time = indexOf(rowText, "Time:");
+                int dash = time < 0 ? -1 : indexOf(rowText, "-", time);
+                int startTime = time < 0 ? -1 : toInt(rowText, time + 5);
+                int endTime = dash < 0 ? -1 : toInt(rowText, dash + 1);
+                // meetings without a time (to be announced) don't take up any blocks
+                if (schedule != null && startTime >= 0 && endTime >= 0) {
+                    for (Day day : Day.values()) {
+                        if (indexOf(rowText, DAY_NAMES[day.ordinal()]) >= 0) {
+                            schedule.add(new Block(day, term, startTime, endTime));
+                        }
+                    }
                 }
             } else if (parsingCourse) {
                 // if everything went well create a course from the parsed data
@@ -184,9 +383,56 @@ public class CarletonParser implements Parser{
                 instructor = null;
                 schedule = null;
             }
-        }
+        } while (rows.nextRow());
         return courses;
     }
+    // helper for the banner row shown instead of courses when the timetable is a draft
+    private static boolean draft(HtmlTableReader rows) {
+        for (int i = 0; i < rows.cells(); i++) {
+            if (indexOf(rows.cell(i), "DRAFT TIMETABLE") >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    // helper for comparing a cell to a String without making a String out of the cell
+    private static boolean equals(CharSequence text, String value) {
+        return text.length() == value.length() && indexOf(text, value) == 0;
+    }
+    // helper for finding a String in a cell
+    private static int indexOf(CharSequence text, String value) {
+        return indexOf(text, value, 0);
+    }
+    // helper for finding a String in a cell, starting at an index
+    private static int indexOf(CharSequence text, String value, int from) {
+        for (int i = from; i <= text.length() - value.length(); i++) {
+            int j = 0;
+            while (j < value.length() && text.charAt(i + j) == value.charAt(j)) {
+                j++;
+            }
+            if (j == value.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    // helper for reading the digits of a number or time (08:05 is 805) starting at an index, -1 if there are none
+    private static int toInt(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        int value = -1;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = Math.max(value, 0) * 10 + (c - '0');
+            } else if (c != ':' || value < 0) {
+                break;
+            }
+        }
+        return value;
+    }
     // helper for extracting the termCode or sessionId from a html line
     private String getValue(String inputLine) {
         String value = "";
@@ -199,4 +445,52 @@ public class CarletonParser implements Parser{
         }
         return value;
     }
+    /**
+     * makes an executor for the searches, virtual threads where the runtime has them
+     * @param threads int of the number of platform threads otherwise
+     * @return ExecutorService for the searches
+     */
+    static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+    // Session is the term code and session id of a term, and when they stop being reused
+    private static class Session {
+        private final String termCode;
+        private final String sessionId;
+        private final long expires;
+        private Session(String termCode, String sessionId, long expires) {
+            this.termCode = termCode;
+            this.sessionId = sessionId;
+            this.expires = expires;
+        }
+    }
+    // TimedReader adds up how long reads of the reader under it blocked for
+    private static class TimedReader extends FilterReader {
+        private long waited = 0;
+        private TimedReader(Reader in) {
+            super(in);
+        }
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                waited += System.nanoTime() - start;
+            }
+        }
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, length);
+            } finally {
+                waited += System.nanoTime() - start;
+            }
+        }
+    }
 }
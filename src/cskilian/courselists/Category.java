@@ -1,11 +1,13 @@
 package cskilian.courselists;
+import java.util.Collections;
 import java.util.SortedSet;
 import java.util.TreeSet;
 // Category is a dummy node type in the tree for determining recursion behaviour in the tree. We create combinations
 // of all the children at a Category node level
 public class Category implements Comparable<Category> {
     public final String type;
-    private final SortedSet<Course> courses;
+    private SortedSet<Course> courses;
+    private boolean frozen = false;
     /**
      * Constructor
      * @param type String of type
@@ -21,8 +23,25 @@ public class Category implements Comparable<Category> {
     public SortedSet<Course> getCourses() {
         return this.courses;
     }
-    public boolean equals(Category other) {
-        return this.type.equals(other.type);
+    /**
+     * makes the category and everything under it read only
+     */
+    public void freeze() {
+        if (!frozen) {
+            for (Course course : courses) {
+                course.freeze();
+            }
+            courses = Collections.unmodifiableSortedSet(courses);
+            frozen = true;
+        }
+    }
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Category && this.type.equals(((Category) other).type);
+    }
+    @Override
+    public int hashCode() {
+        return this.type.hashCode();
     }
     public int compareTo(Category other) {
         return this.type.compareTo(other.type);
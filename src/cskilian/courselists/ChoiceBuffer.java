@@ -0,0 +1,121 @@
+package cskilian.courselists;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+// ChoiceBuffer keeps a list of course sets packed in columns: every course is stored once in a table, and a set is a
+// run of ints in 1 shared array that point into it, so a set costs 4 bytes a course instead of a tree of its own. Sets
+// are appended in order and never change, get hands out a read only view of 1 of them
+public class ChoiceBuffer extends AbstractList<Set<Course>> {
+    // every course that's in a set, by the id the sets point at
+    private final List<Course> table = new ArrayList<Course>();
+    private final Map<Course, Integer> ids = new HashMap<Course, Integer>();
+    // ids of the courses of every set one after the other, sorted within a set
+    private int[] columns;
+    // offsets[i] is where the i-th set starts in columns, offsets[size] is where the next one goes
+    private int[] offsets;
+    private int size = 0;
+    /**
+     * Constructor
+     * @param capacity int of the number of sets expected, it grows past it if needed
+     */
+    public ChoiceBuffer(int capacity) {
+        this.offsets = new int[Math.max(1, capacity) + 1];
+        this.columns = new int[Math.max(1, capacity) * 4];
+    }
+    /**
+     * adds the courses of a schedule as the last set
+     * @param schedule Schedule of the courses
+     */
+    public void append(Schedule schedule) {
+        Course[] courses = new Course[schedule.size()];
+        int n = 0;
+        for (Course course : schedule) {
+            courses[n++] = course;
+        }
+        // the same order a TreeSet of them would have
+        Arrays.sort(courses);
+        if (size + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        int start = offsets[size];
+        if (start + n > columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(columns.length * 2, start + n));
+        }
+        for (int i = 0; i < n; i++) {
+            Integer id = ids.get(courses[i]);
+            if (id == null) {
+                id = table.size();
+                table.add(courses[i]);
+                ids.put(courses[i], id);
+            }
+            columns[start + i] = id;
+        }
+        offsets[++size] = start + n;
+    }
+    /**
+     * getter for 1 set
+     * @param index int of the position of the set
+     * @return Set<Course> of a read only view of the courses, in their natural order
+     */
+    @Override
+    public Set<Course> get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("no set " + index + " of " + size);
+        }
+        return new Row(offsets[index], offsets[index + 1]);
+    }
+    @Override
+    public int size() {
+        return size;
+    }
+    // Row is a view of the courses of 1 set
+    private class Row extends AbstractSet<Course> {
+        private final int start;
+        private final int end;
+        private Row(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+        @Override
+        public Iterator<Course> iterator() {
+            return new Iterator<Course>() {
+                private int next = start;
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+                @Override
+                public Course next() {
+                    if (next >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    return table.get(columns[next++]);
+                }
+            };
+        }
+        @Override
+        public boolean contains(Object other) {
+            Integer id = ids.get(other);
+            if (id == null) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (columns[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
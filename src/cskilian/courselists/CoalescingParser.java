@@ -0,0 +1,109 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+// CoalescingParser sits in front of another Parser and merges concurrent fetches of the same course code. The first
+// thread to ask for a (term, subject, number) fetches it, every thread asking while that fetch is still running waits
+// for the same result instead of sending a request of its own. Nothing is kept once the fetch is done, caching is left
+// to the parsers around it
+public class CoalescingParser implements Parser {
+    private final Parser parser;
+    // fetches that are still running, by term, subject and number
+    private final Map<String, CompletableFuture<Collection<Course>>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<Collection<Course>>>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    /**
+     * Constructor
+     * @param parser Parser that does the fetching
+     */
+    public CoalescingParser(Parser parser) {
+        this.parser = parser;
+    }
+    @Override
+    public boolean subordinate(Course course, Course node) {
+        return parser.subordinate(course, node);
+    }
+    @Override
+    public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+        return makeCourses(Collections.singletonList(new String[] {subject, number}), term).get(0);
+    }
+    @Override
+    public List<Collection<Course>> makeCourses(List<String[]> requests, String term) throws Exception {
+        List<CompletableFuture<Collection<Course>>> futures = new ArrayList<CompletableFuture<Collection<Course>>>();
+        // the requests this thread fetches itself, the rest are already being fetched by someone else
+        List<String[]> owned = new ArrayList<String[]>();
+        List<CompletableFuture<Collection<Course>>> promises = new ArrayList<CompletableFuture<Collection<Course>>>();
+        for (String[] request : requests) {
+            CompletableFuture<Collection<Course>> promise = new CompletableFuture<Collection<Course>>();
+            CompletableFuture<Collection<Course>> running = inFlight.putIfAbsent(key(request, term), promise);
+            if (running == null) {
+                owned.add(request);
+                promises.add(promise);
+                futures.add(promise);
+                fetches.incrementAndGet();
+            } else {
+                futures.add(running);
+                coalesced.incrementAndGet();
+            }
+        }
+        if (!owned.isEmpty()) {
+            try {
+                // the wrapped parser may fetch them side by side
+                List<Collection<Course>> fetched = parser.makeCourses(owned, term);
+                for (int i = 0; i < owned.size(); i++) {
+                    promises.get(i).complete(fetched.get(i));
+                }
+            } catch (Exception | Error e) {
+                for (CompletableFuture<Collection<Course>> promise : promises) {
+                    promise.completeExceptionally(e);
+                }
+            } finally {
+                for (int i = 0; i < owned.size(); i++) {
+                    inFlight.remove(key(owned.get(i), term), promises.get(i));
+                }
+            }
+        }
+        List<Collection<Course>> out = new ArrayList<Collection<Course>>();
+        for (CompletableFuture<Collection<Course>> future : futures) {
+            try {
+                // every waiter gets a collection of its own, the courses in it are shared
+                out.add(new ArrayList<Course>(future.get()));
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        return out;
+    }
+    /**
+     * getter for the number of course codes being fetched right now
+     * @return int of the number of fetches in flight
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+    /**
+     * getter for the number of course codes fetched from the wrapped parser
+     * @return long of the number of fetches
+     */
+    public long getFetches() {
+        return fetches.get();
+    }
+    /**
+     * getter for the number of course codes that waited on a fetch that was already running
+     * @return long of the number of coalesced requests
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+    // helper for the key of a course code in a term
+    private static String key(String[] request, String term) {
+        return term + "\u0000" + request[0] + "\u0000" + request[1];
+    }
+}
@@ -0,0 +1,361 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+// ConflictGraph is every pair of conflicting sections of a catalog, worked out once instead of every time 2 sections
+// meet in a partial schedule. Every section gets a dense id and a bitset of the ids it conflicts with, so testing a
+// section against a whole set of sections is 1 AND per 64 sections. The pairs are found by sweeping the blocks of each
+// day in order of their start, which only ever looks at blocks that overlap. A graph never changes, update makes a new
+// one that only sweeps the sections that were added and shares the rows of everything else
+public final class ConflictGraph {
+    public static final ConflictGraph EMPTY = new ConflictGraph(new HashMap<Integer, Integer>(), new long[0][],
+            new int[0], new HashMap<String, Interval[]>(), 0);
+    // dense id of every section by crn
+    private final Map<Integer, Integer> ids;
+    // rows[id] is the bitset of the ids that section conflicts with, rows may be shorter than others
+    private final long[][] rows;
+    // ids that were freed by removed sections, reused before new ones are handed out
+    private final int[] free;
+    // blocks of every term and day, sorted by start
+    private final Map<String, Interval[]> days;
+    // number of conflicting pairs
+    private final int pairs;
+    private ConflictGraph(Map<Integer, Integer> ids, long[][] rows, int[] free, Map<String, Interval[]> days, int pairs) {
+        this.ids = ids;
+        this.rows = rows;
+        this.free = free;
+        this.days = days;
+        this.pairs = pairs;
+    }
+    /**
+     * builds the graph of some sections by sweeping the blocks of every day in order of their start
+     * @param courses Collection<Course> of the sections, the dummy root node is left out
+     * @return ConflictGraph of the sections
+     */
+    public static ConflictGraph of(Collection<Course> courses) {
+        List<Course> incoming = new ArrayList<Course>();
+        for (Course course : courses) {
+            if (course.crn != -1) {
+                incoming.add(course);
+            }
+        }
+        Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+        int[] incomingIds = new int[incoming.size()];
+        for (int i = 0; i < incoming.size(); i++) {
+            incomingIds[i] = i;
+            ids.put(incoming.get(i).crn, i);
+        }
+        long[][] rows = new long[incoming.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new long[(rows.length + 63) >>> 6];
+        }
+        Map<String, Interval[]> days = EMPTY.days(Collections.<Integer>emptySet(), incoming, incomingIds);
+        int pairs = 0;
+        // every block that hasn't ended when the next one starts overlaps it
+        List<Interval> active = new ArrayList<Interval>();
+        for (Interval[] day : days.values()) {
+            active.clear();
+            for (Interval interval : day) {
+                int kept = 0;
+                for (Interval open : active) {
+                    if (open.end < interval.start) {
+                        continue;
+                    }
+                    active.set(kept++, open);
+                    if (open.id != interval.id && !isSet(rows[interval.id], open.id)) {
+                        rows[interval.id][open.id >>> 6] |= 1L << open.id;
+                        rows[open.id][interval.id >>> 6] |= 1L << interval.id;
+                        pairs++;
+                    }
+                }
+                active.subList(kept, active.size()).clear();
+                active.add(interval);
+            }
+        }
+        return new ConflictGraph(ids, rows, new int[0], days, pairs);
+    }
+    /**
+     * makes a graph with some sections taken out and others put in. A section that's in both is swept again, so its
+     * blocks may have changed
+     * @param removed Collection<Course> of the sections taken out, by crn
+     * @param added Collection<Course> of the sections put in
+     * @return ConflictGraph with the changes
+     */
+    public ConflictGraph update(Collection<Course> removed, Collection<Course> added) {
+        Map<Integer, Integer> nextIds = new HashMap<Integer, Integer>(ids);
+        List<long[]> nextRows = new ArrayList<long[]>(Arrays.asList(rows));
+        List<Integer> nextFree = new ArrayList<Integer>();
+        for (int id : free) {
+            nextFree.add(id);
+        }
+        int nextPairs = pairs;
+        // rows are copied the first time they're changed, the rest are shared with this graph
+        Set<Integer> copied = new HashSet<Integer>();
+        Set<Integer> gone = new HashSet<Integer>();
+        List<Course> incoming = new ArrayList<Course>();
+        for (Course course : removed) {
+            Integer id = nextIds.remove(course.crn);
+            if (id != null) {
+                gone.add(id);
+            }
+        }
+        for (Course course : added) {
+            if (course.crn == -1) {
+                continue;
+            }
+            Integer id = nextIds.remove(course.crn);
+            if (id != null) {
+                gone.add(id);
+            }
+            incoming.add(course);
+        }
+        for (int id : gone) {
+            long[] row = nextRows.get(id);
+            for (int other = nextSet(row, 0); other >= 0; other = nextSet(row, other + 1)) {
+                if (!gone.contains(other)) {
+                    clear(nextRows, copied, other, id);
+                    nextPairs--;
+                } else if (other > id) {
+                    nextPairs--;
+                }
+            }
+            nextRows.set(id, new long[0]);
+            copied.add(id);
+            nextFree.add(id);
+        }
+        // ids are handed out smallest first, so the bitsets stay as short as they can be
+        Collections.sort(nextFree, Collections.reverseOrder());
+        int[] incomingIds = new int[incoming.size()];
+        for (int i = 0; i < incoming.size(); i++) {
+            int id;
+            if (nextFree.isEmpty()) {
+                id = nextRows.size();
+                nextRows.add(new long[0]);
+            } else {
+                id = nextFree.remove(nextFree.size() - 1);
+            }
+            nextIds.put(incoming.get(i).crn, id);
+            incomingIds[i] = id;
+        }
+        Map<String, Interval[]> nextDays = days(gone, incoming, incomingIds);
+        // the new sections are only checked against blocks that start close enough to overlap them
+        for (int i = 0; i < incoming.size(); i++) {
+            int id = incomingIds[i];
+            for (Block block : incoming.get(i).schedule) {
+                Interval[] day = nextDays.get(key(block));
+                int first = lowerBound(day, block.start - day[0].longest);
+                for (int j = first; j < day.length && day[j].start <= block.end; j++) {
+                    int other = day[j].id;
+                    if (other != id && day[j].end >= block.start && !isSet(nextRows.get(id), other)) {
+                        set(nextRows, copied, id, other);
+                        set(nextRows, copied, other, id);
+                        nextPairs++;
+                    }
+                }
+            }
+        }
+        int[] freeIds = new int[nextFree.size()];
+        for (int i = 0; i < freeIds.length; i++) {
+            freeIds[i] = nextFree.get(i);
+        }
+        return new ConflictGraph(nextIds, nextRows.toArray(new long[0][]), freeIds, nextDays, nextPairs);
+    }
+    /**
+     * getter for the dense id of a section
+     * @param course Course of the section
+     * @return int of the id, -1 if it isn't in the graph
+     */
+    public int id(Course course) {
+        Integer id = ids.get(course.crn);
+        return id == null ? -1 : id;
+    }
+    /**
+     * checks if 2 sections conflict, the same as Schedule.coursesConflict for sections in the graph
+     * @param c1 Course 1
+     * @param c2 Course 2
+     * @return true if they conflict, false otherwise or if either isn't in the graph
+     */
+    public boolean conflicts(Course c1, Course c2) {
+        int id1 = id(c1);
+        int id2 = id(c2);
+        return id1 >= 0 && id2 >= 0 && isSet(rows[id1], id2);
+    }
+    /**
+     * makes the bitset of a set of sections, for conflictsWithAny
+     * @param courses Iterable<Course> of the sections, ones that aren't in the graph are left out
+     * @return long[] of the bitset of their ids
+     */
+    public long[] set(Iterable<Course> courses) {
+        long[] set = new long[(rows.length + 63) >>> 6];
+        for (Course course : courses) {
+            int id = id(course);
+            if (id >= 0) {
+                set[id >>> 6] |= 1L << id;
+            }
+        }
+        return set;
+    }
+    /**
+     * checks if a section conflicts with any section of a set
+     * @param course Course of the section
+     * @param set long[] of the bitset made by set
+     * @return true if it conflicts with any of them, false otherwise or if it isn't in the graph
+     */
+    public boolean conflictsWithAny(Course course, long[] set) {
+        int id = id(course);
+        if (id < 0) {
+            return false;
+        }
+        long[] row = rows[id];
+        for (int w = 0; w < Math.min(row.length, set.length); w++) {
+            if ((row[w] & set[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * getter for the number of sections
+     * @return int of the number of sections in the graph
+     */
+    public int size() {
+        return ids.size();
+    }
+    /**
+     * getter for the number of conflicting pairs
+     * @return int of the number of pairs
+     */
+    public int pairs() {
+        return pairs;
+    }
+    /**
+     * makes the sorted blocks of every day without the sections that are gone and with the new ones merged in
+     * @param gone Set<Integer> of the ids of sections that are gone
+     * @param incoming List<Course> of the new sections
+     * @param incomingIds int[] of the ids of the new sections
+     * @return Map<String, Interval[]> of the blocks of every term and day, sorted by start
+     */
+    private Map<String, Interval[]> days(Set<Integer> gone, List<Course> incoming, int[] incomingIds) {
+        Map<String, List<Interval>> changed = new HashMap<String, List<Interval>>();
+        for (int i = 0; i < incoming.size(); i++) {
+            for (Block block : incoming.get(i).schedule) {
+                changed.computeIfAbsent(key(block), k -> new ArrayList<Interval>())
+                        .add(new Interval(block.start, block.end, incomingIds[i]));
+            }
+        }
+        Map<String, Interval[]> next = new HashMap<String, Interval[]>();
+        Set<String> keys = new HashSet<String>(days.keySet());
+        keys.addAll(changed.keySet());
+        for (String key : keys) {
+            Interval[] old = days.containsKey(key) ? days.get(key) : new Interval[0];
+            List<Interval> fresh = changed.containsKey(key) ? changed.get(key) : Collections.<Interval>emptyList();
+            boolean touched = !fresh.isEmpty();
+            for (int i = 0; i < old.length && !touched; i++) {
+                touched = gone.contains(old[i].id);
+            }
+            if (!touched) {
+                next.put(key, old);
+                continue;
+            }
+            List<Interval> merged = new ArrayList<Interval>(fresh);
+            for (Interval interval : old) {
+                if (!gone.contains(interval.id)) {
+                    merged.add(interval);
+                }
+            }
+            if (merged.isEmpty()) {
+                continue;
+            }
+            Interval[] sorted = merged.toArray(new Interval[0]);
+            Arrays.sort(sorted, (a, b) -> Integer.compare(a.start, b.start));
+            // the longest block bounds how far back a block that overlaps a given time can start
+            int longest = 0;
+            for (Interval interval : sorted) {
+                longest = Math.max(longest, interval.end - interval.start);
+            }
+            sorted[0] = new Interval(sorted[0].start, sorted[0].end, sorted[0].id, longest);
+            next.put(key, sorted);
+        }
+        return next;
+    }
+    // helper for the first block that starts at or after a time
+    private static int lowerBound(Interval[] day, int start) {
+        int low = 0;
+        int high = day.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (day[middle].start < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    // helper for the key of the term and day of a block
+    private static String key(Block block) {
+        return block.term + "\u0000" + block.day.ordinal();
+    }
+    // helper for testing a bit of a row that may be too short to have it
+    private static boolean isSet(long[] row, int bit) {
+        return (bit >>> 6) < row.length && (row[bit >>> 6] & (1L << bit)) != 0;
+    }
+    // helper for setting a bit, the row is copied and grown first if it's still shared
+    private static void set(List<long[]> rows, Set<Integer> copied, int id, int bit) {
+        long[] row = rows.get(id);
+        if (copied.add(id) || (bit >>> 6) >= row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length, (bit >>> 6) + 1));
+            rows.set(id, row);
+        }
+        row[bit >>> 6] |= 1L << bit;
+    }
+    // helper for clearing a bit, the row is copied first if it's still shared
+    private static void clear(List<long[]> rows, Set<Integer> copied, int id, int bit) {
+        long[] row = rows.get(id);
+        if ((bit >>> 6) >= row.length) {
+            return;
+        }
+        if (copied.add(id)) {
+            row = row.clone();
+            rows.set(id, row);
+        }
+        row[bit >>> 6] &= ~(1L << bit);
+    }
+    // helper for the first set bit at or after from, -1 if there isn't one
+    private static int nextSet(long[] row, int from) {
+        int w = from >>> 6;
+        if (w >= row.length) {
+            return -1;
+        }
+        long word = row[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == row.length) {
+                return -1;
+            }
+            word = row[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+    // Interval is 1 block of a section, the first interval of a day also carries the length of the longest one
+    private static class Interval {
+        private final int start;
+        private final int end;
+        private final int id;
+        private final int longest;
+        private Interval(int start, int end, int id) {
+            this(start, end, id, 0);
+        }
+        private Interval(int start, int end, int id, int longest) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.longest = longest;
+        }
+    }
+}
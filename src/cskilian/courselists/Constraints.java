@@ -0,0 +1,222 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+// Constraints are the hard limits a student puts on their schedule, ie. no classes before 10:00, Fridays off or at most
+// 4 days on campus. A schedule that breaks any of them is never made. Blocked times, the earliest start and the latest
+// end only depend on 1 section, so a section that breaks them is dropped from the tree before anything is combined with
+// it. The number of days and the longest stretch of classes only grow as sections are added, so a partial schedule
+// that breaks them is dropped along with everything that would have been built on it. Constraints never change, every
+// with method makes new ones
+public final class Constraints {
+    // no constraints at all
+    public static final Constraints NONE = new Constraints(Collections.<Block>emptyList(), -1, -1, 0, 0);
+    // longest break in minutes between 2 classes that still counts as being in class, a break this long included.
+    // Carleton gives 10 minutes
+    public static final int BREAK_MINUTES = 15;
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    // times that are blocked on every term, the term of the blocks isn't used
+    private final List<Block> blocked;
+    // earliest start and latest end in HHMM, -1 if there isn't one
+    private final int earliest;
+    private final int latest;
+    // most days on campus and longest stretch of classes in minutes, 0 if there isn't one
+    private final int maxDays;
+    private final int maxConsecutive;
+    private Constraints(List<Block> blocked, int earliest, int latest, int maxDays, int maxConsecutive) {
+        this.blocked = blocked;
+        this.earliest = earliest;
+        this.latest = latest;
+        this.maxDays = maxDays;
+        this.maxConsecutive = maxConsecutive;
+    }
+    /**
+     * blocks a time window on a day, sections that overlap it are dropped. A section that ends as the window starts
+     * doesn't overlap it
+     * @param day Day of the window
+     * @param start int of the start in 24-hour HHMM
+     * @param end int of the end in 24-hour HHMM
+     * @return Constraints with the window blocked
+     */
+    public Constraints withBlocked(Day day, int start, int end) {
+        if (start < 0 || end > 2359 || start >= end) {
+            throw new IllegalArgumentException("not a time window: " + start + "-" + end);
+        }
+        List<Block> windows = new ArrayList<Block>(blocked);
+        windows.add(new Block(day, "", start, end));
+        return new Constraints(Collections.unmodifiableList(windows), earliest, latest, maxDays, maxConsecutive);
+    }
+    /**
+     * blocks a whole day
+     * @param day Day that has no classes
+     * @return Constraints with the day blocked
+     */
+    public Constraints withBlocked(Day day) {
+        return withBlocked(day, 0, 2359);
+    }
+    /**
+     * sets the earliest time a class can start
+     * @param earliest int of the time in 24-hour HHMM, -1 for any time
+     * @return Constraints with the earliest start
+     */
+    public Constraints withEarliestStart(int earliest) {
+        return new Constraints(blocked, earliest, latest, maxDays, maxConsecutive);
+    }
+    /**
+     * sets the latest time a class can end
+     * @param latest int of the time in 24-hour HHMM, -1 for any time
+     * @return Constraints with the latest end
+     */
+    public Constraints withLatestEnd(int latest) {
+        return new Constraints(blocked, earliest, latest, maxDays, maxConsecutive);
+    }
+    /**
+     * sets the most days a week with classes, in any 1 term
+     * @param maxDays int of the number of days, 0 for any number
+     * @return Constraints with the most days
+     */
+    public Constraints withMaxDays(int maxDays) {
+        return new Constraints(blocked, earliest, latest, Math.max(0, maxDays), maxConsecutive);
+    }
+    /**
+     * sets the longest stretch of classes in a day, classes at most BREAK_MINUTES apart are 1 stretch. A break of exactly
+     * BREAK_MINUTES, ie. from 9:55 to 10:10, doesn't end a stretch, a longer one does
+     * @param minutes int of the length of the stretch in minutes, 0 for any length
+     * @return Constraints with the longest stretch
+     */
+    public Constraints withMaxConsecutive(int minutes) {
+        return new Constraints(blocked, earliest, latest, maxDays, Math.max(0, minutes));
+    }
+    /**
+     * checks the constraints of a single section
+     * @param course Course of a section
+     * @return true if no block of the section is blocked, too early or too late
+     */
+    public boolean allows(Course course) {
+        // the dummy root node has no blocks
+        if (course.schedule == null) {
+            return true;
+        }
+        for (Block block : course.schedule) {
+            if (earliest >= 0 && block.start < earliest || latest >= 0 && block.end > latest) {
+                return false;
+            }
+            for (Block window : blocked) {
+                if (window.day == block.day && block.start < window.end && block.end > window.start) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    /**
+     * checks the constraints that depend on a whole schedule, adding sections to a schedule that breaks them never
+     * makes it valid again
+     * @param occupancy Occupancy of a partial or complete schedule
+     * @return true if it's on few enough days and has no stretch of classes that's too long
+     */
+    public boolean allows(Occupancy occupancy) {
+        if (maxDays > 0 && occupancy.days() > maxDays) {
+            return false;
+        }
+        return maxConsecutive <= 0 || occupancy.longestRun(BREAK_MINUTES) <= maxConsecutive;
+    }
+    /**
+     * checks if there are constraints on whole schedules, if not allows(Occupancy) is always true
+     * @return true if there is a most number of days or a longest stretch
+     */
+    public boolean limitsSchedules() {
+        return maxDays > 0 || maxConsecutive > 0;
+    }
+    /**
+     * checks if there are no constraints at all
+     * @return true if everything is allowed
+     */
+    public boolean isEmpty() {
+        return blocked.isEmpty() && earliest < 0 && latest < 0 && !limitsSchedules();
+    }
+    /**
+     * reads constraints separated by commas, ie. "from 1000, until 1800, days 4, hours 3, Fri, Mon 1200-1300". Days
+     * alone are blocked for the whole day, and hours can have a fraction (ie. 2.5)
+     * @param text String of the constraints, empty for none
+     * @return Constraints that were read
+     * @throws IllegalArgumentException thrown if a constraint isn't valid
+     */
+    public static Constraints parse(String text) {
+        Constraints constraints = NONE;
+        for (String item : text.split(",")) {
+            String[] words = item.trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            try {
+                switch (words[0].toLowerCase()) {
+                    case "from": constraints = constraints.withEarliestStart(Integer.parseInt(words[1])); break;
+                    case "until": constraints = constraints.withLatestEnd(Integer.parseInt(words[1])); break;
+                    case "days": constraints = constraints.withMaxDays(Integer.parseInt(words[1])); break;
+                    case "hours":
+                        constraints = constraints.withMaxConsecutive(Math.round(Float.parseFloat(words[1]) * 60));
+                        break;
+                    default:
+                        Day day = toDay(words[0]);
+                        if (words.length == 1) {
+                            constraints = constraints.withBlocked(day);
+                        } else {
+                            String[] times = words[1].split("-");
+                            constraints = constraints.withBlocked(day, Integer.parseInt(times[0]),
+                                    Integer.parseInt(times[1]));
+                        }
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("not a constraint: " + item.trim());
+            }
+        }
+        return constraints;
+    }
+    // helper for a day by its first 3 letters
+    private static Day toDay(String name) {
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (name.length() >= 3 && DAY_NAMES[i].equalsIgnoreCase(name.substring(0, 3))) {
+                return Day.values()[i];
+            }
+        }
+        throw new IllegalArgumentException("not a constraint: " + name);
+    }
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) { return true; }
+        if (!(other instanceof Constraints)) { return false; }
+        Constraints that = (Constraints) other;
+        return blocked.equals(that.blocked) && earliest == that.earliest && latest == that.latest
+                && maxDays == that.maxDays && maxConsecutive == that.maxConsecutive;
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(blocked, earliest, latest, maxDays, maxConsecutive);
+    }
+    /**
+     * writes the constraints the way parse reads them
+     * @return String of the constraints
+     */
+    @Override
+    public String toString() {
+        List<String> items = new ArrayList<String>();
+        if (earliest >= 0) {
+            items.add("from " + earliest);
+        }
+        if (latest >= 0) {
+            items.add("until " + latest);
+        }
+        if (maxDays > 0) {
+            items.add("days " + maxDays);
+        }
+        if (maxConsecutive > 0) {
+            items.add("hours " + maxConsecutive / 60f);
+        }
+        for (Block window : blocked) {
+            items.add(DAY_NAMES[window.day.ordinal()] + " " + window.start + "-" + window.end);
+        }
+        return String.join(", ", items);
+    }
+}
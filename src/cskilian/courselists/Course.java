@@ -1,4 +1,5 @@
 package cskilian.courselists;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.SortedSet;
@@ -14,8 +15,12 @@ public class Course implements Comparable<Course> {
     public final String type;
     public final String instructor;
     public final Set<Block> schedule;
-    private int rank;
-    private final SortedSet<Category> categories;
+    // bitmap of the time slots taken up by schedule, used for fast conflict checks
+    public final Occupancy occupancy;
+    // the rank the parser gave it, sessions keep their own ranks on top of it
+    private final int rank;
+    private SortedSet<Category> categories;
+    private boolean frozen = false;
     // the default constructor will create a dummy root node for the course tree
     public Course() {
         crn = -1;
@@ -25,6 +30,7 @@ public class Course implements Comparable<Course> {
         instructor = null;
         rank = Integer.MIN_VALUE;
         schedule = null;
+        occupancy = Occupancy.EMPTY;
         categories = new TreeSet<Category>();
     }
 
@@ -46,17 +52,49 @@ public class Course implements Comparable<Course> {
         this.instructor = instructor;
         this.rank = rank;
         this.schedule = new LinkedHashSet<Block>(schedule);
+        this.occupancy = Occupancy.of(this.schedule);
         categories = new TreeSet<Category>();
     }
     /**
-     * checks if the 2 courses are equal based on matching crn or if the subject, section and types are equal
-     * @param other Course that is compared to
+     * Constructor for a copy of a course without its children, the schedule is shared since it isn't changed
+     * @param course Course that is copied
+     */
+    public Course(Course course) {
+        this.crn = course.crn;
+        this.subject = course.subject;
+        this.section = course.section;
+        this.type = course.type;
+        this.instructor = course.instructor;
+        this.rank = course.rank;
+        this.schedule = course.schedule;
+        this.occupancy = course.occupancy;
+        categories = new TreeSet<Category>();
+    }
+    /**
+     * checks if the 2 courses are equal based on matching crn, the dummy root node is only equal to itself
+     * @param other Object that is compared to
      * @return true if they're equal, false otherwise
      */
-    public boolean equals(Course other) {
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) { return true; }
+        // this is for the dummy node
+        if (crn == -1 || !(other instanceof Course)) { return false; }
+        return crn == ((Course) other).crn;
+    }
+    /**
+     * checks if the 2 courses have the same subject, section and type
+     * @param other Course that is compared to
+     * @return true if they're the same section, false otherwise
+     */
+    public boolean sameSection(Course other) {
         // this is for the dummy node
-        if (crn == -1) { return false; }
-        return crn == other.crn || (subject.equals(other.subject) && section.equals(other.section) && type.equals(other.type));
+        if (crn == -1 || other.crn == -1) { return false; }
+        return subject.equals(other.subject) && section.equals(other.section) && type.equals(other.type);
+    }
+    @Override
+    public int hashCode() {
+        return crn;
     }
     /**
      * returns the difference of their crns
@@ -73,13 +111,6 @@ public class Course implements Comparable<Course> {
     public int getRank() {
         return this.rank;
     }
-    /**
-     * Setter for rank
-     * @param rank int of the rank
-     */
-    public void setRank(int rank) {
-        this.rank = rank;
-    }
     /**
      * getter for its children nodes
      * @return Set<Category> of the children
@@ -87,6 +118,18 @@ public class Course implements Comparable<Course> {
     public Set<Category> getCategories() {
         return this.categories;
     }
+    /**
+     * makes the course and everything under it read only, so a finished tree can be shared between threads
+     */
+    public void freeze() {
+        if (!frozen) {
+            for (Category category : categories) {
+                category.freeze();
+            }
+            categories = Collections.unmodifiableSortedSet(categories);
+            frozen = true;
+        }
+    }
     @Override
     public String toString() {
         if (subject.equals("root")) {
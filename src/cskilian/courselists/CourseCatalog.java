@@ -0,0 +1,429 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+// CourseCatalog is a snapshot of the course tree that never changes once it's made, so any number of threads can
+// solve on it at once without locking. Changes make a new snapshot: every subject is its own frozen subtree, and the
+// subjects a change doesn't touch are shared with the old snapshot, along with the combinations already made for them.
+// The courses it's given are copied, the catalog's own courses must not be changed by anyone. The conflict graph of the
+// sections is made the first time it's asked for, after that every change only sweeps the sections it touched
+public class CourseCatalog {
+    private final Parser parser;
+    // every subject by name, in the order of the root categories
+    private final Map<String, Subject> subjects;
+    private final Course root;
+    // indexes of every course in the tree by crn and by subject, section and type
+    private final Map<Integer, Course> crns;
+    private final Map<String, Course> sections;
+    // every conflicting pair of sections, null until it's asked for. A selected catalog shares the graph of the one it
+    // was selected from, sections that aren't in it are never asked about
+    private volatile ConflictGraph conflicts;
+    /**
+     * makes an empty catalog
+     * @param parser Parser that decides which course goes under which
+     * @return CourseCatalog without any courses
+     */
+    public static CourseCatalog empty(Parser parser) {
+        return new CourseCatalog(parser, new TreeMap<String, Subject>());
+    }
+    /**
+     * Constructor
+     * @param parser Parser that decides which course goes under which
+     * @param subjects Map<String, Subject> of every subject, sorted by name
+     */
+    private CourseCatalog(Parser parser, Map<String, Subject> subjects) {
+        this.parser = parser;
+        this.subjects = Collections.unmodifiableMap(subjects);
+        Map<Integer, Course> crns = new HashMap<Integer, Course>();
+        Map<String, Course> sections = new HashMap<String, Course>();
+        this.root = new Course();
+        for (Subject subject : subjects.values()) {
+            root.getCategories().addAll(subject.tree.getCategories());
+            for (Course course : subject.courses) {
+                crns.put(course.crn, course);
+                sections.put(key(course.subject, course.section, course.type), course);
+            }
+        }
+        root.freeze();
+        this.crns = Collections.unmodifiableMap(crns);
+        this.sections = Collections.unmodifiableMap(sections);
+    }
+    /**
+     * makes a catalog with the courses added, a course with the crn of 1 that's already in replaces it
+     * @param courses Collection<Course> of valid courses
+     * @return CourseCatalog with the courses
+     */
+    public CourseCatalog with(Collection<Course> courses) {
+        // group the new courses by the subject they change
+        Map<String, Map<Integer, Course>> changed = new LinkedHashMap<String, Map<Integer, Course>>();
+        for (Course course : courses) {
+            Course old = crns.get(course.crn);
+            if (old != null && !old.subject.equals(course.subject)) {
+                changed(changed, old.subject).remove(course.crn);
+            }
+            changed(changed, course.subject).put(course.crn, course);
+        }
+        return change(changed);
+    }
+    /**
+     * makes a catalog with 1 course added
+     * @param course Course of a valid course
+     * @return CourseCatalog with the course
+     */
+    public CourseCatalog with(Course course) {
+        return with(Collections.singletonList(course));
+    }
+    /**
+     * makes a catalog without a course, a removed lecture takes its labs and tutorials with it
+     * @param crn int of the course registration number
+     * @return CourseCatalog without the course, this one if it isn't in the catalog
+     */
+    public CourseCatalog without(int crn) {
+        Course course = crns.get(crn);
+        if (course == null) {
+            return this;
+        }
+        Map<String, Map<Integer, Course>> changed = new LinkedHashMap<String, Map<Integer, Course>>();
+        changed(changed, course.subject).remove(crn);
+        return change(changed);
+    }
+    /**
+     * makes a catalog without some courses in 1 go, removed lectures take their labs and tutorials with them
+     * @param crns Collection<Integer> of the course registration numbers, ones that aren't in the catalog are ignored
+     * @return CourseCatalog without the courses, this one if none of them are in the catalog
+     */
+    public CourseCatalog without(Collection<Integer> crns) {
+        Map<String, Map<Integer, Course>> changed = new LinkedHashMap<String, Map<Integer, Course>>();
+        for (int crn : crns) {
+            Course course = this.crns.get(crn);
+            if (course != null) {
+                changed(changed, course.subject).remove(crn);
+            }
+        }
+        return changed.isEmpty() ? this : change(changed);
+    }
+    /**
+     * makes a catalog without a course, by subject, section and type
+     * @param subject String of the subject (ie. COMP1805)
+     * @param section String of the section (ie. B1)
+     * @param type String of type (ie. Lecture)
+     * @return CourseCatalog without the course, this one if it isn't in the catalog
+     */
+    public CourseCatalog without(final String subject, final String section, final String type) {
+        Course course = get(subject, section, type);
+        return course == null ? this : without(course.crn);
+    }
+    /**
+     * makes a catalog of only some of the subjects, it shares everything with this one
+     * @param names Collection<String> of the subjects that are kept, ones that aren't in the catalog are ignored
+     * @return CourseCatalog of the subjects
+     */
+    public CourseCatalog select(Collection<String> names) {
+        Map<String, Subject> kept = new TreeMap<String, Subject>();
+        for (String name : names) {
+            Subject subject = subjects.get(name);
+            if (subject != null) {
+                kept.put(name, subject);
+            }
+        }
+        CourseCatalog selected = new CourseCatalog(parser, kept);
+        selected.conflicts = conflicts;
+        return selected;
+    }
+    /**
+     * getter for the dummy root node of the tree, the tree is read only
+     * @return Course of the root
+     */
+    public Course getRoot() {
+        return root;
+    }
+    /**
+     * getter for the parser the tree was built with
+     * @return Parser of the catalog
+     */
+    public Parser getParser() {
+        return parser;
+    }
+    /**
+     * getter for the names of the subjects
+     * @return Set<String> of every subject in the catalog
+     */
+    public Set<String> getSubjects() {
+        return subjects.keySet();
+    }
+    /**
+     * gets a course with the given course registration number
+     * @param crn int of the course registration number
+     * @return Course if the course is found, null otherwise
+     */
+    public Course get(int crn) {
+        return crns.get(crn);
+    }
+    /**
+     * gets a course with the given subject, section and type
+     * @param subject String of subject(ie. COMP1805)
+     * @param section String of section (ie. B1)
+     * @param type String of type (ie. Lecture)
+     * @return Course if the course is found, null otherwise
+     */
+    public Course get(final String subject, final String section, final String type) {
+        return sections.get(key(subject, section, type));
+    }
+    /**
+     * returns all courses in the tree once each, every course comes before its children
+     * @return Collection<Course> of all courses, empty if there are none
+     */
+    public Collection<Course> getAll() {
+        return new LinkedHashSet<Course>(CourseTree.getAll(root));
+    }
+    /**
+     * checks if the catalog contains a given course, by registration number or by subject, section and type
+     * @param course Course to be checked
+     * @return true if it's in the catalog, false otherwise
+     */
+    public boolean contains(Course course) {
+        // the dummy root node is never contained
+        if (course.crn == -1) { return false; }
+        return crns.containsKey(course.crn) || sections.containsKey(key(course.subject, course.section, course.type));
+    }
+    /**
+     * checks if the catalog contains a given course by registration number
+     * @param crn int of the course registration number
+     * @return true if it's in the catalog, false otherwise
+     */
+    public boolean contains(int crn) {
+        return crns.containsKey(crn);
+    }
+    /**
+     * checks if the catalog contains a given course by subject, section and type
+     * @param subject String of the subject (ie. COMP1805)
+     * @param section String of the section (ie. B1)
+     * @param type String of the type (ie. Lecture)
+     * @return true if it's in the catalog, false otherwise
+     */
+    public boolean contains(final String subject, final String section, final String type) {
+        return sections.containsKey(key(subject, section, type));
+    }
+    /**
+     * getter for the conflict graph of the sections, it's made the first time it's asked for
+     * @return ConflictGraph of every conflicting pair of sections in the catalog
+     */
+    public ConflictGraph getConflicts() {
+        ConflictGraph graph = conflicts;
+        if (graph == null) {
+            synchronized (this) {
+                graph = conflicts;
+                if (graph == null) {
+                    graph = ConflictGraph.of(crns.values());
+                    conflicts = graph;
+                }
+            }
+        }
+        return graph;
+    }
+    /**
+     * checks if the catalog has no courses
+     * @return true if it's empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return crns.isEmpty();
+    }
+    /**
+     * makes the valid combinations under each root category (1 per subject), they're made once per subject and
+     * shared by every snapshot and session that has the subject
+     * @param pool ForkJoinPool the subjects are made in side by side, null makes them on the calling thread
+     * @return List<List<Schedule>> of the valid combinations of every root category, in the order of the categories
+     */
+    public List<List<Schedule>> options(ForkJoinPool pool) {
+        return options(pool, Constraints.NONE);
+    }
+    /**
+     * makes the valid combinations under each root category that keep to some constraints. The combinations of the
+     * last few constraints asked for are kept with each subject, so sessions with the same constraints share them
+     * @param pool ForkJoinPool the subjects are made in side by side, null makes them on the calling thread
+     * @param constraints Constraints every combination keeps to
+     * @return List<List<Schedule>> of the valid combinations of every root category, in the order of the categories
+     */
+    public List<List<Schedule>> options(ForkJoinPool pool, final Constraints constraints) {
+        return options(pool, constraints, null);
+    }
+    /**
+     * makes the valid combinations under each root category that keep to some constraints, giving up once it's told to
+     * stop. Combinations that were cut short aren't kept
+     * @param pool ForkJoinPool the subjects are made in side by side, null makes them on the calling thread
+     * @param constraints Constraints every combination keeps to
+     * @param stop BooleanSupplier that's asked before every section under the root, null never stops
+     * @return List<List<Schedule>> of the valid combinations of every root category, null if it was stopped
+     */
+    public List<List<Schedule>> options(ForkJoinPool pool, final Constraints constraints, final BooleanSupplier stop) {
+        Map<Subject, ForkJoinTask<List<List<Schedule>>>> tasks = new HashMap<Subject, ForkJoinTask<List<List<Schedule>>>>();
+        if (pool != null) {
+            // the subjects don't depend on each other until they're joined
+            for (final Subject subject : subjects.values()) {
+                if (!subject.isMade(constraints)) {
+                    tasks.put(subject, pool.submit(new Callable<List<List<Schedule>>>() {
+                        @Override
+                        public List<List<Schedule>> call() {
+                            return subject.options(constraints, stop);
+                        }
+                    }));
+                }
+            }
+        }
+        List<List<Schedule>> options = new ArrayList<List<Schedule>>();
+        for (Subject subject : subjects.values()) {
+            List<List<Schedule>> made = tasks.containsKey(subject) ? tasks.get(subject).join()
+                    : subject.options(constraints, stop);
+            if (made == null) {
+                return null;
+            }
+            options.addAll(made);
+        }
+        return options;
+    }
+    /**
+     * makes a new catalog with some subjects rebuilt
+     * @param changed Map<String, Map<Integer, Course>> of the changes by subject, the map of a subject starts out as
+     *                its current courses by crn
+     * @return CourseCatalog with the changes
+     */
+    private CourseCatalog change(Map<String, Map<Integer, Course>> changed) {
+        long start = System.nanoTime();
+        Map<String, Subject> next = new TreeMap<String, Subject>(subjects);
+        // sections that left the graph and ones that have to be swept into it
+        List<Course> removed = new ArrayList<Course>();
+        List<Course> added = new ArrayList<Course>();
+        for (Map.Entry<String, Map<Integer, Course>> entry : changed.entrySet()) {
+            List<Course> courses = new ArrayList<Course>();
+            // crns of the old nodes that are kept, their blocks are the same in the copies
+            Set<Integer> kept = new HashSet<Integer>();
+            for (Course course : entry.getValue().values()) {
+                if (crns.get(course.crn) == course) {
+                    kept.add(course.crn);
+                }
+                // the old nodes are frozen, so the subject is built out of copies
+                courses.add(new Course(course));
+            }
+            Subject old = subjects.get(entry.getKey());
+            Subject subject = new Subject(CourseTree.build(courses, parser));
+            if (subject.courses.isEmpty()) {
+                next.remove(entry.getKey());
+            } else {
+                next.put(entry.getKey(), subject);
+            }
+            Set<Integer> built = new HashSet<Integer>();
+            for (Course course : subject.courses) {
+                built.add(course.crn);
+                if (!kept.contains(course.crn)) {
+                    added.add(course);
+                }
+            }
+            if (old != null) {
+                for (Course course : old.courses) {
+                    if (!kept.contains(course.crn) || !built.contains(course.crn)) {
+                        removed.add(course);
+                    }
+                }
+            }
+        }
+        CourseCatalog catalog = new CourseCatalog(parser, next);
+        ConflictGraph graph = conflicts;
+        if (graph != null) {
+            catalog.conflicts = graph.update(removed, added);
+        }
+        Metrics.since(Metrics.Phase.CATALOG, start);
+        return catalog;
+    }
+    // helper for the courses of a subject by crn, starting out as its current courses
+    private Map<Integer, Course> changed(Map<String, Map<Integer, Course>> changed, String name) {
+        Map<Integer, Course> courses = changed.get(name);
+        if (courses == null) {
+            courses = new LinkedHashMap<Integer, Course>();
+            Subject subject = subjects.get(name);
+            if (subject != null) {
+                for (Course course : subject.courses) {
+                    courses.put(course.crn, course);
+                }
+            }
+            changed.put(name, courses);
+        }
+        return courses;
+    }
+    // helper for the key of the subject, section and type index
+    private static String key(final String subject, final String section, final String type) {
+        return subject + "\u0000" + section + "\u0000" + type;
+    }
+    // Subject is the frozen subtree of 1 subject and the combinations made from it
+    private static class Subject {
+        // number of constrained combinations kept, the unconstrained ones are always kept
+        private static final int CONSTRAINED = 8;
+        private final Course tree;
+        // every course in the subtree once, courses that didn't fit under anything aren't kept
+        private final Collection<Course> courses;
+        private volatile List<List<Schedule>> options = null;
+        // access ordered, so the eldest entry is the least recently used one
+        private final Map<Constraints, List<List<Schedule>>> constrained =
+                new LinkedHashMap<Constraints, List<List<Schedule>>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Constraints, List<List<Schedule>>> eldest) {
+                        return size() > CONSTRAINED;
+                    }
+                };
+        private Subject(Course tree) {
+            tree.freeze();
+            this.tree = tree;
+            this.courses = new LinkedHashSet<Course>(CourseTree.getAll(tree));
+        }
+        private boolean isMade(Constraints constraints) {
+            if (constraints.isEmpty()) {
+                return options != null;
+            }
+            synchronized (this) {
+                return constrained.containsKey(constraints);
+            }
+        }
+        // makes the combinations of every root category of the subject the first time they're asked for, null if it was
+        // stopped before they were all made
+        private List<List<Schedule>> options(Constraints constraints, BooleanSupplier stop) {
+            List<List<Schedule>> made = options;
+            if (made != null && constraints.isEmpty()) {
+                return made;
+            }
+            // sessions asking at the same time wait for the first one instead of making them again
+            synchronized (this) {
+                made = constraints.isEmpty() ? options : constrained.get(constraints);
+                if (made == null) {
+                    long start = System.nanoTime();
+                    made = new ArrayList<List<Schedule>>();
+                    for (Category category : tree.getCategories()) {
+                        List<Schedule> choices = Timetable.makeChoices(category, constraints, stop);
+                        if (choices == null) {
+                            return null;
+                        }
+                        made.add(Collections.unmodifiableList(choices));
+                    }
+                    made = Collections.unmodifiableList(made);
+                    if (constraints.isEmpty()) {
+                        options = made;
+                    } else {
+                        constrained.put(constraints, made);
+                    }
+                    Metrics.since(Metrics.Phase.COMBINE, start);
+                }
+                return made;
+            }
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package cskilian.courselists;
 import javafx.application.Application;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
-import javafx.util.converter.IntegerStringConverter;
-import java.util.Set;
+import javafx.util.Duration;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.function.UnaryOperator;
 
 public class CourseLists extends Application {
@@ -21,6 +37,15 @@ public class CourseLists extends Application {
     private static final int BUTTON_WIDTH = 100;
     private static final int BUTTON_HEIGHT = 64;
     private static final int MAX_COURSES = 10;
+    // nobody reads past the first few pages of results, so only the best ones are searched for
+    private static final int MAX_RESULTS = 200;
+    // longest a search runs for before the best schedules found so far are shown as the result
+    private static final long SOLVE_MILLIS = 10000;
+    private static final int GRID_HEIGHT = 300;
+    // best sets shown on the rankings page while ranking as you type, and how long typing has to pause first
+    private static final int LIVE_RESULTS = 5;
+    private static final int LIVE_HEIGHT = 140;
+    private static final long LIVE_DELAY = 300;
     private static final String WINDOW_TITLE = "CourseLists";
     private static final String WARNING_TEXT = "Warning!\n This program does not attempt to warn about or" +
             " resolve registration errors.\n It assumes you're eligible to take the courses you select.\n It only generates" +
@@ -33,8 +58,27 @@ public class CourseLists extends Application {
     private static final String SUMMER = "Summer";
     private static final int SPACING = 50;
     private static final int PADDING = 25;
-    protected static SortingAlgorithm sorter;
-    protected static Parser parser;
+    // sections fetched from Carleton are cached across runs and Back/Next cycles
+    private static final CachingParser CARLETON_PARSER = new CachingParser(new CarletonParser());
+    private static Parser parser = CARLETON_PARSER;
+    // the session of the window, its catalog is only swapped in on the FX thread
+    private static final Timetable timetable = new Timetable(CARLETON_PARSER);
+    // a term with a snapshot here, ie. Fall.snapshot, is served from it and only other terms are fetched
+    private static final File SNAPSHOTS = new File(System.getProperty("user.home"), ".courselists");
+    // fetches run on daemon threads, so closing the window while one runs still exits
+    private static final ExecutorService FETCHER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the fetch and the searches that are running, only touched on the FX thread
+    private static Future<CourseCatalog> fetch;
+    private static Future<Feasible> ranking;
+    private static SolveHandle solve;
+    // groups of the sections of the sets that are shown, from the search that found them, only touched on the FX thread
+    private static Equivalence groups;
+    // ranks typed in on the rankings page by crn, only touched on the FX thread
+    private static final Map<Integer, Integer> rankings = new HashMap<Integer, Integer>();
     private static String term;
     private static Page page;
     private static Stage stage;
@@ -48,10 +92,16 @@ public class CourseLists extends Application {
         this.stage.show();
         setPage(Page.Setup);
     }
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         initDefaultSettings();
+        // where the time of a fetch or a search goes shows in jconsole
+        Metrics.register();
         Application.launch();
-        System.out.println(Timetable.getChoices());
+        if (solve != null) {
+            for (ScoredSchedule schedule : solve.getBest()) {
+                System.out.println(schedule.schedule.courses());
+            }
+        }
     }
     /**
      * Sets the sorting algorithm
@@ -59,8 +109,7 @@ public class CourseLists extends Application {
      *               appropriate comparator
      */
     public static void setSortingAlgorithm(SortingAlgorithm sorter) {
-        CourseLists.sorter = sorter;
-        Timetable.makeChoices();
+        timetable.setSortingAlgorithm(sorter);
     }
 
     /**
@@ -69,14 +118,18 @@ public class CourseLists extends Application {
      */
     public static void setParser(Parser parser) {
         CourseLists.parser = parser;
-        Timetable.clear();
+        timetable.setCatalog(CourseCatalog.empty(parser));
     }
     /**
      * initializes parser, sorter and the term
      */
     private static void initDefaultSettings() {
+        timetable.setLimit(MAX_RESULTS);
+        timetable.setParallelism(Runtime.getRuntime().availableProcessors());
+        // sections at the same time with the same rank are shown as 1 choice with their alternatives
+        timetable.setCollapsing(true);
         setSortingAlgorithm(SortingAlgorithm.MaxMin);
-        setParser(new CarletonParser());
+        setParser(CARLETON_PARSER);
         term = FALL;
     }
     /**
@@ -174,7 +227,14 @@ public class CourseLists extends Application {
         Text loading = new Text("Loading");
         loading.setWrappingWidth(WIDTH - 100);
         loading.setTextAlignment(TextAlignment.CENTER);
-        VBox ePanel = new VBox(loading);
+        Button cancel = new Button("Cancel");
+        cancel.setMinHeight(BUTTON_HEIGHT);
+        cancel.setMinWidth(BUTTON_WIDTH);
+        cancel.setOnAction(actionEvent -> {
+            cancelFetch();
+            setPage(Page.Requests);
+        });
+        VBox ePanel = new VBox(loading, cancel);
         ePanel.setAlignment(Pos.BASELINE_CENTER);
         ePanel.setPadding(new Insets(PADDING, PADDING, PADDING, PADDING));
         ePanel.setSpacing(SPACING);
@@ -188,75 +248,239 @@ public class CourseLists extends Application {
     private void makeRankingsPanel() {
         HBox cPanel = controlPanel();
         Label label = new Label("Rank");
-        VBox sPanel = new VBox();
-        sPanel.setAlignment(Pos.TOP_LEFT);
+        // the best sets with the ranks typed in so far, they're only scored again while the ranks change
+        final CheckBox live = new CheckBox("Rank as I type");
+        final Label note = new Label();
+        final ListView<ScoredSchedule> preview = resultList();
+        preview.setPrefHeight(LIVE_HEIGHT);
+        preview.setVisible(false);
+        preview.setManaged(false);
+        final PauseTransition typing = new PauseTransition(Duration.millis(LIVE_DELAY));
+        typing.setOnFinished(event -> rerank(preview, note));
+        live.selectedProperty().addListener((observable, old, on) -> {
+            preview.setVisible(on);
+            preview.setManaged(on);
+            note.setText("");
+            if (on) {
+                rerank(preview, note);
+            } else {
+                typing.stop();
+                cancelRanking();
+            }
+        });
+        // a table only makes nodes for the rows that are on screen, ranks that were typed in are kept in rankings
+        TableView<Course> sPanel = new TableView<Course>(FXCollections.observableArrayList(timetable.getCatalog().getAll()));
         sPanel.setId("sPanel");
-        for (Course course : CourseTree.getAll()) {
-            HBox hBox = new HBox();
-            Text courseText = new Text(course.toString());
-            courseText.setWrappingWidth(WIDTH - 150);
-            courseText.setTextAlignment(TextAlignment.JUSTIFY);
-            TextField tField = new TextField();
-            tField.setId("" + course.crn);
-            tField.setMaxWidth(40);
-            tField.setMinWidth(40);
-            UnaryOperator<TextFormatter.Change> integerFilter = change -> {
-                String newText = change.getControlNewText();
-                if (newText.matches("-?([1-9][0-9]*)?|0?")) {
-                    return change;
-                }
-                return null;
-            };
-            tField.setTextFormatter(
-                    new TextFormatter<Integer>(new IntegerStringConverter(), 0, integerFilter));
-            hBox.getChildren().add(tField);
-            hBox.getChildren().add(courseText);
-            sPanel.getChildren().add(hBox);
-        }
-        VBox rPanel = new VBox(cPanel, label, sPanel);
-        if (CourseTree.getAll().isEmpty()) {
+        TableColumn<Course, Integer> rank = new TableColumn<Course, Integer>("Rank");
+        rank.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<Integer>(rankings.getOrDefault(cell.getValue().crn, 0)));
+        rank.setCellFactory(column -> new TableCell<Course, Integer>() {
+            private final TextField field = new TextField();
+            // true while the field shows the rank of the row it was moved to, that isn't typing
+            private boolean filling = false;
+            {
+                UnaryOperator<TextFormatter.Change> integerFilter = change -> {
+                    String newText = change.getControlNewText();
+                    if (newText.matches("-?([1-9][0-9]{0,8})?|0?")) {
+                        return change;
+                    }
+                    return null;
+                };
+                field.setTextFormatter(new TextFormatter<String>(integerFilter));
+                field.textProperty().addListener((observable, old, text) -> {
+                    if (filling || getIndex() < 0 || getIndex() >= getTableView().getItems().size()) {
+                        return;
+                    }
+                    // an empty field or a lone minus is 0, like a field that was never touched
+                    Course course = getTableView().getItems().get(getIndex());
+                    rankings.put(course.crn, text.matches("-?[0-9]+") ? Integer.parseInt(text) : 0);
+                    if (live.isSelected()) {
+                        typing.playFromStart();
+                    }
+                });
+            }
+            @Override
+            protected void updateItem(Integer rank, boolean empty) {
+                super.updateItem(rank, empty);
+                filling = true;
+                field.setText(empty || rank == null ? "" : rank.toString());
+                filling = false;
+                setGraphic(empty ? null : field);
+            }
+        });
+        rank.setPrefWidth(60);
+        TableColumn<Course, String> section = new TableColumn<Course, String>("Section");
+        section.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<String>(
+                cell.getValue().toString().trim().replace("\n", ", ")));
+        section.setPrefWidth(WIDTH - 2 * PADDING - 80);
+        sPanel.getColumns().add(rank);
+        sPanel.getColumns().add(section);
+        VBox rPanel = new VBox(cPanel, label, sPanel, live, note, preview);
+        VBox.setVgrow(sPanel, Priority.ALWAYS);
+        if (timetable.getCatalog().isEmpty()) {
             rPanel.getChildren().add(new Label("No courses available"));
         }
         rPanel.setAlignment(Pos.BASELINE_CENTER);
         rPanel.setPadding(new Insets(PADDING, PADDING, PADDING, PADDING));
-        rPanel.setSpacing(SPACING);
-        ScrollPane scrollPane = new ScrollPane(rPanel);
-        scrollPane.setFitToWidth(true);
-        Scene scene = new Scene(scrollPane);
+        Scene scene = new Scene(rPanel);
         this.stage.setScene(scene);
         this.stage.show();
     }
     /**
-     * draws the 4th page of the app, where the valid sets of courses are shown
+     * ranks the sets of courses again with the ranks typed in on the rankings page. The valid sets are found off the FX
+     * thread the first time, after that they're only scored again
+     * @param preview ListView<ScoredSchedule> the best sets go in
+     * @param note Label that says why there aren't any
+     */
+    private void rerank(final ListView<ScoredSchedule> preview, final Label note) {
+        inputRankingsPageData();
+        if (timetable.isFeasibleKnown()) {
+            cancelRanking();
+            showRanking(preview, note);
+            return;
+        }
+        // the search that's running ranks again with the newest ranks once it's done
+        if (ranking != null) {
+            return;
+        }
+        note.setText("Finding the sets of courses");
+        final Callable<Feasible> search = timetable.findFeasible();
+        final FutureTask<Feasible> task = new FutureTask<Feasible>(search) {
+            @Override
+            protected void done() {
+                final FutureTask<Feasible> self = this;
+                Platform.runLater(() -> {
+                    // a search that was cancelled or replaced doesn't change the page
+                    if (ranking != self || isCancelled()) {
+                        return;
+                    }
+                    ranking = null;
+                    try {
+                        // ranks typed in since it started can change which sections are solved on, then it's found again
+                        if (timetable.setFeasible(search, get())) {
+                            showRanking(preview, note);
+                        } else {
+                            rerank(preview, note);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        makeErrorPanel();
+                    }
+                });
+            }
+        };
+        ranking = task;
+        ForkJoinPool.commonPool().execute(task);
+    }
+    /**
+     * shows the best sets of courses with the ranks of the timetable, once its valid sets are known
+     * @param preview ListView<ScoredSchedule> the best sets go in
+     * @param note Label that says why there aren't any
+     */
+    private void showRanking(ListView<ScoredSchedule> preview, Label note) {
+        if (timetable.feasible() == null) {
+            preview.getItems().clear();
+            note.setText("Too many sets of courses to rank as you type, press Next to see the best ones");
+            return;
+        }
+        // the grouping is current once the valid sets are known, so this doesn't group anything
+        groups = timetable.collapse();
+        List<ScoredSchedule> best = timetable.rescore(LIVE_RESULTS);
+        note.setText(best.isEmpty() ? "No courses available" : "");
+        preview.getItems().setAll(best);
+    }
+    /**
+     * draws the 4th page of the app, where the valid sets of courses are shown. The search runs in the background and
+     * the best sets found so far are shown while it does
      */
     private void makeOutputPanel() {
         HBox cPanel = controlPanel();
         Label result = new Label("Results");
-        VBox lPanel = new VBox();
-        int i = 1;
-        for (Set<Course> cSet : Timetable.getChoices()) {
-            HBox hBox = new HBox();
-            hBox.getChildren().add(new Label("" + i + ". "));
-            for (Course c : cSet) {
-                TextField tf = new TextField("" + c.crn);
-                tf.setMaxWidth(80);
-                hBox.getChildren().add(tf);
-            }
-            lPanel.getChildren().add(hBox);
-            i++;
-        }
-        if (Timetable.getChoices().isEmpty()) {
-            lPanel.getChildren().add(new Label("No courses available"));
-        }
-        VBox oPanel = new VBox(cPanel, result, lPanel);
+        final Label status = new Label("Searching");
+        // the selected set is drawn on the grid
+        final ListView<ScoredSchedule> lPanel = resultList();
+        final WeekGrid grid = new WeekGrid(WIDTH - 2 * PADDING, GRID_HEIGHT);
+        lPanel.getSelectionModel().selectedItemProperty().addListener((observable, old, schedule) ->
+                grid.draw(schedule == null ? new ArrayList<Course>() : schedule.schedule.courses()));
+        VBox oPanel = new VBox(cPanel, result, status, lPanel, grid);
+        VBox.setVgrow(lPanel, Priority.ALWAYS);
         oPanel.setAlignment(Pos.BASELINE_CENTER);
         oPanel.setPadding(new Insets(PADDING, PADDING, PADDING, PADDING));
-        oPanel.setSpacing(SPACING);
-        ScrollPane scrollPane = new ScrollPane(oPanel);
-        scrollPane.setFitToWidth(true);
-        Scene scene = new Scene(scrollPane);
+        Scene scene = new Scene(oPanel);
         this.stage.setScene(scene);
         this.stage.show();
+        cancelSolve();
+        final SolveHandle handle = timetable.start(MAX_RESULTS, SOLVE_MILLIS, 0);
+        solve = handle;
+        // a search that was cancelled or replaced never draws over the page
+        handle.onUpdate(best -> Platform.runLater(() -> {
+            if (solve == handle) {
+                groups = handle.getEquivalence();
+                showResults(lPanel, best);
+            }
+        }));
+        handle.onDone(done -> Platform.runLater(() -> {
+            if (solve != handle || done.isCancelled()) {
+                return;
+            }
+            List<ScoredSchedule> best;
+            try {
+                best = done.join();
+            } catch (Exception e) {
+                e.printStackTrace();
+                makeErrorPanel();
+                return;
+            }
+            groups = done.getEquivalence();
+            showResults(lPanel, best);
+            status.setText(done.isComplete() ? "" : "Stopped after " + SOLVE_MILLIS / 1000
+                    + " seconds, these are the best found");
+            if (best.isEmpty() && done.isComplete()) {
+                // say which sections ruled out every schedule, the search already made the pass
+                Propagation propagation = done.getPropagation();
+                status.setText("No courses available" + (propagation.isFeasible() ? "" : "\n" + propagation));
+            }
+        }));
+    }
+    /**
+     * fills the results of the output page, the row that was selected stays selected
+     * @param lPanel ListView<ScoredSchedule> the results go in
+     * @param best List<ScoredSchedule> of the best sets of courses, best first
+     */
+    private void showResults(ListView<ScoredSchedule> lPanel, List<ScoredSchedule> best) {
+        int selected = Math.max(0, lPanel.getSelectionModel().getSelectedIndex());
+        lPanel.getItems().setAll(best);
+        if (!best.isEmpty()) {
+            lPanel.getSelectionModel().select(Math.min(selected, best.size() - 1));
+        }
+    }
+    /**
+     * makes a list of sets of courses, it only makes nodes for the rows that are on screen
+     * @return ListView<ScoredSchedule> that numbers the sets from 1
+     */
+    private static ListView<ScoredSchedule> resultList() {
+        ListView<ScoredSchedule> list = new ListView<ScoredSchedule>();
+        list.setCellFactory(view -> new ListCell<ScoredSchedule>() {
+            @Override
+            protected void updateItem(ScoredSchedule schedule, boolean empty) {
+                super.updateItem(schedule, empty);
+                setText(empty || schedule == null ? null : (getIndex() + 1) + ". " + describe(schedule));
+            }
+        });
+        return list;
+    }
+    /**
+     * writes the courses of a set on 1 line, with the alternatives of collapsed sections. The groups come from the search
+     * that found the set, so nothing is grouped on the FX thread
+     * @param schedule ScoredSchedule of a set of courses
+     * @return String of the crns
+     */
+    private static String describe(ScoredSchedule schedule) {
+        StringBuilder line = new StringBuilder();
+        for (Course c : schedule.schedule.courses()) {
+            List<Course> alternatives = groups == null ? Collections.singletonList(c) : groups.getAlternatives(c);
+            line.append(line.length() == 0 ? "" : "   ").append(Equivalence.describe(alternatives));
+        }
+        return line.toString();
     }
     /**
      * draws the error page of the app
@@ -288,7 +512,8 @@ public class CourseLists extends Application {
                 break;
             case Requests:
                 this.page = Page.Requests;
-                Timetable.clear();
+                timetable.clear();
+                rankings.clear();
                 makeRequestsPanel();
                 break;
             case Rankings:
@@ -313,31 +538,10 @@ public class CourseLists extends Application {
             case Requests:
                 inputRequestsPageData();
                 makeLoadingPanel();
-                Thread webRequestWorker = new Thread() {
-                    @Override
-                    public void run() {
-                        try {
-                            fetchCourses();
-                            Platform.runLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    setPage(Page.Rankings);
-                                }
-                            });
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            Platform.runLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    makeErrorPanel();
-                                }
-                            });
-                        }
-                    }
-                };
-                webRequestWorker.start();
+                fetchCatalog();
                 break;
             case Rankings:
+                cancelRanking();
                 inputRankingsPageData();
                 setPage(Page.Output);
                 break;
@@ -359,20 +563,70 @@ public class CourseLists extends Application {
                 setPage(Page.Setup);
                 break;
             case Rankings:
+                cancelRanking();
                 setPage(Page.Requests);
                 break;
             case Output:
+                cancelSolve();
                 setPage(Page.Rankings);
                 break;
         }
     }
+    /**
+     * fetches the requested courses off the FX thread, then shows the rankings page with them
+     */
+    private void fetchCatalog() {
+        final FutureTask<CourseCatalog> task = new FutureTask<CourseCatalog>(this::fetchCourses) {
+            @Override
+            protected void done() {
+                final FutureTask<CourseCatalog> self = this;
+                Platform.runLater(() -> {
+                    // a fetch that was cancelled or replaced doesn't change the page
+                    if (fetch != self || isCancelled()) {
+                        return;
+                    }
+                    fetch = null;
+                    try {
+                        timetable.setCatalog(get());
+                        setPage(Page.Rankings);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        makeErrorPanel();
+                    }
+                });
+            }
+        };
+        fetch = task;
+        FETCHER.execute(task);
+    }
+    // stops the fetch that's running, if there is one
+    private static void cancelFetch() {
+        if (fetch != null) {
+            fetch.cancel(true);
+            fetch = null;
+        }
+    }
+    // stops finding the sets of courses to rank as you type, if it's running
+    private static void cancelRanking() {
+        if (ranking != null) {
+            ranking.cancel(true);
+            ranking = null;
+        }
+    }
+    // stops the search that's running, if there is one
+    private static void cancelSolve() {
+        if (solve != null) {
+            solve.cancel();
+        }
+    }
     /**
      * this takes the form data and sets the parser, sorter and the term
      */
     private void inputSetupPageData() {
+        term = (String) ((ComboBox) stage.getScene().lookup("#termBox")).getValue();
         switch ((String) ((ComboBox) stage.getScene().lookup("#parserBox")).getValue()) {
             case CARLETON:
-                setParser(new CarletonParser());
+                setParser(snapshotParser(term));
                 break;
         }
         switch ((String) ((ComboBox) stage.getScene().lookup("#sorterBox")).getValue()) {
@@ -383,7 +637,23 @@ public class CourseLists extends Application {
                 setSortingAlgorithm(SortingAlgorithm.MaxMin);
                 break;
         }
-        term = (String) ((ComboBox) stage.getScene().lookup("#termBox")).getValue();
+    }
+    /**
+     * helper for the parser of Carleton courses of a term, the snapshot of the term if there is one. Opening a snapshot
+     * only maps it, so it's done again every time the setup page is left
+     * @param term String of term
+     * @return Parser of the snapshot in front of Carleton Central, or Carleton Central without a usable snapshot
+     */
+    private static Parser snapshotParser(String term) {
+        File snapshot = new File(SNAPSHOTS, term + ".snapshot");
+        if (snapshot.isFile()) {
+            try {
+                return new SnapshotParser(snapshot.toPath(), CARLETON_PARSER);
+            } catch (IOException e) {
+                System.err.println("ignoring " + snapshot + ": " + e.getMessage());
+            }
+        }
+        return CARLETON_PARSER;
     }
     /**
      * this inputs the form data into courseRequests for use after the form has been discarded
@@ -405,22 +675,29 @@ public class CourseLists extends Application {
      * this takes the form data and sets the rankings of the courses
      */
     private void inputRankingsPageData() {
-        for (Node node : ((VBox) stage.getScene().lookup("#sPanel")).getChildren()) {
-            TextField tf = ((TextField) ((HBox) node).getChildren().get(0));
-            CourseTree.get(Integer.parseInt(tf.getId())).setRank(Integer.parseInt(tf.getText()));
+        // sections nobody ranked get 0
+        for (Course course : timetable.getCatalog().getAll()) {
+            timetable.setRank(course.crn, rankings.getOrDefault(course.crn, 0));
         }
-        Timetable.makeChoices();
     }
     /**
-     * this fetches the courses from the web and adds it to the timetable
+     * this fetches the courses from the web, it runs off the FX thread so it only makes a new catalog
+     * @return CourseCatalog of the catalog of the timetable with the courses added
      */
-    private void fetchCourses() throws Exception {
+    private CourseCatalog fetchCourses() throws Exception {
+        List<String[]> requests = new ArrayList<String[]>();
         for (int i = 0; i < MAX_COURSES; i++) {
             String cCode = courseRequests[i][0];
             String cNumber = courseRequests[i][1];
             if (!cCode.isEmpty() && !cNumber.isEmpty()) {
-                Timetable.add(parser.makeCourses(courseRequests[i][0], courseRequests[i][1], term));
+                requests.add(new String[] {cCode, cNumber});
             }
         }
+        // fetch every course at once, then put them all into 1 new catalog
+        List<Course> courses = new ArrayList<Course>();
+        for (Collection<Course> c : parser.makeCourses(requests, term)) {
+            courses.addAll(c);
+        }
+        return timetable.getCatalog().with(courses);
     }
 }
@@ -0,0 +1,141 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+// Equivalence groups sections that are the same as far as solving goes: sections without anything under them (labs,
+// tutorials or lone lectures) of the same subject and type, that belong to the same sections, meet at the very same
+// times and have the same rank. Any one of them makes the same schedules with the same score, so only 1 of each group
+// is kept in the catalog that's solved on, and the others are only brought back when the schedules are shown. Every
+// group of n sections divides the number of schedules by n
+public class Equivalence {
+    private final CourseCatalog catalog;
+    // every section of a group by the crn of any of them, sorted by crn, the first one is the one that's kept
+    private final Map<Integer, List<Course>> alternatives;
+    private Equivalence(CourseCatalog catalog, Map<Integer, List<Course>> alternatives) {
+        this.catalog = catalog;
+        this.alternatives = Collections.unmodifiableMap(alternatives);
+    }
+    /**
+     * groups the sections of a catalog
+     * @param catalog CourseCatalog of the subjects
+     * @param ranks ToIntFunction<Course> of the rank of every section
+     * @return Equivalence with the catalog of 1 section per group
+     */
+    public static Equivalence of(CourseCatalog catalog, ToIntFunction<Course> ranks) {
+        // a lab or tutorial can belong to more than 1 lecture, and lectures belong to the root
+        Map<Course, List<Course>> parents = new IdentityHashMap<Course, List<Course>>();
+        List<Course> nodes = new ArrayList<Course>();
+        nodes.add(catalog.getRoot());
+        nodes.addAll(catalog.getAll());
+        for (Course course : nodes) {
+            for (Category category : course.getCategories()) {
+                for (Course child : category.getCourses()) {
+                    parents.computeIfAbsent(child, c -> new ArrayList<Course>()).add(course);
+                }
+            }
+        }
+        Map<Key, List<Course>> groups = new LinkedHashMap<Key, List<Course>>();
+        for (Map.Entry<Course, List<Course>> entry : parents.entrySet()) {
+            Course course = entry.getKey();
+            // a lecture is only the same as another one if everything under it is too, so only leaves are grouped
+            if (course.getCategories().isEmpty()) {
+                Key key = new Key(entry.getValue(), course.subject + "\u0000" + course.type, course.schedule,
+                        ranks.applyAsInt(course));
+                groups.computeIfAbsent(key, k -> new ArrayList<Course>()).add(course);
+            }
+        }
+        Map<Integer, List<Course>> alternatives = new HashMap<Integer, List<Course>>();
+        Set<Integer> dropped = new HashSet<Integer>();
+        for (List<Course> group : groups.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            Collections.sort(group, new Comparator<Course>() {
+                @Override
+                public int compare(Course c1, Course c2) {
+                    return Integer.compare(c1.crn, c2.crn);
+                }
+            });
+            List<Course> members = Collections.unmodifiableList(group);
+            for (int i = 0; i < group.size(); i++) {
+                alternatives.put(group.get(i).crn, members);
+                if (i > 0) {
+                    dropped.add(group.get(i).crn);
+                }
+            }
+        }
+        return new Equivalence(dropped.isEmpty() ? catalog : catalog.without(dropped), alternatives);
+    }
+    /**
+     * getter for the catalog with 1 section of every group
+     * @return CourseCatalog that's solved on
+     */
+    public CourseCatalog getCatalog() {
+        return catalog;
+    }
+    /**
+     * getter for the sections that could take the place of a section
+     * @param course Course of a section
+     * @return List<Course> of every section of its group sorted by crn, only the section itself if it has no group
+     */
+    public List<Course> getAlternatives(Course course) {
+        List<Course> group = alternatives.get(course.crn);
+        return group == null ? Collections.singletonList(course) : group;
+    }
+    /**
+     * getter for the number of sections that were left out
+     * @return int of the number of sections that are only shown as alternatives
+     */
+    public int getCollapsed() {
+        return alternatives.size() - new HashSet<List<Course>>(alternatives.values()).size();
+    }
+    /**
+     * writes a section with its alternatives, ie. "any of CRN 31046/31047/31048"
+     * @param group List<Course> of the section and its alternatives, as getAlternatives gives them
+     * @return String of the crn of the section, or of the crns of its group
+     */
+    public static String describe(List<Course> group) {
+        if (group.size() == 1) {
+            return "" + group.get(0).crn;
+        }
+        StringBuilder out = new StringBuilder("any of CRN ");
+        for (int i = 0; i < group.size(); i++) {
+            out.append(i == 0 ? "" : "/").append(group.get(i).crn);
+        }
+        return out.toString();
+    }
+    // Key is everything that makes a section different while solving
+    private static class Key {
+        private final List<Course> parents;
+        // subject and type
+        private final String type;
+        private final Set<Block> blocks;
+        private final int rank;
+        private Key(List<Course> parents, String type, Set<Block> blocks, int rank) {
+            this.parents = parents;
+            this.type = type;
+            this.blocks = blocks;
+            this.rank = rank;
+        }
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) { return false; }
+            Key that = (Key) other;
+            return parents.equals(that.parents) && type.equals(that.type) && blocks.equals(that.blocks)
+                    && rank == that.rank;
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(parents, type, blocks, rank);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+// Feasible is every valid schedule of a catalog and its constraints, kept apart from how they're scored. Ranks only
+// change the order of the schedules and never which ones are valid, so once they're found new ranks or another sorting
+// algorithm only score them again: the rank sums of every option are worked out once, and a schedule is scored by
+// adding up a few of them. Every schedule is stored as the index of the option it picks of every root category, a run
+// of ints in 1 shared array
+public class Feasible {
+    // options[i] are the options of the i-th root category
+    private final Schedule[][] options;
+    // rows[r * depth + i] is the option the r-th schedule picks of the i-th root category
+    private final int[] rows;
+    private final int depth;
+    private final int size;
+    /**
+     * Constructor
+     * @param options Schedule[][] of the options of every root category, they're never changed
+     * @param rows int[] of the options every schedule picks, 1 after the other
+     * @param size int of the number of schedules
+     */
+    Feasible(Schedule[][] options, int[] rows, int size) {
+        this.options = options;
+        this.rows = rows;
+        this.depth = options.length;
+        this.size = size;
+    }
+    /**
+     * getter for the number of valid schedules
+     * @return int of the number of schedules
+     */
+    public int size() {
+        return size;
+    }
+    /**
+     * scores every valid schedule and keeps the best k
+     * @param k int of the number of schedules wanted
+     * @param sorter SortingAlgorithm that the schedules are ranked by
+     * @param ranks ToIntFunction<Course> of the rank of every course, it's only asked once per option
+     * @return List<ScoredSchedule> of at most k schedules, best first, ties in the canonical order of the Solver
+     */
+    public List<ScoredSchedule> top(int k, SortingAlgorithm sorter, ToIntFunction<Course> ranks) {
+        List<ScoredSchedule> out = new ArrayList<ScoredSchedule>();
+        if (k <= 0 || size == 0) {
+            return out;
+        }
+        long start = System.nanoTime();
+        int[][] sums = new int[depth][];
+        int[][] squares = new int[depth][];
+        int[][] sizes = new int[depth][];
+        for (int i = 0; i < depth; i++) {
+            sums[i] = new int[options[i].length];
+            squares[i] = new int[options[i].length];
+            sizes[i] = new int[options[i].length];
+            for (int j = 0; j < options[i].length; j++) {
+                for (Course course : options[i][j]) {
+                    int rank = ranks.applyAsInt(course);
+                    sums[i][j] += rank;
+                    squares[i][j] += rank * rank;
+                }
+                sizes[i][j] = options[i][j].size();
+            }
+        }
+        // max-heap of the best k keys, a key has the score in the upper half and the schedule in the lower half, so
+        // the smallest key is the best schedule and the head is the k-th best
+        long[] heap = new long[Math.min(k, size)];
+        int n = 0;
+        for (int r = 0; r < size; r++) {
+            int sumRank = 0;
+            int squareRank = 0;
+            int count = 0;
+            for (int i = 0, at = r * depth; i < depth; i++, at++) {
+                sumRank += sums[i][rows[at]];
+                squareRank += squares[i][rows[at]];
+                count += sizes[i][rows[at]];
+            }
+            long key = ((long) ScoredSchedule.descending(ScoredSchedule.score(sumRank, squareRank, count, sorter)) << 32)
+                    | r;
+            if (n < heap.length) {
+                heap[n] = key;
+                up(heap, n++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                down(heap, n);
+            }
+        }
+        Arrays.sort(heap, 0, n);
+        for (int h = 0; h < n; h++) {
+            int r = (int) heap[h];
+            Schedule schedule = Schedule.EMPTY;
+            int sumRank = 0;
+            int squareRank = 0;
+            for (int i = 0, at = r * depth; i < depth; i++, at++) {
+                schedule = schedule.merge(options[i][rows[at]]);
+                sumRank += sums[i][rows[at]];
+                squareRank += squares[i][rows[at]];
+            }
+            out.add(new ScoredSchedule(schedule, ScoredSchedule.score(sumRank, squareRank, schedule.size(), sorter)));
+        }
+        Metrics.since(Metrics.Phase.RESCORE, start);
+        return out;
+    }
+    // moves the key at i up the max-heap until its parent is bigger
+    private static void up(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0 && heap[(i - 1) / 2] < key) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = key;
+    }
+    // moves the head of the max-heap down until both children are smaller
+    private static void down(long[] heap, int n) {
+        long key = heap[0];
+        int i = 0;
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
@@ -0,0 +1,278 @@
+package cskilian.courselists;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+// FileParser reads courses from a catalog file instead of the web, in the format of courses.txt:
+// crn, subject, number, section, type, days, HHMM:HHMM, priority, separated by any run of tabs and spaces.
+// The file is scanned once a byte at a time, large files are memory-mapped, and lines are never turned into Strings
+public class FileParser implements Parser {
+    // files bigger than this are memory-mapped instead of read onto the heap
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final int FIELDS = 8;
+    private final Path path;
+    // rows of the catalog by subject and number, loaded on first use
+    private Map<String, List<Row>> catalog;
+    /**
+     * Constructor
+     * @param path String of the path of the catalog file
+     */
+    public FileParser(String path) {
+        this(Paths.get(path));
+    }
+    /**
+     * Constructor
+     * @param path Path of the catalog file
+     */
+    public FileParser(Path path) {
+        this.path = path;
+    }
+    @Override
+    public boolean subordinate(Course course, Course node) {
+        return CarletonParser.sectionSubordinate(course, node);
+    }
+    /**
+     * makes the courses of a course code from the catalog, rows with the same crn are 1 course meeting at several times
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     * @return Collection<Course> of new courses, empty if the catalog doesn't have the course code
+     * @throws Exception thrown if the file can't be read
+     */
+    @Override
+    public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+        Metrics.MakeCoursesEvent event = new Metrics.MakeCoursesEvent();
+        event.begin();
+        List<Row> rows = load().get(subject + " " + number);
+        Map<Integer, List<Row>> byCrn = new LinkedHashMap<Integer, List<Row>>();
+        if (rows != null) {
+            for (Row row : rows) {
+                if (!byCrn.containsKey(row.crn)) {
+                    byCrn.put(row.crn, new ArrayList<Row>());
+                }
+                byCrn.get(row.crn).add(row);
+            }
+        }
+        Collection<Course> courses = new ArrayList<Course>();
+        for (List<Row> meetings : byCrn.values()) {
+            Row first = meetings.get(0);
+            Set<Block> schedule = new LinkedHashSet<Block>();
+            for (Row row : meetings) {
+                for (Day day : Day.values()) {
+                    if ((row.days & (1 << day.ordinal())) != 0) {
+                        schedule.add(new Block(day, term, row.start, row.end));
+                    }
+                }
+            }
+            courses.add(new Course(first.crn, first.course, first.section, first.type, "", first.rank, schedule));
+        }
+        event.subject = subject;
+        event.number = number;
+        event.term = term;
+        event.sections = courses.size();
+        event.commit();
+        return courses;
+    }
+    /**
+     * loads the catalog the first time it's needed
+     * @return Map<String, List<Row>> of the rows by subject and number
+     * @throws IOException thrown if the file can't be read
+     */
+    private synchronized Map<String, List<Row>> load() throws IOException {
+        if (catalog == null) {
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer buffer;
+                if (size > MAP_THRESHOLD) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } else {
+                    buffer = ByteBuffer.allocate((int) size);
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) { }
+                    buffer.flip();
+                }
+                catalog = scan(buffer);
+            }
+            Metrics.since(Metrics.Phase.PARSE, start);
+        }
+        return catalog;
+    }
+    /**
+     * scans the catalog line by line, skipping comments and lines that don't have every field
+     * @param buffer ByteBuffer of the file
+     * @return Map<String, List<Row>> of the rows by subject and number
+     */
+    private static Map<String, List<Row>> scan(ByteBuffer buffer) {
+        Map<String, List<Row>> out = new HashMap<String, List<Row>>();
+        // the same few subjects, sections and types repeat on every line, so their Strings are shared
+        Map<String, String> strings = new HashMap<String, String>();
+        // start and end offsets of the fields of the current line
+        int[] starts = new int[FIELDS];
+        int[] ends = new int[FIELDS];
+        int limit = buffer.limit();
+        int i = buffer.position();
+        while (i < limit) {
+            int fields = 0;
+            boolean comment = buffer.get(i) == '#';
+            // split the line on runs of whitespace
+            while (i < limit && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+                byte b = buffer.get(i);
+                if (b == ' ' || b == '\t') {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < limit && !isSpace(buffer.get(i))) {
+                    i++;
+                }
+                if (fields < FIELDS) {
+                    starts[fields] = start;
+                    ends[fields] = i;
+                }
+                fields++;
+            }
+            // step over the line break
+            while (i < limit && (buffer.get(i) == '\n' || buffer.get(i) == '\r')) {
+                i++;
+            }
+            if (comment || fields < FIELDS) {
+                continue;
+            }
+            Row row = parse(buffer, starts, ends, strings);
+            if (row != null) {
+                String key = row.course;
+                if (!out.containsKey(key)) {
+                    out.put(key, new ArrayList<Row>());
+                }
+                out.get(key).add(row);
+            }
+        }
+        return out;
+    }
+    /**
+     * makes a row out of the fields of 1 line
+     * @param buffer ByteBuffer of the file
+     * @param starts int[] of the start offsets of the fields
+     * @param ends int[] of the end offsets of the fields
+     * @param strings Map<String, String> of the Strings made so far
+     * @return Row of the line, null if a number or time doesn't parse
+     */
+    private static Row parse(ByteBuffer buffer, int[] starts, int[] ends, Map<String, String> strings) {
+        int crn = toInt(buffer, starts[0], ends[0]);
+        // the time is HHMM:HHMM
+        int colon = starts[6];
+        while (colon < ends[6] && buffer.get(colon) != ':') {
+            colon++;
+        }
+        int start = toInt(buffer, starts[6], colon);
+        int end = toInt(buffer, colon + 1, ends[6]);
+        int rank = toInt(buffer, starts[7], ends[7]);
+        int days = toDays(buffer, starts[5], ends[5]);
+        if (crn < 0 || start < 0 || end < 0 || rank == Integer.MIN_VALUE || days < 0) {
+            return null;
+        }
+        String course = intern(strings, string(buffer, starts[1], ends[1]) + " " + string(buffer, starts[2], ends[2]));
+        String section = intern(strings, string(buffer, starts[3], ends[3]));
+        String type = intern(strings, toType(string(buffer, starts[4], ends[4])));
+        return new Row(crn, course, section, type, days, start, end, rank);
+    }
+    // helper for whitespace, line breaks included
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+    // parses a possibly negative int out of the bytes, -1 (or MIN_VALUE for a signed field) if it isn't one
+    private static int toInt(ByteBuffer buffer, int from, int to) {
+        boolean negative = from < to && buffer.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i >= to) {
+            return negative ? Integer.MIN_VALUE : -1;
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return negative ? Integer.MIN_VALUE : -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+    // turns day letters (MTWRFSU) into a bit per Day, -1 if there's a letter that isn't a day
+    private static int toDays(ByteBuffer buffer, int from, int to) {
+        int days = 0;
+        for (int i = from; i < to; i++) {
+            switch (buffer.get(i)) {
+                case 'M': days |= 1 << Day.Monday.ordinal(); break;
+                case 'T': days |= 1 << Day.Tuesday.ordinal(); break;
+                case 'W': days |= 1 << Day.Wednesday.ordinal(); break;
+                case 'R': days |= 1 << Day.Thursday.ordinal(); break;
+                case 'F': days |= 1 << Day.Friday.ordinal(); break;
+                case 'S': days |= 1 << Day.Saturday.ordinal(); break;
+                case 'U': days |= 1 << Day.Sunday.ordinal(); break;
+                default: return -1;
+            }
+        }
+        return days;
+    }
+    // the catalog has typos like Tutoial, so types are matched on their first letters
+    private static String toType(String type) {
+        if (type.startsWith("Lec")) {
+            return "Lecture";
+        } else if (type.startsWith("Lab")) {
+            return "Laboratory";
+        } else if (type.startsWith("Tut")) {
+            return "Tutorial";
+        }
+        return type;
+    }
+    // helper for an ASCII String out of the bytes
+    private static String string(ByteBuffer buffer, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = (char) (buffer.get(i) & 0xff);
+        }
+        return new String(chars);
+    }
+    // helper for sharing equal Strings
+    private static String intern(Map<String, String> strings, String string) {
+        String shared = strings.get(string);
+        if (shared == null) {
+            strings.put(string, string);
+            shared = string;
+        }
+        return shared;
+    }
+    // Row is 1 line of the catalog
+    private static class Row {
+        private final int crn;
+        // subject and number, ie. COMP 2401
+        private final String course;
+        private final String section;
+        private final String type;
+        // 1 bit per Day ordinal
+        private final int days;
+        private final int start;
+        private final int end;
+        private final int rank;
+        private Row(int crn, String course, String section, String type, int days, int start, int end, int rank) {
+            this.crn = crn;
+            this.course = course;
+            this.section = section;
+            this.type = type;
+            this.days = days;
+            this.start = start;
+            this.end = end;
+            this.rank = rank;
+        }
+    }
+}
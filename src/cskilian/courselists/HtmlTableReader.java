@@ -0,0 +1,310 @@
+package cskilian.courselists;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+// HtmlTableReader streams the rows of 1 table out of an html page as the page is read, without building a document.
+// Tables are counted in the order they open, nested ones included, and every <td> of a row is a cell, like
+// getElementsByTag would find them. The text of each cell has its tags dropped, entities decoded and whitespace
+// collapsed, entities that can't be decoded are kept as they were written. Cell buffers are reused from row to row, so a
+// cell is only valid until the next call to nextRow
+public class HtmlTableReader {
+    private final Reader in;
+    private final int table;
+    private final List<StringBuilder> cells = new ArrayList<StringBuilder>();
+    private final StringBuilder name = new StringBuilder();
+    private int count = 0;
+    // number of tables opened so far
+    private int tables = 0;
+    // how deep we are inside the wanted table, 0 if we're outside of it
+    private int depth = 0;
+    private boolean done = false;
+    private boolean inRow = false;
+    private boolean inCell = false;
+    private boolean space = false;
+    // a character that was read ahead and not used yet, -2 if there is none
+    private int peeked = -2;
+    // characters are read from the Reader a buffer at a time, readers lock on every single read
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    /**
+     * Constructor
+     * @param in Reader of the html, it's read a buffer past the end of the table at most
+     * @param table int of the index of the table in the order the tables open
+     */
+    public HtmlTableReader(Reader in, int table) {
+        this.in = in;
+        this.table = table;
+    }
+    /**
+     * reads up to the end of the next row of the table
+     * @return true if there was another row, false once the table is over
+     * @throws IOException thrown if the html can't be read
+     */
+    public boolean nextRow() throws IOException {
+        count = 0;
+        inCell = false;
+        while (!done) {
+            int c = read();
+            if (c < 0) {
+                done = true;
+                break;
+            }
+            if (c == '<') {
+                if (tag()) {
+                    return true;
+                }
+            } else if (inCell) {
+                if (c == '&') {
+                    entity();
+                } else {
+                    text(c);
+                }
+            }
+        }
+        // the last row might not have been closed before the table or the page ended
+        if (inRow) {
+            inRow = false;
+            return true;
+        }
+        return false;
+    }
+    /**
+     * getter for the number of cells in the current row
+     * @return int of the number of cells
+     */
+    public int cells() {
+        return count;
+    }
+    /**
+     * getter for the text of a cell of the current row
+     * @param i int of the index of the cell
+     * @return CharSequence of the trimmed text of the cell
+     */
+    public CharSequence cell(int i) {
+        StringBuilder cell = cells.get(i);
+        // drop the trailing space, the leading one is never added
+        if (cell.length() > 0 && cell.charAt(cell.length() - 1) == ' ') {
+            cell.setLength(cell.length() - 1);
+        }
+        return cell;
+    }
+    /**
+     * reads a tag after its <
+     * @return true if the tag ended a row
+     * @throws IOException thrown if the html can't be read
+     */
+    private boolean tag() throws IOException {
+        int c = read();
+        if (c == '!' || c == '?') {
+            skipComment(c);
+            return false;
+        }
+        boolean closing = c == '/';
+        if (closing) {
+            c = read();
+        }
+        name.setLength(0);
+        while (c >= 0 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+            name.append((char) Character.toLowerCase(c));
+            c = read();
+        }
+        // skip the attributes, quoted values may hold a >
+        int quote = 0;
+        while (c >= 0 && (c != '>' || quote != 0)) {
+            if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            c = read();
+        }
+        if (is("script") || is("style")) {
+            if (!closing) {
+                skipUntilClosed();
+            }
+            return false;
+        }
+        if (is("table")) {
+            if (!closing) {
+                tables++;
+                if (depth > 0 || tables == table + 1) {
+                    depth++;
+                }
+            } else if (depth > 0 && --depth == 0) {
+                done = true;
+            }
+            return false;
+        }
+        if (depth == 0) {
+            return false;
+        }
+        if (is("tr")) {
+            // a new row implicitly ends the one before it, it's read on the next call
+            boolean ended = inRow;
+            inRow = !closing;
+            inCell = false;
+            return ended;
+        }
+        if (is("td") && inRow) {
+            inCell = !closing;
+            if (!closing) {
+                if (cells.size() == count) {
+                    cells.add(new StringBuilder());
+                }
+                cells.get(count++).setLength(0);
+                space = false;
+            }
+        } else if (inCell && (is("br") || is("p") || is("div"))) {
+            // block tags separate words like whitespace does
+            text(' ');
+        }
+        return false;
+    }
+    /**
+     * appends a character of text to the open cell, runs of whitespace become 1 space
+     * @param c int of the code point of the character
+     */
+    private void text(int c) {
+        StringBuilder cell = cells.get(count - 1);
+        if (c == '\u00a0' || Character.isWhitespace(c)) {
+            space = cell.length() > 0;
+            return;
+        }
+        if (space) {
+            cell.append(' ');
+            space = false;
+        }
+        cell.appendCodePoint(c);
+    }
+    /**
+     * reads an entity after its & and appends what it stands for to the open cell
+     * @throws IOException thrown if the html can't be read
+     */
+    private void entity() throws IOException {
+        name.setLength(0);
+        int c = read();
+        while (c >= 0 && c != ';' && name.length() < 8 && (Character.isLetterOrDigit(c) || c == '#')) {
+            name.append((char) c);
+            c = read();
+        }
+        if (c != ';') {
+            // not an entity after all, it's a plain & and the text after it
+            peeked = c;
+            literal(false);
+        } else if (is("nbsp")) {
+            text(' ');
+        } else if (is("amp")) {
+            text('&');
+        } else if (is("lt")) {
+            text('<');
+        } else if (is("gt")) {
+            text('>');
+        } else if (is("quot")) {
+            text('"');
+        } else if (name.length() > 1 && name.charAt(0) == '#') {
+            int code = codePoint();
+            if (code > 0) {
+                text(code);
+            } else {
+                literal(true);
+            }
+        } else {
+            literal(true);
+        }
+    }
+    /**
+     * decodes the name of a numeric entity, &#47; or &#x2F;
+     * @return int of the code point, -1 if it isn't a number or not a character that can be written
+     */
+    private int codePoint() {
+        boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+        int from = hex ? 2 : 1;
+        if (from == name.length()) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = from; i < name.length(); i++) {
+            int digit = Character.digit(name.charAt(i), hex ? 16 : 10);
+            if (digit < 0) {
+                return -1;
+            }
+            // the name is at most 8 characters, so this can't overflow before it's checked
+            code = code * (hex ? 16 : 10) + digit;
+        }
+        if (!Character.isValidCodePoint(code) || Character.getType(code) == Character.SURROGATE) {
+            return -1;
+        }
+        return code;
+    }
+    // writes an entity that isn't decoded as it was in the html
+    private void literal(boolean closed) {
+        text('&');
+        for (int i = 0; i < name.length(); i++) {
+            text(name.charAt(i));
+        }
+        if (closed) {
+            text(';');
+        }
+    }
+    // skips a comment, doctype or processing instruction after its <! or <?
+    private void skipComment(int first) throws IOException {
+        int a = read();
+        int b = read();
+        if (first == '!' && a == '-' && b == '-') {
+            // <!-- ... -->
+            int c1 = 0;
+            int c2 = 0;
+            int c;
+            while ((c = read()) >= 0 && !(c == '>' && c1 == '-' && c2 == '-')) {
+                c2 = c1;
+                c1 = c;
+            }
+            return;
+        }
+        int c = b;
+        while (c >= 0 && c != '>' && a != '>') {
+            c = read();
+        }
+    }
+    // skips the raw text of a script or style up to its closing tag
+    private void skipUntilClosed() throws IOException {
+        String closing = "</" + name;
+        int matched = 0;
+        int c;
+        while (matched < closing.length() && (c = read()) >= 0) {
+            matched = Character.toLowerCase(c) == closing.charAt(matched) ? matched + 1 : (c == '<' ? 1 : 0);
+        }
+        while ((c = read()) >= 0 && c != '>') { }
+    }
+    // checks the last tag or entity name
+    private boolean is(String tag) {
+        if (name.length() != tag.length()) {
+            return false;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            if (name.charAt(i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    // reads the next character
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -22,4 +22,12 @@ public class MaxComparator implements Comparator<Set<Course>> {
         // take their difference
         return sumRank2 - sumRank1;
     }
+    /**
+     * the score a set of courses is ordered by, higher is better
+     * @param sumRank int of the sum of the ranks
+     * @return float of the score
+     */
+    public static float score(int sumRank) {
+        return sumRank;
+    }
 }
@@ -6,31 +6,66 @@ public class MaxMinComparator implements Comparator<Set<Course>> {
      * compares 2 course sets
      * @param s1 Set<Course> of 1 set of courses
      * @param s2 Set<Course> of the 2nd set of courses
-     * @return int of their difference
+     * @return negative if s1 scores higher, positive if s2 does, 0 if they're equal
      */
     public int compare(Set<Course> s1, Set<Course> s2) {
         int sumRank1 = 0;
-        float variance1 = 0;
+        int squares1 = 0;
         int sumRank2 = 0;
-        float variance2 = 0;
+        int squares2 = 0;
         for (Course c : s1) {
             sumRank1 += c.getRank();
-            variance1 += c.getRank() * c.getRank();
+            squares1 += c.getRank() * c.getRank();
         }
         for (Course c : s2){
             sumRank2 += c.getRank();
-            variance2 += c.getRank() * c.getRank();
+            squares2 += c.getRank() * c.getRank();
         }
-        // compute variance of s1 and l2
-        variance1 -= sumRank1 * sumRank1 / s1.size();
-        variance2 -= sumRank2 * sumRank2 / s2.size();
-        variance1 /= s1.size();
-        variance2 /= s2.size();
+        // compare the floats directly, turning their difference into an int made close scores equal
+        return Float.compare(score(sumRank2, squares2, s2.size()), score(sumRank1, squares1, s1.size()));
+    }
+    /**
+     * the score a set of courses is ordered by, the sum of the ranks divided by their variance. Higher is better
+     * @param sumRank int of the sum of the ranks
+     * @param squares int of the sum of the squared ranks
+     * @param size int of the number of courses
+     * @return float of the score
+     */
+    public static float score(int sumRank, int squares, int size) {
+        // compute variance
+        float variance = squares;
+        variance -= sumRank * sumRank / size;
+        variance /= size;
         // add a 0.1 in case variance is 0
-        variance1 += 0.1;
-        variance2 += 0.1;
-        float ret = (sumRank2 / variance2) - (sumRank1 / variance1);
-        // we need to turn the return value into an int
-        return (-1 < ret && ret < 1) ? (int) ret * 10: (int) ret * 100;
+        variance += 0.1;
+        return sumRank / variance;
+    }
+    /**
+     * an upper bound on the score of any set of courses whose ranks add up to at most sumRank, tighter for sets that
+     * are known to be spread out. The squared distances of the ranks from the mean of the whole set are at least the
+     * ones from the means of any parts it's split into, so the spread of the parts that are already known, divided by
+     * the most courses the set can have, is a floor on its variance
+     * @param sumRank int of the highest possible sum of the ranks
+     * @param spread double of the least possible sum of squared distances from the mean, 0 if nothing is known
+     * @param size int of the most courses the set can have
+     * @return float that no such set can score higher than
+     */
+    public static float bound(int sumRank, double spread, int size) {
+        if (sumRank <= 0) {
+            return 0;
+        }
+        double variance = size > 0 ? Math.max(0, spread) / size : 0;
+        // score rounds to floats, so the bound is raised a little to stay above any rounded score it's compared to
+        return (float) (sumRank / (variance + 0.1) * (1 + 1e-5));
+    }
+    /**
+     * the sum of squared distances of some ranks from their mean
+     * @param sumRank int of the sum of the ranks
+     * @param squares int of the sum of the squared ranks
+     * @param size int of the number of ranks
+     * @return double of the spread, 0 for no ranks
+     */
+    public static double spread(int sumRank, int squares, int size) {
+        return size > 0 ? squares - (double) sumRank * sumRank / size : 0;
     }
 }
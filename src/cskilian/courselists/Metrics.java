@@ -0,0 +1,363 @@
+package cskilian.courselists;
+import java.beans.ConstructorProperties;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+// Metrics counts where the time of a run goes: how many partial combinations were made, how many conflict checks and
+// pruned branches it took, how often the course cache answered, and how long fetching, parsing, building catalogs,
+// combining, solving and sorting took. There's 1 set of metrics per JVM, shown over JMX and as text. Hot loops count
+// into locals and hand their totals over once, so a node costs an increment of a field. Fetching is only the time spent
+// waiting on the registrar's server, parsing is only the time spent reading what it sent
+public class Metrics implements MetricsMXBean {
+    // Counter is a number that only goes up
+    public enum Counter {
+        // schedules made by merging 2 others, and partial schedules visited by a search
+        COMBINATIONS,
+        CONFLICT_CHECKS,
+        // branches of a search dropped because they couldn't beat the best schedules so far
+        PRUNED_BRANCHES,
+        // course codes the course cache had, in memory or on disk, and ones it had to fetch
+        CACHE_HITS,
+        CACHE_MISSES
+    }
+    // Phase is a step of a run that's timed
+    public enum Phase {
+        FETCH,
+        PARSE,
+        // building a catalog snapshot, the course trees of the subjects that changed and their conflicts
+        CATALOG,
+        // making the combinations of a subject
+        COMBINE,
+        SOLVE,
+        RESCORE,
+        SORT
+    }
+    private static final Metrics METRICS = new Metrics();
+    private static final String NAME = "cskilian.courselists:type=Metrics";
+    private static ScheduledExecutorService reporter = null;
+    private final Map<Counter, LongAdder> counters = new EnumMap<Counter, LongAdder>(Counter.class);
+    private final Map<Phase, Histogram> phases = new EnumMap<Phase, Histogram>(Phase.class);
+    private Metrics() {
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+    /**
+     * getter for the metrics of this JVM
+     * @return Metrics that everything counts into
+     */
+    public static Metrics get() {
+        return METRICS;
+    }
+    /**
+     * adds to a counter
+     * @param counter Counter that's added to
+     * @param n long of how much
+     */
+    public static void count(Counter counter, long n) {
+        if (n != 0) {
+            METRICS.counters.get(counter).add(n);
+        }
+    }
+    /**
+     * adds the time of 1 run of a phase
+     * @param phase Phase that ran
+     * @param nanos long of how many nanoseconds it took
+     */
+    public static void record(Phase phase, long nanos) {
+        METRICS.phases.get(phase).record(nanos);
+    }
+    /**
+     * adds the time of 1 run of a phase that started at some System.nanoTime
+     * @param phase Phase that ran
+     * @param start long of the System.nanoTime it started at
+     */
+    public static void since(Phase phase, long start) {
+        record(phase, System.nanoTime() - start);
+    }
+    /**
+     * shows the metrics over JMX, registering more than once does nothing
+     * @throws JMException thrown if the platform MBean server won't take them
+     */
+    public static synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(METRICS, name);
+        }
+    }
+    /**
+     * writes the metrics out every so often on a daemon thread, for runs without the UI
+     * @param out PrintStream the metrics are written to
+     * @param seconds long of the seconds between 2 dumps
+     * @return ScheduledFuture<?> that stops the dumps once cancelled
+     */
+    public static synchronized ScheduledFuture<?> report(final PrintStream out, long seconds) {
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long period = Math.max(1, seconds);
+        return reporter.scheduleAtFixedRate(() -> out.println(METRICS.getReport()), period, period, TimeUnit.SECONDS);
+    }
+    /**
+     * getter for a counter
+     * @param counter Counter that's read
+     * @return long of its count
+     */
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+    /**
+     * getter for the latencies of a phase
+     * @param phase Phase that's read
+     * @return Latency of every run of it so far
+     */
+    public Latency get(Phase phase) {
+        return phases.get(phase).snapshot();
+    }
+    @Override
+    public long getCombinations() {
+        return get(Counter.COMBINATIONS);
+    }
+    @Override
+    public long getConflictChecks() {
+        return get(Counter.CONFLICT_CHECKS);
+    }
+    @Override
+    public long getPrunedBranches() {
+        return get(Counter.PRUNED_BRANCHES);
+    }
+    @Override
+    public long getCacheHits() {
+        return get(Counter.CACHE_HITS);
+    }
+    @Override
+    public long getCacheMisses() {
+        return get(Counter.CACHE_MISSES);
+    }
+    @Override
+    public Latency getFetch() {
+        return get(Phase.FETCH);
+    }
+    @Override
+    public Latency getParse() {
+        return get(Phase.PARSE);
+    }
+    @Override
+    public Latency getCatalog() {
+        return get(Phase.CATALOG);
+    }
+    @Override
+    public Latency getCombine() {
+        return get(Phase.COMBINE);
+    }
+    @Override
+    public Latency getSolve() {
+        return get(Phase.SOLVE);
+    }
+    @Override
+    public Latency getRescore() {
+        return get(Phase.RESCORE);
+    }
+    @Override
+    public Latency getSort() {
+        return get(Phase.SORT);
+    }
+    /**
+     * writes every counter on 1 line, then every phase that ran on a line of its own
+     * @return String of the metrics
+     */
+    @Override
+    public String getReport() {
+        StringBuilder out = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            out.append(out.length() == 0 ? "" : ", ").append(name(counter)).append(' ').append(get(counter));
+        }
+        for (Phase phase : Phase.values()) {
+            Latency latency = get(phase);
+            if (latency.getCount() > 0) {
+                out.append('\n').append(name(phase)).append(": ").append(latency);
+            }
+        }
+        return out.toString();
+    }
+    /**
+     * sets every counter and phase back to 0
+     */
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : phases.values()) {
+            histogram.reset();
+        }
+    }
+    // helper for the name of a constant in a report, ie. "conflict checks"
+    private static String name(Enum<?> constant) {
+        return constant.name().toLowerCase().replace('_', ' ');
+    }
+    // Latency is what the runs of a phase took so far, percentiles are within a fifth of the real ones
+    public static class Latency {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        @ConstructorProperties({"count", "meanMillis", "p50Millis", "p99Millis", "maxMillis"})
+        public Latency(long count, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+        public long getCount() {
+            return count;
+        }
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+        public double getP50Millis() {
+            return p50Millis;
+        }
+        public double getP99Millis() {
+            return p99Millis;
+        }
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms", count, meanMillis,
+                    p50Millis, p99Millis, maxMillis);
+        }
+    }
+    // Histogram keeps how many runs fell in each bucket, every power of 2 nanoseconds is split into 4 buckets
+    static class Histogram {
+        static final int BUCKETS = 4 * 62 + 4;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong longest = new AtomicLong();
+        void record(long nanos) {
+            long n = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(n));
+            count.increment();
+            total.add(n);
+            if (n > longest.get()) {
+                longest.accumulateAndGet(n, Math::max);
+            }
+        }
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            longest.set(0);
+        }
+        Latency snapshot() {
+            long runs = count.sum();
+            if (runs == 0) {
+                return new Latency(0, 0, 0, 0, 0);
+            }
+            return new Latency(runs, total.sum() / 1e6 / runs, percentile(runs, 0.5), percentile(runs, 0.99),
+                    longest.get() / 1e6);
+        }
+        // the top of the bucket the run at a fraction of every run falls in, in milliseconds
+        private double percentile(long runs, double fraction) {
+            long rank = (long) Math.ceil(runs * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(top(i), longest.get()) / 1e6;
+                }
+            }
+            return longest.get() / 1e6;
+        }
+        // below 4 every number has a bucket, above that the bucket is the highest bit and the 2 bits after it
+        static int bucket(long n) {
+            if (n < 4) {
+                return (int) n;
+            }
+            int bit = 63 - Long.numberOfLeadingZeros(n);
+            return 4 * (bit - 1) + (int) ((n >>> (bit - 2)) & 3);
+        }
+        // the largest number in a bucket
+        static long top(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int bit = bucket / 4 + 1;
+            long bottom = (long) (4 + bucket % 4) << (bit - 2);
+            return bottom + (1L << (bit - 2)) - 1;
+        }
+    }
+    @Name("cskilian.courselists.MakeCourses")
+    @Label("Make Courses")
+    @Category("CourseLists")
+    @Description("Fetching and parsing the sections of 1 course code")
+    static class MakeCoursesEvent extends Event {
+        @Label("Subject")
+        String subject;
+        @Label("Number")
+        String number;
+        @Label("Term")
+        String term;
+        @Label("Sections")
+        int sections;
+    }
+    @Name("cskilian.courselists.MakeChoices")
+    @Label("Make Choices")
+    @Category("CourseLists")
+    @Description("Making the valid course sets of a timetable")
+    static class MakeChoicesEvent extends Event {
+        @Label("Sections")
+        int sections;
+        @Label("Limit")
+        int limit;
+        @Label("Choices")
+        int choices;
+        @Label("Rescored")
+        boolean rescored;
+    }
+    @Name("cskilian.courselists.Solve")
+    @Label("Solve")
+    @Category("CourseLists")
+    @Description("A branch and bound search for the best schedules")
+    static class SolveEvent extends Event {
+        @Label("Schedules Wanted")
+        int k;
+        @Label("Schedules Found")
+        int found;
+        @Label("Nodes")
+        long nodes;
+        @Label("Pruned")
+        long pruned;
+    }
+}
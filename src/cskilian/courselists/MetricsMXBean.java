@@ -0,0 +1,20 @@
+package cskilian.courselists;
+// MetricsMXBean is what Metrics shows over JMX, ie. in jconsole under cskilian.courselists:type=Metrics. Counters only
+// ever go up until reset, latencies are in milliseconds
+public interface MetricsMXBean {
+    long getCombinations();
+    long getConflictChecks();
+    long getPrunedBranches();
+    long getCacheHits();
+    long getCacheMisses();
+    Metrics.Latency getFetch();
+    Metrics.Latency getParse();
+    Metrics.Latency getCatalog();
+    Metrics.Latency getCombine();
+    Metrics.Latency getSolve();
+    Metrics.Latency getRescore();
+    Metrics.Latency getSort();
+    // the same text as the periodic dump
+    String getReport();
+    void reset();
+}
@@ -0,0 +1,228 @@
+package cskilian.courselists;
+import java.util.Arrays;
+import java.util.Collection;
+// Occupancy is a weekly bitmap of the time a course, or a set of courses, takes up. Every term gets its own bitmap of
+// 5 minute slots for each Day packed into longs, so checking 2 schedules for a conflict is a few AND operations
+public final class Occupancy {
+    // length of a slot in minutes, Carleton times all fall on 5 minute boundaries
+    public static final int SLOT_MINUTES = 5;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int WORDS = (SLOTS_PER_DAY * Day.values().length + 63) / 64;
+    public static final Occupancy EMPTY = new Occupancy(new String[0], new long[0][], new int[0], true, false);
+    // terms[i] is the term that bits[i] describes
+    private final String[] terms;
+    private final long[][] bits;
+    // days[i] has bit d set if Day d of terms[i] has any block, even one that couldn't be encoded
+    private final int[] days;
+    // exact is true if every block fell on slot boundaries, in which case shared bits always mean a real conflict
+    private final boolean exact;
+    // wildcard is true if a block could not be encoded at all, so it may conflict with anything
+    private final boolean wildcard;
+    private Occupancy(String[] terms, long[][] bits, int[] days, boolean exact, boolean wildcard) {
+        this.terms = terms;
+        this.bits = bits;
+        this.days = days;
+        this.exact = exact;
+        this.wildcard = wildcard;
+    }
+    /**
+     * builds the occupancy of a collection of time blocks
+     * @param blocks Collection<Block> of time blocks, may be null
+     * @return Occupancy of the blocks
+     */
+    public static Occupancy of(Collection<Block> blocks) {
+        if (blocks == null || blocks.isEmpty()) {
+            return EMPTY;
+        }
+        String[] terms = new String[0];
+        long[][] bits = new long[0][];
+        int[] days = new int[0];
+        boolean exact = true;
+        boolean wildcard = false;
+        for (Block block : blocks) {
+            int index = indexOf(terms, block.term);
+            if (index < 0) {
+                index = terms.length;
+                terms = Arrays.copyOf(terms, index + 1);
+                bits = Arrays.copyOf(bits, index + 1);
+                days = Arrays.copyOf(days, index + 1);
+                terms[index] = block.term;
+                bits[index] = new long[WORDS];
+            }
+            days[index] |= 1 << block.day.ordinal();
+            int start = toMinutes(block.start);
+            int end = toMinutes(block.end);
+            if (start < 0 || end < 0 || start > end) {
+                exact = false;
+                wildcard = true;
+                continue;
+            }
+            if (start % SLOT_MINUTES != 0 || end % SLOT_MINUTES != 0) {
+                exact = false;
+            }
+            int offset = block.day.ordinal() * SLOTS_PER_DAY;
+            for (int slot = offset + start / SLOT_MINUTES; slot <= offset + end / SLOT_MINUTES; slot++) {
+                bits[index][slot >>> 6] |= 1L << slot;
+            }
+        }
+        return new Occupancy(terms, bits, days, exact, wildcard);
+    }
+    /**
+     * merges 2 occupancies
+     * @param other Occupancy that is merged in
+     * @return Occupancy covering the time of both
+     */
+    public Occupancy union(Occupancy other) {
+        // an empty occupancy is always exact, so the other one can be shared as is
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (this.isEmpty()) {
+            return other;
+        }
+        String[] outTerms = Arrays.copyOf(terms, terms.length);
+        long[][] outBits = new long[terms.length][];
+        int[] outDays = days.clone();
+        for (int i = 0; i < terms.length; i++) {
+            outBits[i] = bits[i].clone();
+        }
+        for (int i = 0; i < other.terms.length; i++) {
+            int index = indexOf(outTerms, other.terms[i]);
+            if (index < 0) {
+                index = outTerms.length;
+                outTerms = Arrays.copyOf(outTerms, index + 1);
+                outBits = Arrays.copyOf(outBits, index + 1);
+                outDays = Arrays.copyOf(outDays, index + 1);
+                outTerms[index] = other.terms[i];
+                outBits[index] = other.bits[i].clone();
+                outDays[index] = other.days[i];
+            } else {
+                for (int w = 0; w < WORDS; w++) {
+                    outBits[index][w] |= other.bits[i][w];
+                }
+                outDays[index] |= other.days[i];
+            }
+        }
+        return new Occupancy(outTerms, outBits, outDays, exact && other.exact, wildcard || other.wildcard);
+    }
+    /**
+     * checks if 2 occupancies share a time slot in the same term
+     * @param other Occupancy that is compared to
+     * @return true if they might conflict, false if they definitely don't
+     */
+    public boolean intersects(Occupancy other) {
+        if (this.wildcard || other.wildcard) {
+            return true;
+        }
+        for (int i = 0; i < terms.length; i++) {
+            for (int j = 0; j < other.terms.length; j++) {
+                if (terms[i].equals(other.terms[j])) {
+                    long[] a = bits[i];
+                    long[] b = other.bits[j];
+                    for (int w = 0; w < WORDS; w++) {
+                        if ((a[w] & b[w]) != 0) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    /**
+     * if both occupancies are exact, intersects is the same as a pairwise Block.conflicts check
+     * @return true if every block was encoded without rounding
+     */
+    public boolean isExact() {
+        return this.exact;
+    }
+    /**
+     * checks if the occupancy covers no time at all
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return terms.length == 0 && !wildcard;
+    }
+    /**
+     * counts the days that have any block, in the term with the most of them
+     * @return int of the number of days
+     */
+    public int days() {
+        int most = 0;
+        for (int term : days) {
+            most = Math.max(most, Integer.bitCount(term));
+        }
+        return most;
+    }
+    /**
+     * finds the longest stretch of time taken up on any day, blocks with a short break between them count as 1 stretch.
+     * A break of exactly gap minutes between the end of 1 block and the start of the next is still short. Breaks are
+     * measured in slots, so times off the slot grid can make a break look a few minutes shorter. Blocks that couldn't be
+     * encoded have no length, so they're left out
+     * @param gap int of the longest break in minutes that doesn't end a stretch, inclusive
+     * @return int of the length of the longest stretch in minutes
+     */
+    public int longestRun(int gap) {
+        int longest = 0;
+        for (long[] term : bits) {
+            for (int day = 0; day < Day.values().length; day++) {
+                int end = (day + 1) * SLOTS_PER_DAY;
+                int first = nextSet(term, day * SLOTS_PER_DAY, end);
+                while (first >= 0) {
+                    // the stretch goes on as long as the next block starts within the break
+                    int last = nextClear(term, first, end) - 1;
+                    int next = nextSet(term, last + 1, end);
+                    while (next >= 0 && (next - last) * SLOT_MINUTES <= gap) {
+                        last = nextClear(term, next, end) - 1;
+                        next = nextSet(term, last + 1, end);
+                    }
+                    longest = Math.max(longest, (last - first) * SLOT_MINUTES);
+                    first = next;
+                }
+            }
+        }
+        return longest;
+    }
+    // finds the first set slot in [from, to), -1 if there isn't one
+    private static int nextSet(long[] bits, int from, int to) {
+        while (from < to) {
+            long word = bits[from >>> 6] & (-1L << from);
+            if (word != 0) {
+                int slot = (from & ~63) + Long.numberOfTrailingZeros(word);
+                return slot < to ? slot : -1;
+            }
+            from = (from & ~63) + 64;
+        }
+        return -1;
+    }
+    // finds the first clear slot in [from, to), to if there isn't one
+    private static int nextClear(long[] bits, int from, int to) {
+        while (from < to) {
+            long word = ~bits[from >>> 6] & (-1L << from);
+            if (word != 0) {
+                int slot = (from & ~63) + Long.numberOfTrailingZeros(word);
+                return Math.min(slot, to);
+            }
+            from = (from & ~63) + 64;
+        }
+        return to;
+    }
+    // converts 24-hour HHMM time into minutes since midnight, -1 if it isn't a valid time
+    private static int toMinutes(int time) {
+        int hours = time / 100;
+        int minutes = time % 100;
+        if (time < 0 || hours > 23 || minutes > 59) {
+            return -1;
+        }
+        return hours * 60 + minutes;
+    }
+    // linear search, there is only ever a term or two
+    private static int indexOf(String[] terms, String term) {
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].equals(term)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,6 +1,17 @@
 package cskilian.courselists;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 public interface Parser {
     boolean subordinate(Course course, Course node);
     Collection<Course> makeCourses(String subject, String number, String term) throws Exception;
+    // fetches the courses of several {subject, number} requests, in the same order. Parsers that can fetch side by side
+    // override this, by default they're fetched 1 at a time
+    default List<Collection<Course>> makeCourses(List<String[]> requests, String term) throws Exception {
+        List<Collection<Course>> out = new ArrayList<Collection<Course>>();
+        for (String[] request : requests) {
+            out.add(makeCourses(request[0], request[1], term));
+        }
+        return out;
+    }
 }
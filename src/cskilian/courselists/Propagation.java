@@ -0,0 +1,198 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+// Propagation is a pass over a catalog before anything is combined, that takes out the sections that can't be in any
+// valid schedule. A section is dead if it breaks the constraints, if every section it belongs to is dead, if none of
+// the sections of 1 of its types (ie. its tutorials) fits with it, or if it conflicts with every option of another
+// subject. Taking a section out can leave others without a fit, so the pass goes on until nothing changes (arc
+// consistency). An option of another subject is a lecture with 1 of each type under it that all fit with the section,
+// without checking them against each other, so every section it takes out is dead for sure, but some dead sections may
+// be left in. If a subject loses every lecture there is no valid schedule at all. Pairs of sections are looked up in the
+// conflict graph of the catalog, so the pass never compares blocks
+public class Propagation {
+    private final CourseCatalog catalog;
+    // every section taken out with the reason, in the order they were taken out
+    private final Map<Course, String> eliminated;
+    // subject that lost every lecture, null if there may be a valid schedule
+    private final String blocking;
+    private Propagation(CourseCatalog catalog, Map<Course, String> eliminated, String blocking) {
+        this.catalog = catalog;
+        this.eliminated = Collections.unmodifiableMap(eliminated);
+        this.blocking = blocking;
+    }
+    /**
+     * runs the pass over a catalog
+     * @param catalog CourseCatalog of the subjects that are all required
+     * @param constraints Constraints every schedule keeps to
+     * @return Propagation with the catalog that's left and the sections that were taken out
+     */
+    public static Propagation of(CourseCatalog catalog, Constraints constraints) {
+        Map<Course, String> eliminated = new LinkedHashMap<Course, String>();
+        List<Category> subjects = new ArrayList<Category>(catalog.getRoot().getCategories());
+        Collection<Course> all = catalog.getAll();
+        ConflictGraph graph = catalog.getConflicts();
+        // a lab or tutorial can belong to more than 1 lecture
+        Map<Course, List<Course>> parents = new IdentityHashMap<Course, List<Course>>();
+        for (Course course : all) {
+            for (Category category : course.getCategories()) {
+                for (Course child : category.getCourses()) {
+                    parents.computeIfAbsent(child, c -> new ArrayList<Course>()).add(course);
+                }
+            }
+        }
+        Set<Course> dead = Collections.newSetFromMap(new IdentityHashMap<Course, Boolean>());
+        for (Course course : all) {
+            if (!constraints.allows(course) || !constraints.allows(course.occupancy)) {
+                kill(course, "breaks the constraints", dead, eliminated);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Course course : all) {
+                if (dead.contains(course)) {
+                    continue;
+                }
+                String reason = reason(course, parents.get(course), subjects, dead, graph);
+                if (reason != null) {
+                    kill(course, reason, dead, eliminated);
+                    changed = true;
+                }
+            }
+        }
+        String blocking = null;
+        for (Category subject : subjects) {
+            if (dead.containsAll(subject.getCourses())) {
+                blocking = subject.type;
+                break;
+            }
+        }
+        if (blocking != null) {
+            // the subject would be left out of the catalog instead of making every schedule invalid
+            return new Propagation(catalog.select(Collections.<String>emptyList()), eliminated, blocking);
+        }
+        Set<Integer> crns = new HashSet<Integer>();
+        for (Course course : eliminated.keySet()) {
+            crns.add(course.crn);
+        }
+        return new Propagation(crns.isEmpty() ? catalog : catalog.without(crns), eliminated, null);
+    }
+    /**
+     * getter for the catalog without the sections that were taken out, it has the same valid schedules as the one the
+     * pass was run on
+     * @return CourseCatalog that's left, empty if the pass isn't feasible
+     */
+    public CourseCatalog getCatalog() {
+        return catalog;
+    }
+    /**
+     * getter for the sections that were taken out
+     * @return Map<Course, String> of the reason every section was taken out, in the order they were taken out
+     */
+    public Map<Course, String> getEliminated() {
+        return eliminated;
+    }
+    /**
+     * checks if there may be a valid schedule, if not there's surely none
+     * @return false if a subject lost every lecture, true otherwise
+     */
+    public boolean isFeasible() {
+        return blocking == null;
+    }
+    /**
+     * getter for the subject that lost every lecture
+     * @return String of the subject, null if the pass is feasible
+     */
+    public String getBlocking() {
+        return blocking;
+    }
+    /**
+     * finds why a section can't be in any valid schedule
+     * @param course Course of the section
+     * @param parents List<Course> of the sections it belongs to, null for a lecture
+     * @param subjects List<Category> of the root category of every subject
+     * @param dead Set<Course> of the sections taken out so far
+     * @param graph ConflictGraph of the catalog
+     * @return String of the reason, null if it may still be in a valid schedule
+     */
+    private static String reason(Course course, List<Course> parents, List<Category> subjects, Set<Course> dead,
+                                 ConflictGraph graph) {
+        if (parents != null) {
+            boolean alive = false;
+            boolean fits = false;
+            for (Course parent : parents) {
+                if (!dead.contains(parent)) {
+                    alive = true;
+                    fits |= !graph.conflicts(course, parent);
+                }
+            }
+            if (!alive) {
+                return "every section it belongs to was eliminated";
+            }
+            if (!fits) {
+                return "conflicts with every section it belongs to";
+            }
+        }
+        for (Category category : course.getCategories()) {
+            if (!fitsAny(course, category, dead, graph)) {
+                return "no " + category.type + " fits with it";
+            }
+        }
+        for (Category subject : subjects) {
+            if (!subject.type.equals(course.subject) && !fitsAny(course, subject, dead, graph)) {
+                return "conflicts with every option of " + subject.type;
+            }
+        }
+        return null;
+    }
+    // checks if a live section of the category fits with the course, along with 1 of each type under it
+    private static boolean fitsAny(Course course, Category category, Set<Course> dead, ConflictGraph graph) {
+        for (Course option : category.getCourses()) {
+            if (fits(course, option, dead, graph)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    // checks if a live section fits with the course, along with 1 of each type under it
+    private static boolean fits(Course course, Course option, Set<Course> dead, ConflictGraph graph) {
+        if (dead.contains(option) || graph.conflicts(course, option)) {
+            return false;
+        }
+        for (Category category : option.getCategories()) {
+            if (!fitsAny(course, category, dead, graph)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    // helper for taking a section out
+    private static void kill(Course course, String reason, Set<Course> dead, Map<Course, String> eliminated) {
+        dead.add(course);
+        eliminated.put(course, reason);
+    }
+    /**
+     * writes the sections that were taken out, 1 per line
+     * @return String of the report
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        if (blocking != null) {
+            out.append("no valid schedule, every section of ").append(blocking).append(" was eliminated\n");
+        }
+        for (Map.Entry<Course, String> entry : eliminated.entrySet()) {
+            Course course = entry.getKey();
+            out.append(course.crn).append(' ').append(course.subject).append(' ').append(course.section).append(' ')
+                    .append(course.type).append(": ").append(entry.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+}
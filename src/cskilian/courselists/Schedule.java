@@ -0,0 +1,164 @@
+package cskilian.courselists;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+// Schedule is a partial or complete set of courses built up while making choices. It carries the merged Occupancy of
+// its courses, so it can be checked against another schedule without comparing every pair of Blocks. A merged schedule
+// only points at the 2 schedules it was merged from, so every partial schedule is shared by all the schedules built on
+// it instead of being copied into each of them. The courses are only put in a set when one is asked for
+public class Schedule implements Iterable<Course> {
+    public static final Schedule EMPTY = new Schedule(null, null, null, 0, Occupancy.EMPTY);
+    public final Occupancy occupancy;
+    // the course of a schedule of 1 course, null otherwise
+    private final Course course;
+    // the schedules a merged schedule was made from, null otherwise
+    private final Schedule left;
+    private final Schedule right;
+    private final int size;
+    private Schedule(Course course, Schedule left, Schedule right, int size, Occupancy occupancy) {
+        this.course = course;
+        this.left = left;
+        this.right = right;
+        this.size = size;
+        this.occupancy = occupancy;
+    }
+    /**
+     * makes a schedule of a single course
+     * @param course Course that is in the schedule
+     * @return Schedule with only that course
+     */
+    public static Schedule of(Course course) {
+        return new Schedule(course, null, null, 1, course.occupancy);
+    }
+    /**
+     * merges 2 schedules that have no course in common, the occupancy bitmaps are or-ed together and the courses of
+     * both are shared with the new schedule
+     * @param other Schedule that is merged in
+     * @return new Schedule with the courses of both
+     */
+    public Schedule merge(Schedule other) {
+        if (other.size == 0) {
+            return this;
+        }
+        if (this.size == 0) {
+            return other;
+        }
+        return new Schedule(null, this, other, this.size + other.size, this.occupancy.union(other.occupancy));
+    }
+    /**
+     * getter for the number of courses
+     * @return int of the number of courses in the schedule
+     */
+    public int size() {
+        return size;
+    }
+    /**
+     * puts the courses in a set, for showing them
+     * @return SortedSet<Course> of a copy of the courses
+     */
+    public SortedSet<Course> courses() {
+        SortedSet<Course> courses = new TreeSet<Course>();
+        for (Course course : this) {
+            courses.add(course);
+        }
+        return courses;
+    }
+    /**
+     * goes over the courses without putting them in a set, in no particular order
+     * @return Iterator<Course> of the courses
+     */
+    @Override
+    public Iterator<Course> iterator() {
+        final Deque<Schedule> stack = new ArrayDeque<Schedule>();
+        if (size > 0) {
+            stack.push(this);
+        }
+        return new Iterator<Course>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+            @Override
+            public Course next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Schedule next = stack.pop();
+                while (next.course == null) {
+                    stack.push(next.right);
+                    next = next.left;
+                }
+                return next.course;
+            }
+        };
+    }
+    /**
+     * checks if 2 schedules have conflicting courses
+     * @param other Schedule that is compared to
+     * @return true if they conflict, false otherwise
+     */
+    public boolean conflicts(Schedule other) {
+        if (!this.occupancy.intersects(other.occupancy)) {
+            return false;
+        }
+        if (this.occupancy.isExact() && other.occupancy.isExact()) {
+            return true;
+        }
+        // some block didn't fit the slot grid, fall back to comparing blocks
+        for (Course i : this) {
+            for (Course j : other) {
+                if (coursesConflict(i, j)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    /**
+     * checks if 2 schedules have conflicting courses, when some block didn't fit the slot grid the courses of this
+     * schedule are looked up in the conflict graph instead of comparing blocks
+     * @param other Schedule that is compared to
+     * @param graph ConflictGraph that has the courses of both schedules
+     * @return true if they conflict, false otherwise
+     */
+    public boolean conflicts(Schedule other, ConflictGraph graph) {
+        if (!this.occupancy.intersects(other.occupancy)) {
+            return false;
+        }
+        if (this.occupancy.isExact() && other.occupancy.isExact()) {
+            return true;
+        }
+        long[] set = graph.set(other);
+        for (Course course : this) {
+            if (graph.conflictsWithAny(course, set)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * checks if 2 courses conflict
+     * @param c1 Course 1
+     * @param c2 Course 2
+     * @return true if they conflict, else false
+     */
+    public static boolean coursesConflict(final Course c1, final Course c2) {
+        if (!c1.occupancy.intersects(c2.occupancy)) {
+            return false;
+        }
+        if (c1.occupancy.isExact() && c2.occupancy.isExact()) {
+            return true;
+        }
+        for (Block b1 : c1.schedule) {
+            for (Block b2 : c2.schedule) {
+                if (b1.conflicts(b2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
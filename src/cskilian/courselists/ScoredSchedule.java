@@ -0,0 +1,88 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+// ScoredSchedule is a schedule with its score worked out once, so sorting compares primitive keys instead of adding up
+// the ranks of both sets on every comparison. Higher scores come first, and equal scores keep the order they came in
+public class ScoredSchedule {
+    public final Schedule schedule;
+    public final float score;
+    /**
+     * Constructor
+     * @param schedule Schedule that is scored
+     * @param score float of its score
+     */
+    public ScoredSchedule(Schedule schedule, float score) {
+        this.schedule = schedule;
+        this.score = score;
+    }
+    /**
+     * scores a schedule
+     * @param schedule Schedule that is scored
+     * @param sorter SortingAlgorithm that decides the score
+     * @return ScoredSchedule of the schedule
+     */
+    public static ScoredSchedule of(Schedule schedule, SortingAlgorithm sorter) {
+        return of(schedule, sorter, Course::getRank);
+    }
+    /**
+     * scores a schedule with ranks that aren't the ones on the courses
+     * @param schedule Schedule that is scored
+     * @param sorter SortingAlgorithm that decides the score
+     * @param ranks ToIntFunction<Course> of the rank of every course
+     * @return ScoredSchedule of the schedule
+     */
+    public static ScoredSchedule of(Schedule schedule, SortingAlgorithm sorter, ToIntFunction<Course> ranks) {
+        int sumRank = 0;
+        int squares = 0;
+        for (Course course : schedule) {
+            int rank = ranks.applyAsInt(course);
+            sumRank += rank;
+            squares += rank * rank;
+        }
+        return new ScoredSchedule(schedule, score(sumRank, squares, schedule.size(), sorter));
+    }
+    /**
+     * scores a set of courses the way the comparator of the sorting algorithm orders it
+     * @param sumRank int of the sum of the ranks
+     * @param squares int of the sum of the squared ranks
+     * @param size int of the number of courses
+     * @param sorter SortingAlgorithm that decides the score
+     * @return float of the score, higher is better
+     */
+    public static float score(int sumRank, int squares, int size, SortingAlgorithm sorter) {
+        if (sorter == SortingAlgorithm.MaxMin) {
+            return MaxMinComparator.score(sumRank, squares, size);
+        }
+        return MaxComparator.score(sumRank);
+    }
+    /**
+     * sorts scored schedules best first. Every schedule is packed into a long with its score in the upper half and its
+     * position in the lower half, so a primitive (parallel) sort orders by score and keeps ties in their original order
+     * @param schedules List<ScoredSchedule> that is sorted in place
+     */
+    public static void sort(List<ScoredSchedule> schedules) {
+        long start = System.nanoTime();
+        long[] keys = new long[schedules.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) descending(schedules.get(i).score) << 32) | i;
+        }
+        Arrays.parallelSort(keys);
+        List<ScoredSchedule> sorted = new ArrayList<ScoredSchedule>(schedules);
+        for (int i = 0; i < keys.length; i++) {
+            schedules.set(i, sorted.get((int) keys[i]));
+        }
+        Metrics.since(Metrics.Phase.SORT, start);
+    }
+    // maps a float to an int that sorts the highest float first
+    static int descending(float score) {
+        // -0.0 and 0.0 are the same score
+        int bits = Float.floatToIntBits(score == 0 ? 0 : score);
+        // negative floats sort backwards as ints, flipping everything but the sign fixes that
+        if (bits < 0) {
+            bits ^= Integer.MAX_VALUE;
+        }
+        return ~bits;
+    }
+}
@@ -0,0 +1,379 @@
+package cskilian.courselists;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+// SnapshotParser serves every section of 1 term out of a snapshot file, so no course code of the term costs a trip to
+// the registrar. The file is memory-mapped and read where it lies: opening it only checks the header, and a lookup is
+// a binary search of the index followed by reading the sections it points at. The file is laid out in columns:
+//     header      magic, version, when it was made, the term, and how many sections, blocks, codes and strings
+//     sections    crn, course code, section, type, instructor and rank of every section, 1 column after the other,
+//                 strings are ids into the string table
+//     first block where the blocks of every section start, and where the last one ends
+//     blocks      every block as day << 24 | start << 12 | end, they all belong to the term of the file
+//     index       every course code without spaces, ie. COMP1405, with its first section and number of sections,
+//                 sorted by its UTF-8 bytes, the sections of a code are next to each other
+//     strings     where every string starts and where the last one ends, then their UTF-8 bytes
+// Every string is stored once. Other terms go to the parser behind it, if there is one
+public class SnapshotParser implements Parser {
+    private static final int MAGIC = 0x434c534e;
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+    // columns of the sections, in the order they're in the file
+    private static final int CRN = 0;
+    private static final int CODE = 1;
+    private static final int SECTION = 2;
+    private static final int TYPE = 3;
+    private static final int INSTRUCTOR = 4;
+    private static final int RANK = 5;
+    private static final int COLUMNS = 6;
+    private static final String USAGE = "usage: SnapshotParser [--upstream url] [--subjects COMP,MATH] term snapshot.bin";
+    private final ByteBuffer buffer;
+    private final Parser fallback;
+    private final String term;
+    private final long created;
+    private final int sections;
+    private final int codes;
+    // where each part of the file starts
+    private final int firstBlocks;
+    private final int blocks;
+    private final int index;
+    private final int stringOffsets;
+    private final int stringData;
+    // strings decoded so far by id, 2 threads decoding the same one make equal strings, so a race only costs time
+    private final String[] strings;
+    /**
+     * Constructor for a snapshot without a parser behind it, other terms have no courses
+     * @param path Path of the snapshot file
+     * @throws IOException thrown if the file can't be read or isn't a snapshot
+     */
+    public SnapshotParser(Path path) throws IOException {
+        this(path, null);
+    }
+    /**
+     * Constructor
+     * @param path Path of the snapshot file
+     * @param fallback Parser that makes the courses of other terms, null if there isn't one
+     * @throws IOException thrown if the file can't be read or isn't a snapshot
+     */
+    public SnapshotParser(Path path, Parser fallback) throws IOException {
+        this.fallback = fallback;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping outlives the channel
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " isn't a snapshot of version " + VERSION);
+        }
+        created = buffer.getLong(8);
+        sections = buffer.getInt(20);
+        int blockCount = buffer.getInt(24);
+        codes = buffer.getInt(28);
+        int stringCount = buffer.getInt(32);
+        firstBlocks = HEADER + 4 * COLUMNS * sections;
+        blocks = firstBlocks + 4 * (sections + 1);
+        index = blocks + 4 * blockCount;
+        stringOffsets = index + 12 * codes;
+        stringData = stringOffsets + 4 * (stringCount + 1);
+        if (stringData > buffer.capacity()
+                || stringData + (long) buffer.getInt(stringOffsets + 4 * stringCount) > buffer.capacity()) {
+            throw new IOException(path + " is cut short");
+        }
+        strings = new String[stringCount];
+        term = string(buffer.getInt(16));
+    }
+    @Override
+    public boolean subordinate(Course course, Course node) {
+        return CarletonParser.sectionSubordinate(course, node);
+    }
+    /**
+     * makes the courses of a course code from the snapshot
+     * @param subject String of subject
+     * @param number String of number
+     * @param term String of term
+     * @return Collection<Course> of new courses, empty if the term of the snapshot doesn't have the course code
+     * @throws Exception thrown if the parser behind it fails on another term
+     */
+    @Override
+    public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+        if (!this.term.equals(term)) {
+            return fallback != null ? fallback.makeCourses(subject, number, term) : new ArrayList<Course>();
+        }
+        Metrics.MakeCoursesEvent event = new Metrics.MakeCoursesEvent();
+        event.begin();
+        List<Course> courses = new ArrayList<Course>();
+        int entry = find(key(subject + number).getBytes(StandardCharsets.UTF_8));
+        if (entry >= 0) {
+            int first = buffer.getInt(index + 12 * entry + 4);
+            int count = buffer.getInt(index + 12 * entry + 8);
+            for (int i = first; i < first + count; i++) {
+                courses.add(course(i));
+            }
+        }
+        event.subject = subject;
+        event.number = number;
+        event.term = term;
+        event.sections = courses.size();
+        event.commit();
+        return courses;
+    }
+    @Override
+    public List<Collection<Course>> makeCourses(List<String[]> requests, String term) throws Exception {
+        // another term is fetched side by side by the parser behind it
+        if (!this.term.equals(term) && fallback != null) {
+            return fallback.makeCourses(requests, term);
+        }
+        return Parser.super.makeCourses(requests, term);
+    }
+    /**
+     * getter for the term of the snapshot
+     * @return String of the term
+     */
+    public String getTerm() {
+        return term;
+    }
+    /**
+     * getter for when the snapshot was made
+     * @return long of the milliseconds since the epoch
+     */
+    public long getCreated() {
+        return created;
+    }
+    /**
+     * getter for the number of sections in the snapshot
+     * @return int of the number of sections
+     */
+    public int size() {
+        return sections;
+    }
+    /**
+     * writes a snapshot file of every section of a term. It's written to the side and moved in, so a reader never sees
+     * half a file
+     * @param path Path of the snapshot file
+     * @param term String of the term every block belongs to
+     * @param courses Collection<Course> of every section of the term, a crn that's in it twice is only kept once
+     * @throws IOException thrown if the file can't be written
+     */
+    public static void write(Path path, String term, Collection<Course> courses) throws IOException {
+        // sections by course code without spaces, in the order they came in within a code
+        Map<String, List<Course>> byCode = new TreeMap<String, List<Course>>((s1, s2) ->
+                Arrays.compareUnsigned(s1.getBytes(StandardCharsets.UTF_8), s2.getBytes(StandardCharsets.UTF_8)));
+        Set<Integer> crns = new LinkedHashSet<Integer>();
+        for (Course course : courses) {
+            if (crns.add(course.crn)) {
+                byCode.computeIfAbsent(key(course.subject), code -> new ArrayList<Course>()).add(course);
+            }
+        }
+        List<Course> sorted = new ArrayList<Course>();
+        for (List<Course> code : byCode.values()) {
+            sorted.addAll(code);
+        }
+        List<String> table = new ArrayList<String>();
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        int[][] columns = new int[COLUMNS][sorted.size()];
+        int[] firstBlocks = new int[sorted.size() + 1];
+        List<Integer> blocks = new ArrayList<Integer>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Course course = sorted.get(i);
+            columns[CRN][i] = course.crn;
+            columns[CODE][i] = intern(course.subject, table, ids);
+            columns[SECTION][i] = intern(course.section, table, ids);
+            columns[TYPE][i] = intern(course.type, table, ids);
+            columns[INSTRUCTOR][i] = intern(course.instructor, table, ids);
+            columns[RANK][i] = course.getRank();
+            firstBlocks[i] = blocks.size();
+            for (Block block : course.schedule) {
+                blocks.add(block.day.ordinal() << 24 | block.start << 12 | block.end);
+            }
+        }
+        firstBlocks[sorted.size()] = blocks.size();
+        int termId = intern(term, table, ids);
+        // interned after the sections, so the string table doesn't depend on the order of the index
+        int[] index = new int[3 * byCode.size()];
+        int at = 0;
+        int first = 0;
+        for (Map.Entry<String, List<Course>> entry : byCode.entrySet()) {
+            index[at++] = intern(entry.getKey(), table, ids);
+            index[at++] = first;
+            index[at++] = entry.getValue().size();
+            first += entry.getValue().size();
+        }
+        List<byte[]> bytes = new ArrayList<byte[]>();
+        for (String string : table) {
+            bytes.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream array = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(array)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(termId);
+            out.writeInt(sorted.size());
+            out.writeInt(blocks.size());
+            out.writeInt(byCode.size());
+            out.writeInt(table.size());
+            out.writeInt(0);
+            for (int[] column : columns) {
+                for (int value : column) {
+                    out.writeInt(value);
+                }
+            }
+            for (int value : firstBlocks) {
+                out.writeInt(value);
+            }
+            for (int value : blocks) {
+                out.writeInt(value);
+            }
+            for (int value : index) {
+                out.writeInt(value);
+            }
+            int offset = 0;
+            for (byte[] string : bytes) {
+                out.writeInt(offset);
+                offset += string.length;
+            }
+            out.writeInt(offset);
+            for (byte[] string : bytes) {
+                out.write(string);
+            }
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        File temp = File.createTempFile(path.getFileName().toString(), ".tmp", directory.toFile());
+        Files.write(temp.toPath(), array.toByteArray());
+        Files.move(temp.toPath(), path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    /**
+     * downloads every section of a term from Carleton Central into a snapshot file
+     * @param args String[] of the options, the term and the path of the file
+     * @throws Exception thrown if a section can't be fetched or the file can't be written
+     */
+    public static void main(String[] args) throws Exception {
+        CarletonParser parser = new CarletonParser();
+        List<String> subjects = null;
+        List<String> rest = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--upstream": parser = new CarletonParser(args[++i]); break;
+                    case "--subjects": subjects = Arrays.asList(args[++i].split(",")); break;
+                    default: rest.add(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            rest.clear();
+        }
+        if (rest.size() != 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        Collection<Course> courses = parser.makeTerm(rest.get(0), subjects);
+        write(Paths.get(rest.get(1)), rest.get(0), courses);
+        System.err.println(courses.size() + " sections written to " + rest.get(1) + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+    /**
+     * binary search of the index for a course code
+     * @param code byte[] of the UTF-8 bytes of the code without spaces
+     * @return int of the entry of the code, -1 if the snapshot doesn't have it
+     */
+    private int find(byte[] code) {
+        int low = 0;
+        int high = codes - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(buffer.getInt(index + 12 * mid), code);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    // compares the bytes of a string in the file with some bytes, without copying them out of the file
+    private int compare(int id, byte[] bytes) {
+        int start = stringData + buffer.getInt(stringOffsets + 4 * id);
+        int length = stringData + buffer.getInt(stringOffsets + 4 * (id + 1)) - start;
+        for (int i = 0; i < Math.min(length, bytes.length); i++) {
+            int c = Integer.compare(buffer.get(start + i) & 0xff, bytes[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+    /**
+     * makes a new course out of a section of the file
+     * @param i int of the section
+     * @return Course of the section with its blocks
+     */
+    private Course course(int i) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        int end = buffer.getInt(firstBlocks + 4 * (i + 1));
+        for (int b = buffer.getInt(firstBlocks + 4 * i); b < end; b++) {
+            int block = buffer.getInt(blocks + 4 * b);
+            schedule.add(new Block(Day.values()[block >>> 24], term, block >>> 12 & 0xfff, block & 0xfff));
+        }
+        return new Course(column(CRN, i), string(column(CODE, i)), string(column(SECTION, i)),
+                string(column(TYPE, i)), string(column(INSTRUCTOR, i)), column(RANK, i), schedule);
+    }
+    // helper for a value of a section
+    private int column(int column, int i) {
+        return buffer.getInt(HEADER + 4 * (column * sections + i));
+    }
+    // helper for a string of the string table, -1 is null
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        String string = strings[id];
+        if (string == null) {
+            int start = buffer.getInt(stringOffsets + 4 * id);
+            byte[] bytes = new byte[buffer.getInt(stringOffsets + 4 * (id + 1)) - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(stringData + start + i);
+            }
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = string;
+        }
+        return string;
+    }
+    // helper for the id of a string in the table being written, -1 for null
+    private static int intern(String string, List<String> table, Map<String, Integer> ids) {
+        if (string == null) {
+            return -1;
+        }
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = table.size();
+            table.add(string);
+            ids.put(string, id);
+        }
+        return id;
+    }
+    // helper for a course code without spaces in capitals, ie. COMP1405, the same however the code was written
+    private static String key(String code) {
+        return code.replaceAll("\\s", "").toUpperCase();
+    }
+}
@@ -0,0 +1,243 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+// SolveHandle is a search for the best schedules that runs in the background. While it runs it publishes the best
+// schedules found so far, which only ever get better, so there's something to show long before it's done. It stops
+// once it has searched everything, once its time or node budget is used up, or once it's cancelled, and whatever was
+// found by then is its result
+public class SolveHandle {
+    // how often listeners are told about better schedules, at most
+    private static final long PUBLISH_NANOS = 50_000_000L;
+    // nodes a search visits between 2 looks at the budget and the cancel flag
+    static final int CHECK_EVERY = 1024;
+    private final int k;
+    // System.nanoTime the search has to stop by, if it's timed
+    private final boolean timed;
+    private final long deadline;
+    // most nodes the search can visit, 0 for no limit
+    private final long maxNodes;
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile boolean stopped = false;
+    // best schedules of every search running side by side, each search only writes its own slot
+    private volatile AtomicReferenceArray<List<ScoredSchedule>> slots =
+            new AtomicReferenceArray<List<ScoredSchedule>>(1);
+    // the result once the search is over
+    private volatile List<ScoredSchedule> best = Collections.emptyList();
+    private final AtomicLong published = new AtomicLong(System.nanoTime() - PUBLISH_NANOS);
+    private final List<Consumer<List<ScoredSchedule>>> listeners =
+            new CopyOnWriteArrayList<Consumer<List<ScoredSchedule>>>();
+    private final CompletableFuture<List<ScoredSchedule>> result = new CompletableFuture<List<ScoredSchedule>>();
+    private volatile boolean complete = false;
+    // the pass and the grouping the search solved on, set before it starts
+    private volatile Propagation propagation;
+    private volatile Equivalence equivalence;
+    // set once the listeners were told about the result, guarded by this
+    private boolean finished = false;
+    /**
+     * Constructor, the time budget starts counting now
+     * @param k int of the number of schedules wanted
+     * @param millis long of the most milliseconds the search can run for, 0 for no limit
+     * @param nodes long of the most partial schedules the search can visit, 0 for no limit
+     */
+    public SolveHandle(int k, long millis, long nodes) {
+        this.k = k;
+        this.timed = millis > 0;
+        this.deadline = System.nanoTime() + Math.max(0, millis) * 1_000_000L;
+        this.maxNodes = Math.max(0, nodes);
+    }
+    /**
+     * getter for the best schedules found so far
+     * @return List<ScoredSchedule> of at most k schedules, best first
+     */
+    public List<ScoredSchedule> getBest() {
+        return result.isDone() ? best : merge();
+    }
+    /**
+     * adds a listener that's told about every better set of schedules and about the result, at most once every 50ms
+     * while the search runs. It's called on the thread of the search, so a UI has to hand the work to its own thread
+     * @param listener Consumer<List<ScoredSchedule>> of the best schedules so far, best first
+     */
+    public void onUpdate(Consumer<List<ScoredSchedule>> listener) {
+        listeners.add(listener);
+    }
+    /**
+     * adds a listener that's told once the search is over, right away if it already is
+     * @param listener Consumer<SolveHandle> of this handle
+     */
+    public void onDone(final Consumer<SolveHandle> listener) {
+        result.whenComplete((schedules, e) -> listener.accept(this));
+    }
+    /**
+     * stops the search, the schedules found so far are its result
+     */
+    public void cancel() {
+        cancelled.set(true);
+        stopped = true;
+    }
+    /**
+     * checks if the search was cancelled
+     * @return true if cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+    /**
+     * checks if the search is over
+     * @return true if it searched everything, ran out of budget, was cancelled or failed
+     */
+    public boolean isDone() {
+        return result.isDone();
+    }
+    /**
+     * checks if the result is exact, that is the search ended because it searched everything
+     * @return true if the result is the best k schedules there are
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    /**
+     * getter for the number of partial schedules visited so far
+     * @return long of the number of nodes
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+    /**
+     * waits for the search to be over
+     * @return List<ScoredSchedule> of the best schedules found, best first
+     * @throws Exception thrown if the search failed, ie. making the options ran into a bad course
+     */
+    public List<ScoredSchedule> join() throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+    /**
+     * getter for the pass the search solved on, ie. to say which sections ruled out every schedule
+     * @return Propagation of the catalog and constraints of the search, null until it's made
+     */
+    public Propagation getPropagation() {
+        return propagation;
+    }
+    /**
+     * getter for the grouping the search solved on, the schedules it finds have 1 section of every group
+     * @return Equivalence of the sections, null if the search doesn't collapse them or until it's made
+     */
+    public Equivalence getEquivalence() {
+        return equivalence;
+    }
+    /**
+     * sets the pass the search solves on
+     * @param propagation Propagation of the catalog and constraints
+     */
+    void setPropagation(Propagation propagation) {
+        this.propagation = propagation;
+    }
+    /**
+     * sets the grouping the search solves on
+     * @param equivalence Equivalence of the sections, null if they aren't collapsed
+     */
+    void setEquivalence(Equivalence equivalence) {
+        this.equivalence = equivalence;
+    }
+    /**
+     * getter for the number of schedules wanted
+     * @return int of k
+     */
+    int getK() {
+        return k;
+    }
+    /**
+     * sets the number of searches that run side by side, before any of them starts
+     * @param searches int of the number of slots
+     */
+    void setSearches(int searches) {
+        slots = new AtomicReferenceArray<List<ScoredSchedule>>(Math.max(1, searches));
+    }
+    /**
+     * counts the nodes a search visited since it last asked, and checks if it has to stop
+     * @param visited int of the number of nodes
+     * @return true if the search has to stop
+     */
+    boolean stop(int visited) {
+        if (stopped) {
+            return true;
+        }
+        long total = nodes.addAndGet(visited);
+        if (maxNodes > 0 && total >= maxNodes || timed && System.nanoTime() - deadline >= 0) {
+            stopped = true;
+        }
+        return stopped;
+    }
+    /**
+     * takes the best schedules a search has found so far, listeners are told if enough time went by since last time
+     * @param slot int of the search
+     * @param schedules List<ScoredSchedule> of its best schedules, best first
+     */
+    void publish(int slot, List<ScoredSchedule> schedules) {
+        slots.set(slot, schedules);
+        long last = published.get();
+        long now = System.nanoTime();
+        if (now - last >= PUBLISH_NANOS && published.compareAndSet(last, now)) {
+            tell(merge());
+        }
+    }
+    /**
+     * ends the search with its result
+     * @param schedules List<ScoredSchedule> of the best schedules found, best first
+     * @param searched boolean true if nothing was left unsearched
+     */
+    void finish(List<ScoredSchedule> schedules, boolean searched) {
+        // listeners never hear about older schedules after the result
+        synchronized (this) {
+            finished = true;
+            complete = searched && !stopped;
+            best = Collections.unmodifiableList(new ArrayList<ScoredSchedule>(schedules));
+            for (Consumer<List<ScoredSchedule>> listener : listeners) {
+                listener.accept(best);
+            }
+        }
+        result.complete(best);
+    }
+    /**
+     * ends the search with an error
+     * @param e Throwable that stopped it
+     */
+    void fail(Throwable e) {
+        result.completeExceptionally(e);
+    }
+    // the best k of every slot, ties keep the order of the slots
+    private List<ScoredSchedule> merge() {
+        List<ScoredSchedule> merged = new ArrayList<ScoredSchedule>();
+        AtomicReferenceArray<List<ScoredSchedule>> current = slots;
+        for (int i = 0; i < current.length(); i++) {
+            List<ScoredSchedule> slot = current.get(i);
+            if (slot != null) {
+                merged.addAll(slot);
+            }
+        }
+        ScoredSchedule.sort(merged);
+        return merged.subList(0, Math.min(k, merged.size()));
+    }
+    // hands better schedules to the listeners
+    private synchronized void tell(List<ScoredSchedule> schedules) {
+        if (finished || listeners.isEmpty()) {
+            return;
+        }
+        List<ScoredSchedule> snapshot = Collections.unmodifiableList(new ArrayList<ScoredSchedule>(schedules));
+        for (Consumer<List<ScoredSchedule>> listener : listeners) {
+            listener.accept(snapshot);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package cskilian.courselists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+// SolveServer serves the solver over HTTP, without the UI, on the HttpServer of the JDK. Every exchange runs on a
+// virtual thread where the runtime has them. Course codes are fetched once per term into a shared catalog snapshot and
+// fetched again once they expire, concurrent fetches of the same course code are merged into 1 upstream request. Every
+// solve runs in a session of its own on the subjects it asked for, so the combinations of a subject are made once and
+// shared by every student. Parameters are read from the query string, or from a form encoded body for a POST
+//     GET /sections?term=Fall&codes=COMP 1405,MATH 1104
+//     GET /solve?term=Fall&codes=COMP 1405,MATH 1104&ranks=31234=8,31240=3&sorter=MaxMin&top=10&constraints=from 1000
+// Both answer with JSON, errors are {"error": "..."} with a 4xx or 5xx status: 400 for bad parameters, 502 if the
+// courses couldn't be fetched, 503 if the server is too busy and 500 for anything else. A solve also says which sections
+// can't be in any schedule and why, if there's no schedule at all, and if the search was cut short by its budget
+public class SolveServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_TOP = 10;
+    private static final int MAX_TOP = 100;
+    private static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+    // how long a solve waits for a free slot before the server answers that it's busy
+    private static final long QUEUE_MILLIS = 10 * 1000;
+    // longest a solve searches for, and the most partial schedules it visits, before it answers with the best so far
+    private static final long SOLVE_MILLIS = 5 * 1000;
+    private static final long SOLVE_NODES = 50_000_000L;
+    // largest form body that's read
+    private static final int MAX_BODY = 64 * 1024;
+    private static final String USAGE = "usage: SolveServer [--port 8080] [--catalog courses.txt | --upstream url] " +
+            "[--solves n] [--ttl seconds] [--budget millis] [--metrics seconds] [--snapshot term.snapshot]";
+    private final Parser parser;
+    private final long ttl;
+    // caps the solves that run at once, the rest wait for a slot
+    private final Semaphore solves;
+    // catalog of every term asked for so far
+    private final Map<String, Term> terms = new ConcurrentHashMap<String, Term>();
+    private volatile long queueMillis = QUEUE_MILLIS;
+    private volatile long solveMillis = SOLVE_MILLIS;
+    private volatile long solveNodes = SOLVE_NODES;
+    private HttpServer server;
+    private ExecutorService executor;
+    /**
+     * Constructor
+     * @param parser Parser that fetches the courses, concurrent fetches of the same course code are merged in front of it
+     * @param solves int of the number of solves that run at once
+     * @param ttl long of how many milliseconds fetched courses are served before they're fetched again
+     */
+    public SolveServer(Parser parser, int solves, long ttl) {
+        this.parser = parser instanceof CoalescingParser ? parser : new CoalescingParser(parser);
+        this.solves = new Semaphore(Math.max(1, solves));
+        this.ttl = ttl;
+    }
+    public static void main(String[] args) throws Exception {
+        Parser parser = null;
+        int port = DEFAULT_PORT;
+        int solves = Runtime.getRuntime().availableProcessors();
+        long ttl = DEFAULT_TTL_MILLIS;
+        long budget = SOLVE_MILLIS;
+        long metrics = 0;
+        String snapshot = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port": port = Integer.parseInt(args[++i]); break;
+                    case "--catalog": parser = new FileParser(args[++i]); break;
+                    case "--upstream": parser = new CarletonParser(args[++i]); break;
+                    case "--solves": solves = Integer.parseInt(args[++i]); break;
+                    case "--ttl": ttl = Long.parseLong(args[++i]) * 1000; break;
+                    case "--budget": budget = Long.parseLong(args[++i]); break;
+                    case "--metrics": metrics = Long.parseLong(args[++i]); break;
+                    case "--snapshot": snapshot = args[++i]; break;
+                    default: throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (parser == null) {
+            parser = new CarletonParser();
+        }
+        if (snapshot != null) {
+            // the term of the snapshot is read from it, every other term goes to the parser behind it
+            parser = new SnapshotParser(Paths.get(snapshot), parser);
+        }
+        Metrics.register();
+        if (metrics > 0) {
+            Metrics.report(System.err, metrics);
+        }
+        SolveServer server = new SolveServer(parser, solves, ttl);
+        server.setBudget(budget, SOLVE_NODES);
+        server.start(port);
+        System.err.println("listening on port " + server.getPort());
+    }
+    /**
+     * sets how long a solve searches for, it then answers with the best schedules it found and says it isn't complete
+     * @param millis long of the most milliseconds, 0 for no limit
+     * @param nodes long of the most partial schedules visited, 0 for no limit
+     */
+    public void setBudget(long millis, long nodes) {
+        this.solveMillis = Math.max(0, millis);
+        this.solveNodes = Math.max(0, nodes);
+    }
+    /**
+     * sets how long a solve waits for a free slot before the server answers that it's busy
+     * @param millis long of the most milliseconds to wait
+     */
+    public void setQueue(long millis) {
+        this.queueMillis = Math.max(0, millis);
+    }
+    /**
+     * starts serving
+     * @param port int of the port, 0 picks a free one
+     * @throws IOException thrown if the port can't be bound
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/sections", new Handler() {
+            @Override
+            String handle(Map<String, String> params) throws Exception {
+                return sections(params);
+            }
+        });
+        server.createContext("/solve", new Handler() {
+            @Override
+            String handle(Map<String, String> params) throws Exception {
+                return solve(params);
+            }
+        });
+        executor = CarletonParser.newExecutor(4 * Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.start();
+    }
+    /**
+     * stops serving, the exchanges that are still running get a second to finish
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+    /**
+     * getter for the port that's served on
+     * @return int of the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    /**
+     * looks up the sections of some course codes
+     * @param params Map<String, String> of the term and the course codes
+     * @return String of the JSON answer
+     * @throws Exception thrown if the courses can't be fetched
+     */
+    private String sections(Map<String, String> params) throws Exception {
+        String term = required(params, "term");
+        List<String[]> codes = BatchSolver.toCodes(required(params, "codes"));
+        CourseCatalog catalog = catalog(term, codes);
+        StringBuilder out = new StringBuilder("{\"term\":").append(BatchSolver.json(term)).append(",\"sections\":[");
+        String separator = "";
+        for (Course course : catalog.getAll()) {
+            out.append(separator).append("{\"crn\":").append(course.crn)
+                    .append(",\"subject\":").append(BatchSolver.json(course.subject))
+                    .append(",\"section\":").append(BatchSolver.json(course.section))
+                    .append(",\"type\":").append(BatchSolver.json(course.type))
+                    .append(",\"instructor\":").append(BatchSolver.json(course.instructor))
+                    .append(",\"rank\":").append(course.getRank()).append(",\"blocks\":[");
+            String comma = "";
+            for (Block block : course.schedule) {
+                out.append(comma).append("{\"day\":").append(BatchSolver.json(block.day.toString()))
+                        .append(",\"start\":").append(block.start).append(",\"end\":").append(block.end).append('}');
+                comma = ",";
+            }
+            out.append("]}");
+            separator = ",";
+        }
+        return out.append("]}").toString();
+    }
+    /**
+     * finds the best schedules of some course codes with the ranks given
+     * @param params Map<String, String> of the term, course codes, ranks, sorting algorithm, constraints and number of
+     *               schedules
+     * @return String of the JSON answer
+     * @throws Exception thrown if the courses can't be fetched, the server is too busy or the search failed
+     */
+    private String solve(Map<String, String> params) throws Exception {
+        String term = required(params, "term");
+        List<String[]> codes = BatchSolver.toCodes(required(params, "codes"));
+        Map<Integer, Integer> ranks = BatchSolver.toRanks(value(params, "ranks", ""));
+        SortingAlgorithm sorter = BatchSolver.toSorter(value(params, "sorter", ""));
+        Constraints constraints = Constraints.parse(value(params, "constraints", ""));
+        int top = Math.min(MAX_TOP, Math.max(1, Integer.parseInt(value(params, "top", "" + DEFAULT_TOP))));
+        Timetable timetable = new Timetable(catalog(term, codes));
+        for (Map.Entry<Integer, Integer> rank : ranks.entrySet()) {
+            timetable.setRank(rank.getKey(), rank.getValue());
+        }
+        timetable.setSortingAlgorithm(sorter);
+        timetable.setConstraints(constraints);
+        List<ScoredSchedule> schedules;
+        SolveHandle handle;
+        if (!solves.tryAcquire(queueMillis, TimeUnit.MILLISECONDS)) {
+            throw new Busy();
+        }
+        try {
+            // the budget frees the slot in time however hard the request is
+            handle = timetable.start(top, solveMillis, solveNodes);
+            try {
+                schedules = handle.join();
+            } catch (InterruptedException e) {
+                handle.cancel();
+                throw e;
+            }
+        } finally {
+            solves.release();
+        }
+        Propagation propagation = handle.getPropagation();
+        StringBuilder out = new StringBuilder("{\"term\":").append(BatchSolver.json(term))
+                .append(",\"complete\":").append(handle.isComplete())
+                .append(",\"feasible\":").append(propagation.isFeasible()).append(",\"eliminated\":[");
+        String comma = "";
+        for (Map.Entry<Course, String> entry : propagation.getEliminated().entrySet()) {
+            out.append(comma).append("{\"crn\":").append(entry.getKey().crn)
+                    .append(",\"reason\":").append(BatchSolver.json(entry.getValue())).append('}');
+            comma = ",";
+        }
+        out.append("],\"schedules\":[");
+        for (int i = 0; i < schedules.size(); i++) {
+            out.append(i == 0 ? "" : ",").append("{\"rank\":").append(i + 1)
+                    .append(",\"score\":").append(schedules.get(i).score).append(",\"crns\":[");
+            String separator = "";
+            for (Course course : schedules.get(i).schedule.courses()) {
+                out.append(separator).append(course.crn);
+                separator = ",";
+            }
+            out.append("]}");
+        }
+        return out.append("]}").toString();
+    }
+    /**
+     * makes the catalog of some course codes in a term, fetching the ones that aren't known yet or have expired
+     * @param term String of the term
+     * @param codes List<String[]> of {subject, number} of every course code
+     * @return CourseCatalog of only the subjects of the course codes
+     * @throws Upstream thrown if the courses can't be fetched
+     */
+    private CourseCatalog catalog(String term, List<String[]> codes) throws Upstream {
+        Term state = terms.computeIfAbsent(term, t -> new Term(CourseCatalog.empty(parser)));
+        long now = System.currentTimeMillis();
+        List<String[]> missing = new ArrayList<String[]>();
+        for (String[] code : codes) {
+            Code known = state.codes.get(key(code));
+            if (known == null || known.expires < now) {
+                missing.add(code);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // fetched outside the lock, the same course code asked for by others at once is only fetched once
+            List<Collection<Course>> fetched;
+            try {
+                fetched = parser.makeCourses(missing, term);
+            } catch (Exception e) {
+                throw new Upstream(e);
+            }
+            synchronized (state) {
+                // the subjects of expired course codes are replaced, not merged, so closed sections go away
+                Set<String> kept = new HashSet<String>(state.catalog.getSubjects());
+                List<Course> courses = new ArrayList<Course>();
+                Map<String, Code> added = new HashMap<String, Code>();
+                for (int i = 0; i < missing.size(); i++) {
+                    Code old = state.codes.get(key(missing.get(i)));
+                    if (old != null && old.expires >= now) {
+                        // a solve that waited on the same fetch already put it in
+                        continue;
+                    }
+                    if (old != null) {
+                        kept.removeAll(old.subjects);
+                    }
+                    Set<String> subjects = new HashSet<String>();
+                    for (Course course : fetched.get(i)) {
+                        subjects.add(course.subject);
+                    }
+                    added.put(key(missing.get(i)), new Code(subjects, now + ttl));
+                    courses.addAll(fetched.get(i));
+                }
+                if (!added.isEmpty()) {
+                    state.catalog = state.catalog.select(kept).with(courses);
+                    state.codes.putAll(added);
+                }
+            }
+        }
+        Set<String> subjects = new HashSet<String>();
+        for (String[] code : codes) {
+            Code known = state.codes.get(key(code));
+            if (known != null) {
+                subjects.addAll(known.subjects);
+            }
+        }
+        return state.catalog.select(subjects);
+    }
+    // helper for a parameter that must be there
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("missing parameter " + name);
+        }
+        return value.trim();
+    }
+    // helper for a parameter with a default
+    private static String value(Map<String, String> params, String name, String fallback) {
+        String value = params.get(name);
+        return value == null ? fallback : value;
+    }
+    // helper for the key of a course code
+    private static String key(String[] code) {
+        return code[0] + "\u0000" + code[1];
+    }
+    // Term is the catalog of 1 term and the course codes fetched into it
+    private static class Term {
+        private volatile CourseCatalog catalog;
+        private final Map<String, Code> codes = new ConcurrentHashMap<String, Code>();
+        private Term(CourseCatalog catalog) {
+            this.catalog = catalog;
+        }
+    }
+    // Code is what a course code was fetched as and when it has to be fetched again
+    private static class Code {
+        private final Set<String> subjects;
+        private final long expires;
+        private Code(Set<String> subjects, long expires) {
+            this.subjects = subjects;
+            this.expires = expires;
+        }
+    }
+    // Busy is thrown when a solve waited too long for a free slot
+    private static class Busy extends Exception {
+        private static final long serialVersionUID = 1L;
+        private Busy() {
+            super("too many solves at once, try again");
+        }
+    }
+    // Upstream is thrown when the courses couldn't be fetched
+    private static class Upstream extends Exception {
+        private static final long serialVersionUID = 1L;
+        private Upstream(Exception cause) {
+            super(cause.toString(), cause);
+        }
+    }
+    // Handler reads the parameters of an exchange and writes the JSON answer, or the error as JSON
+    private abstract static class Handler implements HttpHandler {
+        abstract String handle(Map<String, String> params) throws Exception;
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status = 200;
+            String body;
+            try {
+                String method = exchange.getRequestMethod();
+                if (!method.equals("GET") && !method.equals("POST")) {
+                    status = 405;
+                    body = error("use GET or POST");
+                } else {
+                    Map<String, String> params = new HashMap<String, String>();
+                    decode(exchange.getRequestURI().getRawQuery(), params);
+                    if (method.equals("POST")) {
+                        decode(read(exchange.getRequestBody()), params);
+                    }
+                    body = handle(params);
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (Busy e) {
+                status = 503;
+                body = error(e.getMessage());
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            } catch (Upstream e) {
+                status = 502;
+                body = error(e.getMessage());
+            } catch (Exception e) {
+                // a bug, not the request or the upstream, so it's logged and nothing of it is shown
+                e.printStackTrace();
+                status = 500;
+                body = error("internal error");
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        // helper for the JSON of an error
+        private static String error(String message) {
+            return "{\"error\":" + BatchSolver.json(message == null ? "" : message) + "}";
+        }
+        // helper for reading a form body, at most MAX_BODY bytes of it
+        private static String read(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (out.size() + n > MAX_BODY) {
+                    throw new IllegalArgumentException("body is too large");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8.name());
+        }
+        // helper for decoding name=value pairs separated by &, later ones win
+        private static void decode(String query, Map<String, String> params) {
+            if (query == null) {
+                return;
+            }
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int i = pair.indexOf('=');
+                String name = i < 0 ? pair : pair.substring(0, i);
+                String value = i < 0 ? "" : pair.substring(i + 1);
+                params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
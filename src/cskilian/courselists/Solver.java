@@ -0,0 +1,752 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+// Solver joins the options of every root category (1 per requested subject) by a depth-first branch and bound search.
+// Only the best k schedules are kept, and a branch is dropped as soon as its optimistic score can't beat the k-th best.
+// Constraints on whole schedules are checked at every level, so a partial schedule that breaks them is dropped along with
+// everything below it. Schedules with equal scores come in canonical order, by the option they pick of every category in
+// the order the options were given, fewest options first, however the search got to them. That order doesn't depend on
+// the ranks, so the best k are always the start of every valid schedule sorted by score. The options are never changed
+// after construction, so a Solver can be searched from many threads at once
+public class Solver {
+    private final SortingAlgorithm sorter;
+    private final Constraints constraints;
+    // options[i] are the valid schedules of the i-th root category, categories with the fewest options come first, and
+    // the options of a category are sorted best first
+    private final Schedule[][] options;
+    // original[i][j] is where options[i][j] was in the options that were given, canonical[i] is the reverse
+    private final int[][] original;
+    private final int[][] canonical;
+    // rank sums, sums of squared ranks and sizes of every option
+    private final int[][] sums;
+    private final int[][] squares;
+    private final int[][] sizes;
+    // remaining[i] is the highest rank sum the categories from i onwards can add, spreads[i] the least spread of their
+    // ranks and capacity[i] the most courses
+    private final int[] remaining;
+    private final double[] spreads;
+    private final int[] capacity;
+    /**
+     * Constructor
+     * @param options List<List<Schedule>> of the valid schedules of each root category
+     * @param sorter SortingAlgorithm that the schedules are ranked by
+     */
+    public Solver(List<List<Schedule>> options, SortingAlgorithm sorter) {
+        this(options, sorter, Course::getRank);
+    }
+    /**
+     * Constructor
+     * @param options List<List<Schedule>> of the valid schedules of each root category
+     * @param sorter SortingAlgorithm that the schedules are ranked by
+     * @param ranks ToIntFunction<Course> of the rank of every course, it's only asked while constructing
+     */
+    public Solver(List<List<Schedule>> options, SortingAlgorithm sorter, final ToIntFunction<Course> ranks) {
+        this(options, sorter, ranks, Constraints.NONE);
+    }
+    /**
+     * Constructor
+     * @param options List<List<Schedule>> of the valid schedules of each root category, each of them already keeping to
+     *                the constraints on its own
+     * @param sorter SortingAlgorithm that the schedules are ranked by
+     * @param ranks ToIntFunction<Course> of the rank of every course, it's only asked while constructing
+     * @param constraints Constraints the joined schedules keep to
+     */
+    public Solver(List<List<Schedule>> options, SortingAlgorithm sorter, final ToIntFunction<Course> ranks,
+                  Constraints constraints) {
+        this.sorter = sorter;
+        this.constraints = constraints;
+        List<List<Schedule>> sorted = failFirst(options);
+        int depth = sorted.size();
+        this.options = new Schedule[depth][];
+        this.original = new int[depth][];
+        this.canonical = new int[depth][];
+        this.sums = new int[depth][];
+        this.squares = new int[depth][];
+        this.sizes = new int[depth][];
+        this.remaining = new int[depth + 1];
+        this.spreads = new double[depth + 1];
+        this.capacity = new int[depth + 1];
+        for (int i = 0; i < depth; i++) {
+            final List<Schedule> level = sorted.get(i);
+            final int[] levelSums = new int[level.size()];
+            List<Integer> order = new ArrayList<Integer>();
+            for (int j = 0; j < level.size(); j++) {
+                levelSums[j] = sumRank(level.get(j), ranks);
+                order.add(j);
+            }
+            // best options first, so good schedules are found early and the bound bites sooner
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer j1, Integer j2) {
+                    return Integer.compare(levelSums[j2], levelSums[j1]);
+                }
+            });
+            this.options[i] = new Schedule[level.size()];
+            this.original[i] = new int[level.size()];
+            this.canonical[i] = new int[level.size()];
+            this.sums[i] = new int[level.size()];
+            this.squares[i] = new int[level.size()];
+            this.sizes[i] = new int[level.size()];
+            for (int j = 0; j < level.size(); j++) {
+                Schedule option = level.get(order.get(j));
+                this.options[i][j] = option;
+                this.original[i][j] = order.get(j);
+                this.canonical[i][order.get(j)] = j;
+                for (Course course : option) {
+                    int rank = ranks.applyAsInt(course);
+                    this.sums[i][j] += rank;
+                    this.squares[i][j] += rank * rank;
+                }
+                this.sizes[i][j] = option.size();
+            }
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            int best = Integer.MIN_VALUE;
+            double least = Double.MAX_VALUE;
+            int most = 0;
+            for (int j = 0; j < this.options[i].length; j++) {
+                best = Math.max(best, sums[i][j]);
+                least = Math.min(least, MaxMinComparator.spread(sums[i][j], squares[i][j], sizes[i][j]));
+                most = Math.max(most, sizes[i][j]);
+            }
+            // a category without options means there are no valid schedules at all, the search stops on its own
+            remaining[i] = remaining[i + 1] + (best == Integer.MIN_VALUE ? 0 : best);
+            spreads[i] = spreads[i + 1] + (least == Double.MAX_VALUE ? 0 : least);
+            capacity[i] = capacity[i + 1] + most;
+        }
+    }
+    /**
+     * sorts the options of the root categories the way they're searched, the categories with the fewest options first
+     * and otherwise in the order they were given. Combining them in this order makes schedules in canonical order
+     * @param options List<List<Schedule>> of the valid schedules of each root category
+     * @return List<List<Schedule>> of the same categories, sorted
+     */
+    static List<List<Schedule>> failFirst(List<List<Schedule>> options) {
+        List<List<Schedule>> sorted = new ArrayList<List<Schedule>>(options);
+        // fail first, the category with the fewest options prunes the most. The sort is stable, so equal sizes keep
+        // their order
+        Collections.sort(sorted, new Comparator<List<Schedule>>() {
+            @Override
+            public int compare(List<Schedule> l1, List<Schedule> l2) {
+                return l1.size() - l2.size();
+            }
+        });
+        return sorted;
+    }
+    /**
+     * finds the best k valid schedules
+     * @param k int of the number of schedules wanted
+     * @return List<ScoredSchedule> of at most k schedules, best first
+     */
+    public List<ScoredSchedule> top(int k) {
+        return top(k, null);
+    }
+    /**
+     * finds the best k valid schedules, the join is split into partial schedules that are searched in the pool
+     * @param k int of the number of schedules wanted
+     * @param pool ForkJoinPool to search in, null searches on the calling thread
+     * @return List<ScoredSchedule> of at most k schedules, best first, the same as the sequential search
+     */
+    public List<ScoredSchedule> top(int k, ForkJoinPool pool) {
+        return top(k, pool, null);
+    }
+    /**
+     * starts searching for the best k valid schedules in the background. The handle has the best ones found so far
+     * while it runs, and stops the search once the budget is used up or it's cancelled
+     * @param k int of the number of schedules wanted
+     * @param millis long of the most milliseconds to search for, 0 for no limit
+     * @param nodes long of the most partial schedules to visit, 0 for no limit
+     * @param pool ForkJoinPool to search in, null searches on 1 thread of the common pool
+     * @return SolveHandle of the search
+     */
+    public SolveHandle start(int k, long millis, long nodes, final ForkJoinPool pool) {
+        final SolveHandle handle = new SolveHandle(k, millis, nodes);
+        (pool != null ? pool : ForkJoinPool.commonPool()).execute(new Runnable() {
+            @Override
+            public void run() {
+                search(handle, pool);
+            }
+        });
+        return handle;
+    }
+    /**
+     * searches for the best schedules on the calling thread until the handle stops it, then hands it the result
+     * @param handle SolveHandle that's told about the search
+     * @param pool ForkJoinPool to search in, null searches on the calling thread
+     */
+    void search(SolveHandle handle, ForkJoinPool pool) {
+        try {
+            handle.finish(top(handle.getK(), pool, handle), true);
+        } catch (Exception | Error e) {
+            handle.fail(e);
+        }
+    }
+    /**
+     * finds the best k valid schedules
+     * @param k int of the number of schedules wanted
+     * @param pool ForkJoinPool to search in, null searches on the calling thread
+     * @param handle SolveHandle that's told about better schedules and can stop the search, null for none
+     * @return List<ScoredSchedule> of at most k schedules, best first
+     */
+    private List<ScoredSchedule> top(int k, ForkJoinPool pool, SolveHandle handle) {
+        List<ScoredSchedule> out = new ArrayList<ScoredSchedule>();
+        if (k <= 0 || options.length == 0) {
+            return out;
+        }
+        Metrics.SolveEvent event = new Metrics.SolveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<Result>();
+        long nodes = 0;
+        long pruned = 0;
+        for (Search search : run(k, pool, handle)) {
+            results.addAll(search.heap);
+            nodes += search.nodes;
+            pruned += search.pruned;
+        }
+        Collections.sort(results, Collections.reverseOrder());
+        for (Result result : results.subList(0, Math.min(k, results.size()))) {
+            out.add(new ScoredSchedule(result.schedule, result.score));
+        }
+        Metrics.since(Metrics.Phase.SOLVE, start);
+        event.k = k;
+        event.found = out.size();
+        event.nodes = nodes;
+        event.pruned = pruned;
+        event.commit();
+        return out;
+    }
+    /**
+     * makes every valid schedule
+     * @param pool ForkJoinPool to search in, null searches on the calling thread
+     * @return List<Schedule> of every valid schedule in canonical order
+     */
+    public List<Schedule> all(ForkJoinPool pool) {
+        List<Schedule> out = new ArrayList<Schedule>();
+        if (options.length == 0) {
+            return out;
+        }
+        long start = System.nanoTime();
+        for (Search search : run(0, pool, null)) {
+            out.addAll(search.all);
+        }
+        Metrics.since(Metrics.Phase.SOLVE, start);
+        return out;
+    }
+    /**
+     * finds every valid schedule as the option it picks of every root category. Ranks never change which schedules are
+     * valid, so they can be scored again with other ranks without searching again
+     * @param max int of the most schedules kept
+     * @return Feasible of every valid schedule in canonical order, null if there are more than max or if finding them
+     *         visits more than 16 times as many partial schedules
+     */
+    public Feasible feasible(int max) {
+        long start = System.nanoTime();
+        Enumeration enumeration = new Enumeration(max);
+        boolean found = options.length == 0 || enumeration.descend(0, Occupancy.EMPTY);
+        Metrics.count(Metrics.Counter.COMBINATIONS, enumeration.nodes);
+        Metrics.since(Metrics.Phase.SOLVE, start);
+        return found ? new Feasible(options, enumeration.rows, enumeration.size) : null;
+    }
+    /**
+     * runs the depth-first search, split up into tasks if there is a pool
+     * @param k int of the number of schedules kept by each search, 0 keeps all of them
+     * @param pool ForkJoinPool to search in, null searches on the calling thread
+     * @param handle SolveHandle that's told about better schedules and can stop the search, null for none
+     * @return List<Search> of the finished searches in depth-first order
+     */
+    private List<Search> run(int k, ForkJoinPool pool, SolveHandle handle) {
+        List<Search> searches = new ArrayList<Search>();
+        Partial start = new Partial(null, null, new int[0], 0, Occupancy.EMPTY, 0, 0, 0, 0);
+        if (pool == null) {
+            Search search = new Search(k, null, handle, 0);
+            search.start(start);
+            searches.add(search);
+            return searches;
+        }
+        // the k-th best score any task has found so far, every task can prune against it
+        AtomicInteger shared = new AtomicInteger(Float.floatToIntBits(Float.NEGATIVE_INFINITY));
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        List<Partial> prefixes = split(start, pool.getParallelism() * 4);
+        if (handle != null) {
+            handle.setSearches(prefixes.size());
+        }
+        for (int i = 0; i < prefixes.size(); i++) {
+            // the prefixes are in canonical order, so every schedule of all of them is too
+            final Search search = new Search(k, shared, handle, i);
+            final Partial prefix = prefixes.get(i);
+            searches.add(search);
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    search.start(prefix);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return searches;
+    }
+    /**
+     * expands partial schedules level by level until there are enough of them to keep a pool busy
+     * @param start Partial of the empty schedule
+     * @param target int of the number of partial schedules wanted
+     * @return List<Partial> of partial schedules in canonical order
+     */
+    private List<Partial> split(Partial start, int target) {
+        List<Partial> level = new ArrayList<Partial>();
+        level.add(start);
+        for (int depth = 0; depth < options.length && level.size() < target; depth++) {
+            List<Partial> next = new ArrayList<Partial>();
+            for (Partial partial : level) {
+                for (int c = 0; c < options[depth].length; c++) {
+                    int i = canonical[depth][c];
+                    if (!conflicts(partial, options[depth][i])) {
+                        Partial extended = extend(partial, i, 0);
+                        if (allows(extended.occupancy)) {
+                            next.add(extended);
+                        }
+                    }
+                }
+            }
+            level = next;
+        }
+        return level;
+    }
+    /**
+     * lazily makes the valid schedules in best-first order. Partial schedules wait in a frontier ordered by their
+     * optimistic score, and a complete schedule is only handed out once nothing left in the frontier can beat it
+     * @return Iterator<Schedule> of every valid schedule, best first
+     */
+    public Iterator<Schedule> iterator() {
+        return new BestFirst();
+    }
+    // helper for the constraints on whole schedules, they only need checking if there are any
+    private boolean allows(Occupancy occupancy) {
+        return !constraints.limitsSchedules() || constraints.allows(occupancy);
+    }
+    // helper for the score of a complete schedule
+    private float score(int sumRank, int squares, int size) {
+        return ScoredSchedule.score(sumRank, squares, size, sorter);
+    }
+    /**
+     * an optimistic score for any schedule that starts with a partial schedule. For MaxMin the variance is at least the
+     * spread of the partial schedule and of the least spread option of every category left, over the most courses
+     * they can add up to. Ranks that are all the same leave nothing to go on, so then the bound is as loose as
+     * sumRank / 0.1 and only the ranks left to add prune
+     * @param sumRank int of the rank sum of the partial schedule
+     * @param squareRank int of its sum of squared ranks
+     * @param size int of its number of courses
+     * @param depth int of the number of categories it picked
+     * @return float that no schedule in the branch can beat
+     */
+    private float bound(int sumRank, int squareRank, int size, int depth) {
+        if (sorter == SortingAlgorithm.MaxMin) {
+            return MaxMinComparator.bound(sumRank + remaining[depth],
+                    MaxMinComparator.spread(sumRank, squareRank, size) + spreads[depth], size + capacity[depth]);
+        }
+        return MaxComparator.score(sumRank + remaining[depth]);
+    }
+    // compares 2 schedules in canonical order by the first depth options they pick, negative if p1 comes first
+    private static int compare(int[] p1, int[] p2, int depth) {
+        for (int i = 0; i < depth; i++) {
+            if (p1[i] != p2[i]) {
+                return Integer.compare(p1[i], p2[i]);
+            }
+        }
+        return 0;
+    }
+    // helper for the rank sum of a schedule
+    private static int sumRank(Schedule schedule, ToIntFunction<Course> ranks) {
+        int sum = 0;
+        for (Course course : schedule) {
+            sum += ranks.applyAsInt(course);
+        }
+        return sum;
+    }
+    /**
+     * checks an option against the options picked for the categories before it
+     * @param chosen Schedule[] of the options picked so far
+     * @param depth int of the number of categories picked
+     * @param occupancy Occupancy of the options picked so far
+     * @param option Schedule of an option of the next root category
+     * @return true if they conflict, false otherwise
+     */
+    private static boolean conflicts(Schedule[] chosen, int depth, Occupancy occupancy, Schedule option) {
+        if (!occupancy.intersects(option.occupancy)) {
+            return false;
+        }
+        if (occupancy.isExact() && option.occupancy.isExact()) {
+            return true;
+        }
+        for (int i = 0; i < depth; i++) {
+            if (chosen[i].conflicts(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    // Result is a complete schedule with its score, ties are broken by canonical order, the one that comes first is the
+    // better one
+    private static class Result implements Comparable<Result> {
+        private final Schedule schedule;
+        private final float score;
+        // the option picked of every category, by where it was in the options that were given
+        private final int[] picked;
+        private Result(Schedule schedule, float score, int[] picked) {
+            this.schedule = schedule;
+            this.score = score;
+            this.picked = picked;
+        }
+        public int compareTo(Result other) {
+            int c = Float.compare(this.score, other.score);
+            return c != 0 ? c : compare(other.picked, this.picked, picked.length);
+        }
+    }
+    /**
+     * picks the i-th option of the next root category for a partial schedule
+     * @param partial Partial schedule
+     * @param i int of the index of the option
+     * @param key float of the key in the frontier
+     * @return Partial with the option added
+     */
+    private Partial extend(Partial partial, int i, float key) {
+        int depth = partial.depth;
+        Schedule option = options[depth][i];
+        int[] picks = Arrays.copyOf(partial.picks, depth + 1);
+        picks[depth] = original[depth][i];
+        return new Partial(partial, option, picks, depth + 1, partial.occupancy.union(option.occupancy),
+                partial.sumRank + sums[depth][i], partial.squareRank + squares[depth][i], partial.size + sizes[depth][i],
+                key);
+    }
+    /**
+     * checks an option against every option on the path to the partial schedule
+     * @param partial Partial schedule
+     * @param option Schedule of an option of the next root category
+     * @return true if they conflict, false otherwise
+     */
+    private static boolean conflicts(Partial partial, Schedule option) {
+        if (!partial.occupancy.intersects(option.occupancy)) {
+            return false;
+        }
+        if (partial.occupancy.isExact() && option.occupancy.isExact()) {
+            return true;
+        }
+        for (Partial p = partial; p.option != null; p = p.parent) {
+            if (p.option.conflicts(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    // Search holds the state of 1 depth-first search
+    private class Search {
+        // number of schedules kept, 0 keeps every schedule in all
+        private final int k;
+        // min-heap of the best k schedules found so far, the head is the k-th best
+        private final PriorityQueue<Result> heap;
+        private final List<Schedule> all;
+        // float bits of the best k-th score of any search running alongside, null if there are none
+        private final AtomicInteger shared;
+        private final Schedule[] chosen;
+        // where the options in chosen were in the options that were given
+        private final int[] picked;
+        // handle of an anytime search and the slot this search publishes to, null for a search that runs to the end
+        private final SolveHandle handle;
+        private final int slot;
+        // nodes visited since the handle was last asked, and whether the heap changed since it was last published
+        private int visited = 0;
+        private boolean dirty = false;
+        private boolean halted = false;
+        // counted here and handed to the metrics once the search is over
+        private long nodes = 0;
+        private long checks = 0;
+        private long pruned = 0;
+        private Search(int k, AtomicInteger shared, SolveHandle handle, int slot) {
+            this.k = k;
+            this.heap = new PriorityQueue<Result>(k + 1);
+            this.all = new ArrayList<Schedule>();
+            this.shared = shared;
+            this.chosen = new Schedule[options.length];
+            this.picked = new int[options.length];
+            this.handle = handle;
+            this.slot = slot;
+        }
+        /**
+         * searches every schedule that starts with the partial schedule
+         * @param prefix Partial schedule that is already picked
+         */
+        private void start(Partial prefix) {
+            for (Partial p = prefix; p.option != null; p = p.parent) {
+                chosen[p.depth - 1] = p.option;
+            }
+            System.arraycopy(prefix.picks, 0, picked, 0, prefix.depth);
+            descend(prefix.depth, prefix.occupancy, prefix.sumRank, prefix.squareRank, prefix.size);
+            if (handle != null && dirty) {
+                handle.publish(slot, snapshot());
+            }
+            Metrics.count(Metrics.Counter.COMBINATIONS, nodes);
+            Metrics.count(Metrics.Counter.CONFLICT_CHECKS, checks);
+            Metrics.count(Metrics.Counter.PRUNED_BRANCHES, pruned);
+        }
+        /**
+         * recursively picks 1 option of every root category
+         * @param depth int of the root category that is picked next
+         * @param occupancy Occupancy of the options picked so far
+         * @param sumRank int of the rank sum so far
+         * @param squareRank int of the sum of squared ranks so far
+         * @param size int of the number of courses so far
+         */
+        private void descend(int depth, Occupancy occupancy, int sumRank, int squareRank, int size) {
+            if (handle != null && ++visited == SolveHandle.CHECK_EVERY) {
+                halted = handle.stop(visited);
+                visited = 0;
+                if (dirty) {
+                    dirty = false;
+                    handle.publish(slot, snapshot());
+                }
+            }
+            if (halted) {
+                return;
+            }
+            nodes++;
+            if (depth == options.length) {
+                offer(score(sumRank, squareRank, size));
+                return;
+            }
+            // prune if even the best options of the remaining categories can't get into the top k. A tie can't either if
+            // the options picked so far already put every schedule of the branch after the k-th best
+            if (k > 0) {
+                float best = bound(sumRank, squareRank, size, depth);
+                if (heap.size() == k && (best < heap.peek().score
+                        || best == heap.peek().score && compare(picked, heap.peek().picked, depth) > 0)) {
+                    pruned++;
+                    return;
+                }
+                // ties with another search are kept, the merge decides who goes first
+                if (shared != null && best < Float.intBitsToFloat(shared.get())) {
+                    pruned++;
+                    return;
+                }
+            }
+            for (int c = 0; c < options[depth].length; c++) {
+                // every schedule is wanted in canonical order, the best k are looked for best options first
+                int i = k == 0 ? canonical[depth][c] : c;
+                Schedule option = options[depth][i];
+                checks++;
+                if (conflicts(chosen, depth, occupancy, option)) {
+                    continue;
+                }
+                Occupancy union = occupancy.union(option.occupancy);
+                if (!allows(union)) {
+                    continue;
+                }
+                chosen[depth] = option;
+                picked[depth] = original[depth][i];
+                descend(depth + 1, union, sumRank + sums[depth][i], squareRank + squares[depth][i],
+                        size + sizes[depth][i]);
+                if (halted) {
+                    return;
+                }
+            }
+        }
+        // adds a complete schedule to the heap if it's among the best k
+        private void offer(float score) {
+            if (k > 0 && heap.size() == k && (score < heap.peek().score
+                    || score == heap.peek().score && compare(picked, heap.peek().picked, picked.length) > 0)) {
+                return;
+            }
+            if (k > 0 && shared != null && score < Float.intBitsToFloat(shared.get())) {
+                return;
+            }
+            Schedule schedule = Schedule.EMPTY;
+            for (Schedule option : chosen) {
+                schedule = schedule.merge(option);
+            }
+            if (k == 0) {
+                all.add(schedule);
+                return;
+            }
+            heap.add(new Result(schedule, score, picked.clone()));
+            if (heap.size() > k) {
+                heap.poll();
+            }
+            dirty = true;
+            if (shared != null && heap.size() == k) {
+                raise(heap.peek().score);
+            }
+        }
+        // the heap as scored schedules, best first
+        private List<ScoredSchedule> snapshot() {
+            List<Result> results = new ArrayList<Result>(heap);
+            Collections.sort(results, Collections.reverseOrder());
+            List<ScoredSchedule> out = new ArrayList<ScoredSchedule>(results.size());
+            for (Result result : results) {
+                out.add(new ScoredSchedule(result.schedule, result.score));
+            }
+            return out;
+        }
+        // raises the shared k-th best score
+        private void raise(float score) {
+            int current = shared.get();
+            while (Float.intBitsToFloat(current) < score && !shared.compareAndSet(current, Float.floatToIntBits(score))) {
+                current = shared.get();
+            }
+        }
+    }
+    // Enumeration collects every valid schedule as the index of the option it picks at every level
+    private class Enumeration {
+        private final int max;
+        private final long maxNodes;
+        private final Schedule[] chosen = new Schedule[options.length];
+        private final int[] picked = new int[options.length];
+        // picked of every schedule found one after the other
+        private int[] rows = new int[0];
+        private int size = 0;
+        private long nodes = 0;
+        private Enumeration(int max) {
+            this.max = max;
+            this.maxNodes = 16L * Math.max(1, max);
+        }
+        /**
+         * recursively picks 1 option of every root category
+         * @param depth int of the root category that is picked next
+         * @param occupancy Occupancy of the options picked so far
+         * @return false if it gave up, true otherwise
+         */
+        private boolean descend(int depth, Occupancy occupancy) {
+            if (++nodes > maxNodes) {
+                return false;
+            }
+            if (depth == options.length) {
+                if (size == max) {
+                    return false;
+                }
+                if ((size + 1) * depth > rows.length) {
+                    rows = Arrays.copyOf(rows, Math.max(rows.length * 2, 64 * depth));
+                }
+                System.arraycopy(picked, 0, rows, size++ * depth, depth);
+                return true;
+            }
+            for (int c = 0; c < options[depth].length; c++) {
+                // in canonical order, so ties among the rows keep it
+                int i = canonical[depth][c];
+                Schedule option = options[depth][i];
+                if (conflicts(chosen, depth, occupancy, option)) {
+                    continue;
+                }
+                Occupancy union = occupancy.union(option.occupancy);
+                if (!allows(union)) {
+                    continue;
+                }
+                chosen[depth] = option;
+                picked[depth] = i;
+                if (!descend(depth + 1, union)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    // Partial is a node of the best-first search, the options picked so far are linked through the parents
+    private static class Partial implements Comparable<Partial> {
+        private final Partial parent;
+        private final Schedule option;
+        // where every option picked so far was in the options that were given, the last one is this option
+        private final int[] picks;
+        private final int depth;
+        private final Occupancy occupancy;
+        private final int sumRank;
+        private final int squareRank;
+        private final int size;
+        // exact score once complete, optimistic score until then
+        private final float key;
+        private Partial(Partial parent, Schedule option, int[] picks, int depth, Occupancy occupancy, int sumRank,
+                        int squareRank, int size, float key) {
+            this.parent = parent;
+            this.option = option;
+            this.picks = picks;
+            this.depth = depth;
+            this.occupancy = occupancy;
+            this.sumRank = sumRank;
+            this.squareRank = squareRank;
+            this.size = size;
+            this.key = key;
+        }
+        // the frontier polls the best key first, then in canonical order by the options picked so far. A node that
+        // comes first canonically has only schedules that come first below it, so equal scores come out in canonical
+        // order, and among equal keys the search still goes down 1 branch at a time
+        public int compareTo(Partial other) {
+            int c = Float.compare(other.key, this.key);
+            if (c == 0) {
+                c = compare(this.picks, other.picks, Math.min(this.depth, other.depth));
+            }
+            return c != 0 ? c : other.depth - this.depth;
+        }
+    }
+    // BestFirst pulls schedules out of the frontier 1 at a time
+    private class BestFirst implements Iterator<Schedule> {
+        private final PriorityQueue<Partial> frontier = new PriorityQueue<Partial>();
+        private Schedule next = null;
+        private BestFirst() {
+            if (options.length > 0) {
+                frontier.add(new Partial(null, null, new int[0], 0, Occupancy.EMPTY, 0, 0, 0, bound(0, 0, 0, 0)));
+            }
+        }
+        @Override
+        public boolean hasNext() {
+            while (next == null && !frontier.isEmpty()) {
+                Partial partial = frontier.poll();
+                if (partial.depth == options.length) {
+                    Schedule schedule = Schedule.EMPTY;
+                    for (Partial p = partial; p.option != null; p = p.parent) {
+                        schedule = schedule.merge(p.option);
+                    }
+                    next = schedule;
+                } else {
+                    expand(partial);
+                }
+            }
+            return next != null;
+        }
+        @Override
+        public Schedule next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Schedule out = next;
+            next = null;
+            return out;
+        }
+        // pushes every option of the next root category that fits the partial schedule
+        private void expand(Partial partial) {
+            int depth = partial.depth;
+            for (int i = 0; i < options[depth].length; i++) {
+                if (conflicts(partial, options[depth][i])) {
+                    continue;
+                }
+                int sumRank = partial.sumRank + sums[depth][i];
+                int squareRank = partial.squareRank + squares[depth][i];
+                int size = partial.size + sizes[depth][i];
+                float key = depth + 1 == options.length
+                        ? score(sumRank, squareRank, size)
+                        : bound(sumRank, squareRank, size, depth + 1);
+                Partial extended = extend(partial, i, key);
+                if (allows(extended.occupancy)) {
+                    frontier.add(extended);
+                }
+            }
+        }
+    }
+}
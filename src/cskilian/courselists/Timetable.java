@@ -1,154 +1,661 @@
 package cskilian.courselists;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+// Timetable is 1 session of making choices: the catalog it solves on, the ranks the student gave and its settings.
+// The catalog is an immutable snapshot that any number of timetables can share, changes through a timetable only
+// swap in a new snapshot. A timetable itself belongs to 1 thread at a time. Changes only mark the choices stale, they're
+// made again the first time they're asked for, so a change never solves on the thread that makes it
 public class Timetable {
-    private static PriorityQueue<Set<Course>> choices;
+    private volatile CourseCatalog catalog;
+    // ranks given in this session by crn, courses without one keep the rank of the catalog
+    private final Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+    private SortingAlgorithm sorter = SortingAlgorithm.MaxMin;
+    private Constraints constraints = Constraints.NONE;
+    // the last pass that took dead sections out of the catalog, it's made again once the catalog or constraints change
+    private Propagation propagation = null;
+    private CourseCatalog propagated = null;
+    private Constraints propagatedWith = null;
+    // whether interchangeable sections are solved on as 1, and the last grouping of them, it's made again once the
+    // propagated catalog or the ranks change
+    private boolean collapsing = false;
+    private Equivalence equivalence = null;
+    private CourseCatalog grouped = null;
+    private boolean regroup = true;
+    // number of times a rank changed, a grouping made from older ranks isn't current
+    private int edits = 0;
+    // every valid schedule of the catalog that's solved on apart from the ranks, and what it was found from. It's found
+    // again once the catalog, the constraints or the sections that are solved on change, null if there were too many
+    private Feasible feasible = null;
+    private CourseCatalog feasibleFrom = null;
+    private Constraints feasibleWith = null;
+    private Set<Integer> feasibleCrns = null;
+    // most valid schedules kept apart from the ranks, a catalog with more is searched again on every change
+    private static final int MAX_FEASIBLE = 1 << 19;
+    // valid course sets, best first, packed until they're read
+    private ChoiceBuffer choices = new ChoiceBuffer(0);
+    // the number of best choices to keep, 0 keeps every valid combination
+    private int limit = 0;
+    // pool the choices are made in, null makes them on the calling thread
+    private ForkJoinPool pool = null;
+    // number of open batches, the choices aren't made again until the last one is committed
+    private int batches = 0;
+    // whether anything the choices depend on changed since they were made
+    private boolean stale = true;
     /**
-     * adds courses into the course tree and calculates the priorities
+     * Constructor for a session on an empty catalog
+     * @param parser Parser that decides which course goes under which
+     */
+    public Timetable(Parser parser) {
+        this(CourseCatalog.empty(parser));
+    }
+    /**
+     * Constructor
+     * @param catalog CourseCatalog that is solved on
+     */
+    public Timetable(CourseCatalog catalog) {
+        this.catalog = catalog;
+    }
+    /**
+     * adds courses into the catalog, the choices are made again the next time they're asked for
      * @param courses Collection<Course> of valid courses
      */
-    public static void add(Collection<Course> courses) {
-        CourseTree.add(courses);
-        makeChoices();
+    public void add(Collection<Course> courses) {
+        catalog = catalog.with(courses);
+        changed();
     }
     /**
-     * adds 1 course into the course tree and calculates the priorities
+     * adds 1 course into the catalog, the choices are made again the next time they're asked for
      * @param course Course of a valid course
      */
-    public static void add(Course course) {
-        CourseTree.add(course);
-        makeChoices();
+    public void add(Course course) {
+        catalog = catalog.with(course);
+        changed();
     }
     /**
-     * removes a course based on the course number
+     * removes a course based on the course number, the choices are made again the next time they're asked for
      * @param crn int of the course registration number
      */
-    public static void remove(int crn) {
-        CourseTree.remove(crn);
-        makeChoices();
+    public void remove(int crn) {
+        catalog = catalog.without(crn);
+        changed();
     }
     /**
-     * generates the valid course listings
+     * swaps in another catalog, ie. one that was made on another thread. Nothing is solved until the choices are asked
+     * for
+     * @param catalog CourseCatalog that is solved on from now on
      */
-    public static void makeChoices() {
-        // set up the priority queue according to sorter
-        if (CourseLists.sorter == SortingAlgorithm.MaxMin) {
-            choices = new PriorityQueue<Set<Course>>(10, new MaxMinComparator());
-        } else if (CourseLists.sorter == SortingAlgorithm.Max) {
-            choices = new PriorityQueue<Set<Course>>(10, new MaxComparator());
-        }
-        // add all non-conflicting course combinations to p-queue
-        choices.addAll(makeChoices(CourseTree.root));
+    public void setCatalog(CourseCatalog catalog) {
+        this.catalog = catalog;
+        changed();
     }
     /**
-     * clears the course tree
+     * getter for the catalog
+     * @return CourseCatalog that is solved on
      */
-    public static void clear() {
-        CourseTree.root = new Course();
+    public CourseCatalog getCatalog() {
+        return catalog;
     }
     /**
-     * getter for the valid course choices
-     * @return Collection<Set<Course>> of valid course sets
+     * starts a batch, getChoices keeps the choices from before it until the batch is committed. Batches can be nested
      */
-    public static Collection<Set<Course>> getChoices() {
-        return choices;
+    public void begin() {
+        batches++;
     }
-    // recursively descend on the course tree and make all combination of non-conflicting courses
     /**
-     * recursively generates valid course combinations
-     * @param node Course is the root
-     * @return List<SortedSet<Course>> of valid course combinations
-     */
-    private static List<SortedSet<Course>> makeChoices(Course node) {
-        if (node.getCategories().isEmpty()) {
-            List<SortedSet<Course>> courses = new LinkedList<SortedSet<Course>>();
-            if (node != CourseTree.root) {
-                courses.add(new TreeSet<Course>());
-                courses.get(courses.size() - 1).add(node);
-            }
-            return courses;
+     * ends a batch, the choices are made again once the next time they're asked for if anything changed during the
+     * outermost batch
+     */
+    public void commit() {
+        if (batches > 0) {
+            batches--;
+        }
+    }
+    /**
+     * generates the valid course listings now, on the calling thread
+     */
+    public void makeChoices() {
+        Metrics.MakeChoicesEvent event = new Metrics.MakeChoicesEvent();
+        event.begin();
+        stale = false;
+        List<ScoredSchedule> scored;
+        Feasible known = known();
+        if (known != null) {
+            // only the ranks or the sorting algorithm changed since the valid schedules were found
+            scored = known.top(limit > 0 ? limit : known.size(), sorter, this::getRank);
+        } else if (limit > 0) {
+            // only the best combinations are wanted, so search for them instead of making all of them
+            scored = top(limit);
         } else {
-            List<SortedSet<Course>> courses = new LinkedList<SortedSet<Course>>();
-            if (node != CourseTree.root) {
-                courses.add(new TreeSet<Course>());
-                courses.get(courses.size() - 1).add(node);
-            }
-            for (Category category : node.getCategories()) {
-                List<SortedSet<Course>> temp = new LinkedList<SortedSet<Course>>();
-                for (Course course : category.getCourses()) {
-                    temp.addAll(makeChoices(course));
+            List<Schedule> courses;
+            if (pool != null) {
+                courses = solver().all(pool);
+            } else {
+                // make all non-conflicting course combinations
+                courses = new ArrayList<Schedule>();
+                CourseCatalog live = live();
+                if (!live.isEmpty()) {
+                    // every combination starts out empty and takes 1 combination of each root category, in the order
+                    // the solver takes them so equal scores come out in the same order as top
+                    courses.add(Schedule.EMPTY);
+                    for (List<Schedule> options : Solver.failFirst(live.options(null, constraints))) {
+                        courses = combine(courses, options, constraints, live.getConflicts());
+                    }
                 }
-                courses = combine(courses, temp);
             }
-            return courses;
+            // score every combination once, then sort on the scores
+            scored = new ArrayList<ScoredSchedule>(courses.size());
+            for (Schedule schedule : courses) {
+                scored.add(ScoredSchedule.of(schedule, sorter, this::getRank));
+            }
+            ScoredSchedule.sort(scored);
+        }
+        choices = new ChoiceBuffer(scored.size());
+        for (ScoredSchedule schedule : scored) {
+            choices.append(schedule.schedule);
+        }
+        if (event.shouldCommit()) {
+            event.sections = catalog.getAll().size();
+            event.limit = limit;
+            event.choices = choices.size();
+            event.rescored = known != null;
+            event.commit();
         }
     }
-
     /**
-     * helper for combining 2 lists of course combinations
-     * @param list1 List<SortedSet<Course>> of a list of course combinations
-     * @param list2 List<SortedSet<Course>> of a list of course combinations
-     * @return List<SortedSet<Course>> of course combinations
-     */
-    private static List<SortedSet<Course>> combine(List<SortedSet<Course>> list1, List<SortedSet<Course>> list2) {
-        List<SortedSet<Course>> out = new LinkedList<SortedSet<Course>>();
-        if ((list1.isEmpty() || list1 == null) && (list2.isEmpty() || list2 == null)) {
-            return out;
-        } else if (list1.isEmpty() || list1 == null) {
-            out.addAll(list2);
-            return out;
-        } else if (list2.isEmpty() || list2 == null) {
-            out.addAll(list1);
-            return out;
-        } else {
-            for (Set<Course> i : list1) {
-                for (Set<Course> j : list2) {
-                    if (!schedulesConflict(i, j)) {
-                        out.add(new TreeSet<Course>());
-                        out.get(out.size() - 1).addAll(i);
-                        out.get(out.size() - 1).addAll(j);
+     * finds the best valid course sets with their scores
+     * @param k int of the number of course sets wanted
+     * @return List<ScoredSchedule> of at most k course sets, best first
+     */
+    public List<ScoredSchedule> top(int k) {
+        return solver().top(k, pool);
+    }
+    /**
+     * finds the best valid course sets with their scores by scoring the valid sets again, they're only searched for
+     * once for the catalog and constraints and kept while just the ranks or the sorting algorithm change
+     * @param k int of the number of course sets wanted
+     * @return List<ScoredSchedule> of at most k course sets, best first, the same scores as top
+     */
+    public List<ScoredSchedule> rescore(int k) {
+        Feasible feasible = feasible();
+        return feasible != null ? feasible.top(k, sorter, this::getRank) : top(k);
+    }
+    /**
+     * getter for every valid course set apart from the ranks, they're found the first time they're asked for after the
+     * catalog, the constraints or the sections that are solved on changed
+     * @return Feasible of every valid course set, null if there are too many to keep
+     */
+    public Feasible feasible() {
+        Set<Integer> crns = crns(live());
+        if (!isFeasibleCurrent(crns)) {
+            feasibleFrom = propagate().getCatalog();
+            feasibleWith = constraints;
+            feasibleCrns = crns;
+            feasible = solver().feasible(MAX_FEASIBLE);
+        }
+        return feasible;
+    }
+    /**
+     * makes a search for every valid course set apart from the ranks, the same ones feasible finds, that runs on another
+     * thread. It works on the catalog, ranks and settings as they are now, later changes to this timetable don't reach it
+     * @return Callable<Feasible> of the search, what it finds is kept with setFeasible
+     */
+    public Callable<Feasible> findFeasible() {
+        final Map<Integer, Integer> ranks = new HashMap<Integer, Integer>(this.ranks);
+        FeasibleSearch search = new FeasibleSearch(catalog, constraints, sorter, collapsing, pool, edits,
+                course -> ranks.getOrDefault(course.crn, course.getRank()));
+        if (isPropagationCurrent()) {
+            search.propagation = propagation;
+            search.equivalence = collapsing && isGroupingCurrent() ? equivalence : null;
+            // the sets found last are handed on, the search only finds them again if other sections are solved on
+            if (feasibleFrom == propagation.getCatalog() && constraints.equals(feasibleWith)) {
+                search.known = feasible;
+                search.knownCrns = feasibleCrns;
+            }
+        }
+        return search;
+    }
+    /**
+     * keeps the valid course sets a search made by findFeasible found, so feasible and rescore only score them again.
+     * They're dropped if the catalog, the constraints or the sections that are solved on changed since it was made
+     * @param search Callable<Feasible> that found them, after it ran
+     * @param feasible Feasible it found, null if there were too many
+     * @return true if they were kept, false if they aren't the ones of this timetable anymore
+     */
+    public boolean setFeasible(Callable<Feasible> search, Feasible feasible) {
+        if (!(search instanceof FeasibleSearch)) {
+            throw new IllegalArgumentException("not a search of findFeasible");
+        }
+        FeasibleSearch found = (FeasibleSearch) search;
+        if (found.crns == null || found.catalog != catalog || !found.constraints.equals(constraints)
+                || found.collapsing != collapsing || collapsing && found.edits != edits) {
+            return false;
+        }
+        // the pass and the grouping the search made are as good as ones made here, so nothing is made again
+        propagated = catalog;
+        propagatedWith = constraints;
+        propagation = found.propagation;
+        if (collapsing) {
+            grouped = propagation.getCatalog();
+            regroup = false;
+            equivalence = found.equivalence;
+        }
+        feasibleFrom = propagation.getCatalog();
+        feasibleWith = constraints;
+        feasibleCrns = found.crns;
+        this.feasible = feasible;
+        return true;
+    }
+    /**
+     * checks if the valid course sets are known for the catalog and settings as they are now, it never searches and
+     * never propagates or groups the sections
+     * @return true if feasible won't search, false if it would
+     */
+    public boolean isFeasibleKnown() {
+        return feasibleFrom != null && isPropagationCurrent() && (!collapsing || isGroupingCurrent())
+                && isFeasibleCurrent(crns(live()));
+    }
+    /**
+     * starts searching for the best course sets in the background, the calling thread never waits on it. The handle
+     * has the best sets found so far while it runs, the pass and the grouping they were found from, and can be
+     * cancelled. Its budget and cancel also stop the work before the search. The search works on the catalog, ranks
+     * and settings as they are now, later changes to this timetable don't reach it
+     * @param k int of the number of course sets wanted
+     * @param millis long of the most milliseconds to search for, 0 for no limit
+     * @param nodes long of the most partial schedules to visit, 0 for no limit
+     * @return SolveHandle of the search
+     */
+    public SolveHandle start(int k, long millis, long nodes) {
+        final SolveHandle handle = new SolveHandle(k, millis, nodes);
+        final CourseCatalog catalog = this.catalog;
+        final Constraints constraints = this.constraints;
+        final SortingAlgorithm sorter = this.sorter;
+        final boolean collapsing = this.collapsing;
+        final ForkJoinPool pool = this.pool;
+        final Map<Integer, Integer> ranks = new HashMap<Integer, Integer>(this.ranks);
+        final ToIntFunction<Course> rank = course -> ranks.getOrDefault(course.crn, course.getRank());
+        // the last pass and grouping are reused if they're still current, the rest is made on the thread of the search
+        final Propagation current = isPropagationCurrent() ? propagation : null;
+        final Equivalence grouping = current != null && collapsing && isGroupingCurrent() ? equivalence : null;
+        // valid sets that were already found only have to be scored
+        final Feasible known = known();
+        (pool != null ? pool : ForkJoinPool.commonPool()).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Propagation pass = current != null ? current : Propagation.of(catalog, constraints);
+                    handle.setPropagation(pass);
+                    if (known != null) {
+                        handle.setEquivalence(grouping);
+                        handle.finish(known.top(handle.getK(), sorter, rank), true);
+                        return;
+                    }
+                    // each step before the search can take a while on a big catalog, so the budget is checked between
+                    BooleanSupplier stop = () -> handle.stop(0);
+                    CourseCatalog live = pass.getCatalog();
+                    if (collapsing && !stop.getAsBoolean()) {
+                        Equivalence groups = grouping != null ? grouping : Equivalence.of(live, rank);
+                        handle.setEquivalence(groups);
+                        live = groups.getCatalog();
                     }
+                    List<List<Schedule>> options = stop.getAsBoolean() ? null : live.options(pool, constraints, stop);
+                    if (options == null) {
+                        handle.finish(Collections.<ScoredSchedule>emptyList(), false);
+                        return;
+                    }
+                    new Solver(options, sorter, rank, constraints).search(handle, pool);
+                } catch (Exception | Error e) {
+                    handle.fail(e);
                 }
             }
-            return out;
+        });
+        return handle;
+    }
+    /**
+     * takes the sections that can't be in any valid schedule out of the catalog before anything is combined. The choices
+     * are always made from what's left, this tells which sections were taken out and why
+     * @return Propagation of the catalog and constraints of this session
+     */
+    public Propagation propagate() {
+        if (!isPropagationCurrent()) {
+            propagated = catalog;
+            propagatedWith = constraints;
+            propagation = Propagation.of(propagated, propagatedWith);
         }
+        return propagation;
     }
     /**
-     * checks if 2 course sets have conflicting courses
-     * @param s1 Set<Course> set of courses
-     * @param s2 Set<Course> set of other courses
-     * @return true if 2 sets conflict, else false
+     * groups the sections that are left after propagate that any of the others in their group could replace. When
+     * collapsing, the choices are made from 1 section of every group
+     * @return Equivalence of the propagated catalog and the ranks of this session
      */
-    private static boolean schedulesConflict(final Set<Course> s1, final Set<Course> s2) {
-        for (Course i : s1) {
-            for (Course j : s2) {
-                if (coursesConflict(i, j)) {
-                    return true;
-                }
+    public Equivalence collapse() {
+        CourseCatalog live = propagate().getCatalog();
+        if (equivalence == null || grouped != live || regroup) {
+            grouped = live;
+            regroup = false;
+            equivalence = Equivalence.of(grouped, this::getRank);
+        }
+        return equivalence;
+    }
+    /**
+     * getter for the sections that could take the place of a section of a choice
+     * @param course Course of a choice
+     * @return List<Course> of the sections sorted by crn, only the section itself when not collapsing
+     */
+    public List<Course> getAlternatives(Course course) {
+        return collapsing ? collapse().getAlternatives(course) : Collections.singletonList(course);
+    }
+    /**
+     * sets the rank of a course for this session only
+     * @param crn int of the course registration number
+     * @param rank int of the rank
+     */
+    public void setRank(int crn, int rank) {
+        Integer old = ranks.put(crn, rank);
+        // setting a rank to what it already was keeps the grouping and the choices
+        if (old == null || old != rank) {
+            edits++;
+            regroup = true;
+            changed();
+        }
+    }
+    /**
+     * getter for the rank of a course in this session
+     * @param course Course of the catalog
+     * @return int of the rank given in this session, or the rank of the catalog if there isn't one
+     */
+    public int getRank(Course course) {
+        Integer rank = ranks.get(course.crn);
+        return rank == null ? course.getRank() : rank;
+    }
+    /**
+     * sets the sorting algorithm, the choices are ordered by it from the next time they're asked for
+     * @param sorter SortingAlgorithm the choices are ordered by
+     */
+    public void setSortingAlgorithm(SortingAlgorithm sorter) {
+        this.sorter = sorter;
+        changed();
+    }
+    /**
+     * getter for the sorting algorithm
+     * @return SortingAlgorithm the choices are ordered by
+     */
+    public SortingAlgorithm getSortingAlgorithm() {
+        return sorter;
+    }
+    /**
+     * sets the hard constraints, the choices keep to them from the next time they're asked for
+     * @param constraints Constraints every choice keeps to, Constraints.NONE for none
+     */
+    public void setConstraints(Constraints constraints) {
+        this.constraints = constraints;
+        changed();
+    }
+    /**
+     * getter for the hard constraints
+     * @return Constraints every choice keeps to
+     */
+    public Constraints getConstraints() {
+        return constraints;
+    }
+    /**
+     * sets how many of the best choices are kept
+     * @param limit int of the number of choices, 0 for all of them
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(0, limit);
+        changed();
+    }
+    /**
+     * sets whether sections that meet at the same times with the same rank under the same sections are solved on as 1.
+     * The choices then have 1 section of every group, getAlternatives has the rest
+     * @param collapsing boolean true to solve on 1 section of every group, false to solve on every section
+     */
+    public void setCollapsing(boolean collapsing) {
+        this.collapsing = collapsing;
+        changed();
+    }
+    /**
+     * sets how many threads make the choices, the root categories and the join between them are split across a
+     * ForkJoinPool. The choices are the same as with 1 thread
+     * @param parallelism int of the number of threads, 1 or less makes the choices on the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+    /**
+     * lazily makes the valid course sets from the catalog, best first. Nothing is made until it's asked for, so
+     * reading the first few sets is cheap no matter how many there are
+     * @return Iterator<Set<Course>> of valid course sets in the order of the sorting algorithm
+     */
+    public Iterator<Set<Course>> iterator() {
+        final Iterator<Schedule> schedules = solver().iterator();
+        return new Iterator<Set<Course>>() {
+            @Override
+            public boolean hasNext() {
+                return schedules.hasNext();
+            }
+            @Override
+            public Set<Course> next() {
+                return schedules.next().courses();
+            }
+        };
+    }
+    /**
+     * lazily makes the valid course sets from the catalog, best first
+     * @return Stream<Set<Course>> of valid course sets in the order of the sorting algorithm
+     */
+    public Stream<Set<Course>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    /**
+     * empties the catalog and forgets the ranks of this session
+     */
+    public void clear() {
+        catalog = CourseCatalog.empty(catalog.getParser());
+        ranks.clear();
+        edits++;
+        regroup = true;
+        feasible = null;
+        feasibleFrom = null;
+        choices = new ChoiceBuffer(0);
+        stale = false;
+    }
+    /**
+     * getter for the valid course choices, they're made the first time they're asked for after a change
+     * @return Collection<Set<Course>> of valid course sets, best first
+     */
+    public Collection<Set<Course>> getChoices() {
+        if (stale && batches == 0) {
+            makeChoices();
+        }
+        return choices;
+    }
+    /**
+     * makes the valid combinations of every course in a category, it only reads the category so it works on any tree
+     * @param category Category of courses
+     * @return List<Schedule> of valid course combinations
+     */
+    public static List<Schedule> makeChoices(Category category) {
+        return makeChoices(category, Constraints.NONE);
+    }
+    /**
+     * makes the valid combinations of every course in a category that keep to the constraints. Sections that break them
+     * are left out before anything is combined with them
+     * @param category Category of courses
+     * @param constraints Constraints every combination keeps to
+     * @return List<Schedule> of valid course combinations
+     */
+    public static List<Schedule> makeChoices(Category category, Constraints constraints) {
+        return makeChoices(category, constraints, null);
+    }
+    /**
+     * makes the valid combinations of every course in a category that keep to the constraints, giving up once it's told
+     * to stop
+     * @param category Category of courses
+     * @param constraints Constraints every combination keeps to
+     * @param stop BooleanSupplier that's asked before every course, null never stops
+     * @return List<Schedule> of valid course combinations, null if it was stopped
+     */
+    static List<Schedule> makeChoices(Category category, Constraints constraints, BooleanSupplier stop) {
+        List<Schedule> temp = new ArrayList<Schedule>();
+        for (Course course : category.getCourses()) {
+            if (stop != null && stop.getAsBoolean()) {
+                return null;
             }
+            temp.addAll(makeChoices(course, constraints));
+        }
+        return temp;
+    }
+    // a solver over the combinations of every subject in the catalog, with the ranks and constraints of this session
+    private Solver solver() {
+        return new Solver(live().options(pool, constraints), sorter, this::getRank, constraints);
+    }
+    // the catalog the choices are made from
+    private CourseCatalog live() {
+        return collapsing ? collapse().getCatalog() : propagate().getCatalog();
+    }
+    // the valid course sets that were found last if they're still the ones of the catalog, null otherwise. It never
+    // propagates, valid sets found before the catalog or the constraints changed can't be current anyway
+    private Feasible known() {
+        return isFeasibleKnown() ? feasible : null;
+    }
+    // checks if the last pass was made from the catalog and constraints of now
+    private boolean isPropagationCurrent() {
+        return propagation != null && propagated == catalog && constraints.equals(propagatedWith);
+    }
+    // checks if the last grouping was made from the last pass and the ranks of now
+    private boolean isGroupingCurrent() {
+        return equivalence != null && !regroup && grouped == propagation.getCatalog();
+    }
+    // checks if the valid course sets were found from the catalog, constraints and sections that are solved on now
+    private boolean isFeasibleCurrent(Set<Integer> crns) {
+        return feasibleFrom == propagate().getCatalog() && constraints.equals(feasibleWith) && crns.equals(feasibleCrns);
+    }
+    // helper for the crns of every section of a catalog, ranks can change which sections are kept when collapsing
+    private static Set<Integer> crns(CourseCatalog catalog) {
+        Set<Integer> crns = new HashSet<Integer>();
+        for (Course course : catalog.getAll()) {
+            crns.add(course.crn);
         }
-        return false;
+        return crns;
+    }
+    // the choices are made again the next time they're asked for
+    private void changed() {
+        stale = true;
+    }
+    // recursively descend on the course tree and make all combination of non-conflicting courses
+    /**
+     * recursively generates valid course combinations
+     * @param node Course is the root
+     * @param constraints Constraints every combination keeps to
+     * @return List<Schedule> of valid course combinations, empty if the node breaks the constraints
+     */
+    private static List<Schedule> makeChoices(Course node, Constraints constraints) {
+        List<Schedule> courses = new ArrayList<Schedule>();
+        // a section that breaks the constraints takes everything under it out with it
+        if (!constraints.allows(node) || !constraints.allows(node.occupancy)) {
+            return courses;
+        }
+        courses.add(Schedule.of(node));
+        for (Category category : node.getCategories()) {
+            courses = combine(courses, makeChoices(category, constraints), constraints, null);
+        }
+        return courses;
     }
 
     /**
-     * checks if 2 courses conflict
-     * @param c1 Course 1
-     * @param c2 Course 2
-     * @return true if they conflict, else false
+     * helper for combining 2 lists of course combinations, every pair of non-conflicting schedules is merged
+     * @param list1 List<Schedule> of a list of course combinations
+     * @param list2 List<Schedule> of a list of course combinations
+     * @param constraints Constraints the merged schedules keep to
+     * @param graph ConflictGraph of every course in both lists, null compares blocks instead
+     * @return List<Schedule> of course combinations, empty if either list is empty
      */
-    private static boolean coursesConflict(final Course c1, final Course c2) {
-        for (Block b1 : c1.schedule) {
-            for (Block b2 : c2.schedule) {
-                if (b1.conflicts(b2)) {
-                    return true;
+    private static List<Schedule> combine(List<Schedule> list1, List<Schedule> list2, Constraints constraints,
+                                          ConflictGraph graph) {
+        List<Schedule> out = new ArrayList<Schedule>();
+        boolean limited = constraints.limitsSchedules();
+        long merges = 0;
+        for (Schedule i : list1) {
+            for (Schedule j : list2) {
+                if (graph == null ? !i.conflicts(j) : !i.conflicts(j, graph)) {
+                    Schedule merged = i.merge(j);
+                    merges++;
+                    if (!limited || constraints.allows(merged.occupancy)) {
+                        out.add(merged);
+                    }
+                }
+            }
+        }
+        Metrics.count(Metrics.Counter.COMBINATIONS, merges);
+        Metrics.count(Metrics.Counter.CONFLICT_CHECKS, (long) list1.size() * list2.size());
+        return out;
+    }
+    // FeasibleSearch finds every valid course set of a snapshot of a timetable, and what they were found from so the
+    // timetable can tell if they're still its own
+    private static class FeasibleSearch implements Callable<Feasible> {
+        private final CourseCatalog catalog;
+        private final Constraints constraints;
+        private final SortingAlgorithm sorter;
+        private final boolean collapsing;
+        private final ForkJoinPool pool;
+        private final int edits;
+        private final ToIntFunction<Course> rank;
+        // the pass and grouping, made by the search unless the timetable had current ones, and the sections solved on
+        private volatile Propagation propagation;
+        private volatile Equivalence equivalence;
+        private volatile Set<Integer> crns;
+        // the sets the timetable found last from the same pass and the sections they were found from, if any
+        private Feasible known;
+        private Set<Integer> knownCrns;
+        private FeasibleSearch(CourseCatalog catalog, Constraints constraints, SortingAlgorithm sorter, boolean collapsing,
+                               ForkJoinPool pool, int edits, ToIntFunction<Course> rank) {
+            this.catalog = catalog;
+            this.constraints = constraints;
+            this.sorter = sorter;
+            this.collapsing = collapsing;
+            this.pool = pool;
+            this.edits = edits;
+            this.rank = rank;
+        }
+        @Override
+        public Feasible call() {
+            if (propagation == null) {
+                propagation = Propagation.of(catalog, constraints);
+            }
+            CourseCatalog live = propagation.getCatalog();
+            if (collapsing) {
+                if (equivalence == null) {
+                    equivalence = Equivalence.of(live, rank);
                 }
+                live = equivalence.getCatalog();
             }
+            Set<Integer> solved = Timetable.crns(live);
+            // new ranks that leave the same sections to solve on don't change which sets are valid
+            Feasible found = knownCrns != null && knownCrns.equals(solved) ? known
+                    : new Solver(live.options(pool, constraints), sorter, rank, constraints).feasible(MAX_FEASIBLE);
+            crns = solved;
+            return found;
         }
-        return false;
     }
 }
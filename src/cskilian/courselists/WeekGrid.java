@@ -0,0 +1,91 @@
+package cskilian.courselists;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+// WeekGrid draws 1 schedule as a week, a column per day and a row per hour, all on a single canvas instead of a node per
+// class. Weekends only get a column if something meets on them, and the hours shown grow to fit the earliest and latest
+// class
+public class WeekGrid extends Canvas {
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    // hours that are always shown
+    private static final int FIRST_HOUR = 8;
+    private static final int LAST_HOUR = 18;
+    private static final double HEADER = 20;
+    private static final double GUTTER = 40;
+    private static final Color[] COLOURS = {Color.LIGHTSKYBLUE, Color.LIGHTGREEN, Color.LIGHTSALMON, Color.PLUM,
+            Color.KHAKI, Color.LIGHTPINK, Color.PALETURQUOISE, Color.BURLYWOOD, Color.LIGHTSTEELBLUE, Color.THISTLE};
+    /**
+     * Constructor
+     * @param width double of the width of the canvas
+     * @param height double of the height of the canvas
+     */
+    public WeekGrid(double width, double height) {
+        super(width, height);
+        draw(new ArrayList<Course>());
+    }
+    /**
+     * draws the blocks of some courses over an empty week, courses of the same subject get the same colour
+     * @param courses Collection<Course> of the courses of a schedule, empty for an empty week
+     */
+    public void draw(Collection<Course> courses) {
+        int days = 5;
+        int first = FIRST_HOUR;
+        int last = LAST_HOUR;
+        List<String> subjects = new ArrayList<String>();
+        for (Course course : courses) {
+            if (!subjects.contains(course.subject)) {
+                subjects.add(course.subject);
+            }
+            for (Block block : course.schedule) {
+                days = Math.max(days, block.day.ordinal() + 1);
+                first = Math.min(first, block.start / 100);
+                last = Math.max(last, (block.end + 99) / 100);
+            }
+        }
+        GraphicsContext g = getGraphicsContext2D();
+        double columnWidth = (getWidth() - GUTTER) / days;
+        double hourHeight = (getHeight() - HEADER) / Math.max(1, last - first);
+        g.setFill(Color.WHITE);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setStroke(Color.LIGHTGRAY);
+        g.setFill(Color.BLACK);
+        g.setTextBaseline(VPos.CENTER);
+        g.setTextAlign(TextAlignment.CENTER);
+        for (int d = 0; d < days; d++) {
+            double x = GUTTER + d * columnWidth;
+            g.fillText(DAY_NAMES[d], x + columnWidth / 2, HEADER / 2);
+            g.strokeLine(x, HEADER, x, getHeight());
+        }
+        g.setTextAlign(TextAlignment.RIGHT);
+        for (int hour = first; hour <= last; hour++) {
+            double y = HEADER + (hour - first) * hourHeight;
+            g.strokeLine(GUTTER, y, getWidth(), y);
+            g.fillText(hour + ":00", GUTTER - 4, y);
+        }
+        g.setTextAlign(TextAlignment.CENTER);
+        for (Course course : courses) {
+            Color colour = COLOURS[subjects.indexOf(course.subject) % COLOURS.length];
+            for (Block block : course.schedule) {
+                double x = GUTTER + block.day.ordinal() * columnWidth;
+                double top = HEADER + (minutes(block.start) - first * 60) * hourHeight / 60;
+                double bottom = HEADER + (minutes(block.end) - first * 60) * hourHeight / 60;
+                g.setFill(colour);
+                g.fillRect(x + 1, top, columnWidth - 2, bottom - top);
+                g.setStroke(colour.darker());
+                g.strokeRect(x + 1, top, columnWidth - 2, bottom - top);
+                g.setFill(Color.BLACK);
+                g.fillText(course.subject + " " + course.section, x + columnWidth / 2, (top + bottom) / 2,
+                        columnWidth - 4);
+            }
+        }
+    }
+    // helper for minutes since midnight of a 24-hour HHMM time
+    private static int minutes(int time) {
+        return time / 100 * 60 + time % 100;
+    }
+}
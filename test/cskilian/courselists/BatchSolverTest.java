@@ -0,0 +1,111 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// every student of a batch gets their best schedules in the order of the file, whatever happens to the others
+public class BatchSolverTest {
+    private static final String BATCH = "# student;term;sorter;course codes;ranks\n" +
+            "s2;Fall;MaxMin;MATH 1104\n" +
+            "s3;Fall;;BAD 1000;;\n" +
+            "s1;Fall;;COMP 1405, MATH1104;20001=9;Wed\n";
+    @TempDir
+    Path directory;
+    @Test
+    public void studentsAreWrittenInOrder() throws Exception {
+        StringWriter out = new StringWriter();
+        new BatchSolver(parser(), 2, 3).run(new StringReader(BATCH), out, BatchSolver.Format.CSV);
+        // s3 fails and is left out, s1 still gets the best 2 of their 3 schedules with MATH 1104 B blocked on Wednesday
+        assertEquals(Arrays.asList(
+                "student,rank,score,crns",
+                "s2,1,40.0,30000",
+                "s2,2,20.0,30001",
+                "s1,1,14.999999,20000 30000",
+                "s1,2,1.969697,20001 30000"), lines(out));
+    }
+    @Test
+    public void jsonLinesHaveTheSameSchedules() throws Exception {
+        StringWriter out = new StringWriter();
+        new BatchSolver(parser(), 1, 1).run(new StringReader(BATCH), out, BatchSolver.Format.JSONL);
+        assertEquals(Arrays.asList(
+                "{\"student\":\"s2\",\"rank\":1,\"score\":40.0,\"crns\":[30000]}",
+                "{\"student\":\"s1\",\"rank\":1,\"score\":14.999999,\"crns\":[20000,30000]}"), lines(out));
+    }
+    @Test
+    public void badLineStopsTheBatch() {
+        IOException e = assertThrows(IOException.class, () -> new BatchSolver(parser(), 1, 1).run(
+                new StringReader("s1;Fall;;COMP 1405\ns2;Fall;Fastest;COMP 1405\n"), new StringWriter(),
+                BatchSolver.Format.CSV));
+        assertTrue(e.getMessage().startsWith("line 2: "), e.getMessage());
+        e = assertThrows(IOException.class, () -> new BatchSolver(parser(), 1, 1).run(
+                new StringReader("s1;Fall;COMP 1405\n"), new StringWriter(), BatchSolver.Format.CSV));
+        assertTrue(e.getMessage().startsWith("line 1: "), e.getMessage());
+    }
+    @Test
+    public void fieldsAreRead() {
+        List<String[]> codes = BatchSolver.toCodes("COMP 1405, MATH1104,,");
+        assertEquals(2, codes.size());
+        assertEquals(Arrays.asList("COMP", "1405"), Arrays.asList(codes.get(0)));
+        assertEquals(Arrays.asList("MATH", "1104"), Arrays.asList(codes.get(1)));
+        assertEquals(0, BatchSolver.toCodes(" ").size());
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toCodes("1405"));
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toCodes("COMP 1405,COMP"));
+        Map<Integer, Integer> ranks = BatchSolver.toRanks("31234=8, 31240 = 3,");
+        assertEquals(2, ranks.size());
+        assertEquals(8, ranks.get(31234));
+        assertEquals(3, ranks.get(31240));
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toRanks("31234"));
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toRanks("31234=8=3"));
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toRanks("crn=8"));
+        assertEquals(SortingAlgorithm.MaxMin, BatchSolver.toSorter(" "));
+        assertEquals(SortingAlgorithm.Max, BatchSolver.toSorter(" Max "));
+        assertThrows(IllegalArgumentException.class, () -> BatchSolver.toSorter("Fastest"));
+    }
+    // the catalog file of the batch, and BAD 1000 whose section rules fail once the catalog is loaded, when a student
+    // taking it has a section taken out of it and its tree is built again
+    private Parser parser() throws IOException {
+        Path file = directory.resolve("courses.txt");
+        Files.write(file, Arrays.asList(
+                "20000\tCOMP\t1405\tA\tLecture\tM\t0835:0955\t5",
+                "20001\tCOMP\t1405\tB\tLecture\tT\t0835:0955\t3",
+                "20002\tCOMP\t1405\tC\tLecture\tM\t1135:1255\t1",
+                "30000\tMATH\t1104\tA\tLecture\tM\t1435:1555\t4",
+                "30001\tMATH\t1104\tB\tLecture\tW\t0835:0955\t2"));
+        FileParser catalog = new FileParser(file);
+        Thread loader = Thread.currentThread();
+        return new Parser() {
+            @Override
+            public boolean subordinate(Course course, Course node) {
+                if (course.subject.equals("BAD 1000") && Thread.currentThread() != loader) {
+                    throw new IllegalStateException("no rules for " + course.subject);
+                }
+                return catalog.subordinate(course, node);
+            }
+            @Override
+            public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+                if (!subject.equals("BAD")) {
+                    return catalog.makeCourses(subject, number, term);
+                }
+                // A1 conflicts with its own lecture
+                return new ArrayList<Course>(Arrays.asList(
+                        Fixtures.course(40000, "BAD 1000", "A", "Lecture", 1, "Fri 835 955"),
+                        Fixtures.course(40001, "BAD 1000", "A1", "Tutorial", 1, "Fri 905 955"),
+                        Fixtures.course(40002, "BAD 1000", "A2", "Tutorial", 1, "Fri 1135 1225")));
+            }
+        };
+    }
+    private static List<String> lines(StringWriter out) {
+        return Arrays.asList(out.toString().split("\n"));
+    }
+}
@@ -0,0 +1,141 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+// a cached course code comes back as the sections that were fetched, until it expires, is pushed out or its file can't
+// be read any more
+public class CachingParserTest {
+    @TempDir
+    File directory;
+    @Test
+    public void sectionsComeBackAsTheyWereFetched() throws Exception {
+        Stub stub = new Stub();
+        CachingParser parser = new CachingParser(stub, null, 60 * 1000, 4);
+        List<Course> fetched = new ArrayList<Course>(parser.makeCourses("COMP", "1405", Fixtures.TERM));
+        List<Course> cached = new ArrayList<Course>(parser.makeCourses("COMP", "1405", Fixtures.TERM));
+        assertEquals(1, stub.fetches.get());
+        assertEquals(1, parser.getMemoryHits());
+        assertEquals(fetched.size(), cached.size());
+        for (int i = 0; i < fetched.size(); i++) {
+            Course before = fetched.get(i);
+            Course after = cached.get(i);
+            // every hit is decoded into courses of its own
+            assertNotSame(before, after);
+            assertEquals(before.crn, after.crn);
+            assertEquals(before.subject, after.subject);
+            assertEquals(before.section, after.section);
+            assertEquals(before.type, after.type);
+            assertEquals(before.getRank(), after.getRank());
+            assertEquals(new ArrayList<Block>(before.schedule), new ArrayList<Block>(after.schedule));
+        }
+        assertEquals("Smith", cached.get(0).instructor);
+        // there's no null in the format
+        assertNull(fetched.get(1).instructor);
+        assertEquals("", cached.get(1).instructor);
+    }
+    @Test
+    public void expiredSectionsAreFetchedAgain() throws Exception {
+        Stub stub = new Stub();
+        CachingParser parser = new CachingParser(stub, null, 50, 4);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        Thread.sleep(100);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        assertEquals(2, stub.fetches.get());
+        assertEquals(1, parser.getMemoryHits());
+        assertEquals(2, parser.getMisses());
+    }
+    @Test
+    public void leastRecentlyUsedIsPushedOut() throws Exception {
+        Stub stub = new Stub();
+        CachingParser parser = new CachingParser(stub, null, 60 * 1000, 2);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        parser.makeCourses("MATH", "1104", Fixtures.TERM);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        // MATH 1104 was used longest ago, so it makes room for STAT 2507
+        parser.makeCourses("STAT", "2507", Fixtures.TERM);
+        assertEquals(1, parser.getEvictions());
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        assertEquals(2, parser.getMemoryHits());
+        assertEquals(3, parser.getMisses());
+        parser.makeCourses("MATH", "1104", Fixtures.TERM);
+        assertEquals(4, parser.getMisses());
+        assertEquals(2, parser.getEvictions());
+        assertEquals(4, stub.fetches.get());
+    }
+    @Test
+    public void diskOutlivesTheParser() throws Exception {
+        Stub stub = new Stub();
+        new CachingParser(stub, directory, 60 * 1000, 4).makeCourses("COMP", "1405", Fixtures.TERM);
+        CachingParser parser = new CachingParser(stub, directory, 60 * 1000, 4);
+        List<Course> cached = new ArrayList<Course>(parser.makeCourses("COMP", "1405", Fixtures.TERM));
+        assertEquals(1, stub.fetches.get());
+        assertEquals(1, parser.getDiskHits());
+        assertEquals(Arrays.asList(100, 101), Arrays.asList(cached.get(0).crn, cached.get(1).crn));
+        // once it's read from disk it's in memory too
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        assertEquals(1, parser.getMemoryHits());
+    }
+    @Test
+    public void unreadableFileIsAMiss() throws Exception {
+        Stub stub = new Stub();
+        new CachingParser(stub, directory, 60 * 1000, 4).makeCourses("COMP", "1405", Fixtures.TERM);
+        File file = directory.listFiles((d, name) -> name.endsWith(".bin"))[0];
+        byte[] data = Files.readAllBytes(file.toPath());
+        // cut short in the middle of the sections
+        Files.write(file.toPath(), Arrays.copyOf(data, data.length - 5));
+        CachingParser parser = new CachingParser(stub, directory, 60 * 1000, 4);
+        assertEquals(2, parser.makeCourses("COMP", "1405", Fixtures.TERM).size());
+        assertEquals(0, parser.getDiskHits());
+        assertEquals(1, parser.getMisses());
+        assertEquals(2, stub.fetches.get());
+        // written by a version of the format that's gone
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeLong(Long.MAX_VALUE);
+        out.writeInt(0);
+        Files.write(file.toPath(), bytes.toByteArray());
+        parser = new CachingParser(stub, directory, 60 * 1000, 4);
+        assertEquals(2, parser.makeCourses("COMP", "1405", Fixtures.TERM).size());
+        assertEquals(0, parser.getDiskHits());
+        assertEquals(1, parser.getMisses());
+        assertEquals(3, stub.fetches.get());
+        // the fetch wrote it again in the current format
+        parser = new CachingParser(stub, directory, 60 * 1000, 4);
+        parser.makeCourses("COMP", "1405", Fixtures.TERM);
+        assertEquals(1, parser.getDiskHits());
+    }
+    // Stub counts its fetches, every course code is a lecture with an instructor and one without
+    private static class Stub implements Parser {
+        private final AtomicInteger fetches = new AtomicInteger();
+        @Override
+        public boolean subordinate(Course course, Course node) {
+            return CarletonParser.sectionSubordinate(course, node);
+        }
+        @Override
+        public Collection<Course> makeCourses(String subject, String number, String term) {
+            fetches.incrementAndGet();
+            String code = subject + " " + number;
+            Set<Block> twice = new LinkedHashSet<Block>(Arrays.asList(
+                    Fixtures.block(term, "Mon 835 955"), Fixtures.block(term, "Wed 1135 1255")));
+            Set<Block> once = new LinkedHashSet<Block>(Arrays.asList(Fixtures.block(term, "Fri 1805 2055")));
+            return new ArrayList<Course>(Arrays.asList(
+                    new Course(100, code, "A", "Lecture", "Smith", 7, twice),
+                    new Course(101, code, "B", "Lecture", null, 3, once)));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cskilian.courselists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// a term is looked up once however many searches need it, without holding up other terms, and no more searches are
+// sent at once than the concurrency allows
+public class CarletonParserTest {
+    private static final String TERMS = "<select name=\"term_code\">\n" +
+            "<option value=\"202430\">Fall 2024 (September-December)</option>\n" +
+            "<option value=\"202510\">Winter 2025 (January-April)</option>\n" +
+            "</select>\n" +
+            "<input type=\"hidden\" name=\"session_id\" value=\"s3ss10n\">\n";
+    @Test
+    public void sessionIsLookedUpOnce() throws Exception {
+        Stub stub = new Stub(2);
+        CarletonParser parser = new CarletonParser("http://localhost:" + stub.server.getAddress().getPort() + "/");
+        parser.setConcurrency(2);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Collection<Course>>>> fetched =
+                    new ArrayList<Future<List<Collection<Course>>>>();
+            for (int i = 0; i < 4; i++) {
+                String term = i % 2 == 0 ? "Fall" : "Winter";
+                List<String[]> requests = new ArrayList<String[]>();
+                for (int number = 1000; number < 1004; number++) {
+                    requests.add(new String[]{"COMP", "" + number});
+                }
+                fetched.add(callers.submit(() -> parser.makeCourses(requests, term)));
+            }
+            for (Future<List<Collection<Course>>> future : fetched) {
+                assertEquals(4, future.get().size());
+            }
+            // 2 callers asked for each term at once
+            assertEquals(2, stub.lookups.get());
+            // the 2 terms were looked up side by side, the lookup of 1 didn't lock out the other
+            assertEquals(0, stub.together.getCount());
+            assertEquals(16, stub.searches.get());
+            assertTrue(stub.most.get() <= 2, "" + stub.most.get());
+            assertEquals(0, stub.wrong.get());
+        } finally {
+            callers.shutdownNow();
+            stub.server.stop(0);
+        }
+    }
+    @Test
+    public void failedLookupIsTriedAgain() throws Exception {
+        Stub stub = new Stub(1);
+        stub.failures.set(1);
+        CarletonParser parser = new CarletonParser("http://localhost:" + stub.server.getAddress().getPort() + "/");
+        try {
+            boolean failed = false;
+            try {
+                parser.makeCourses("COMP", "1405", "Fall");
+            } catch (IOException e) {
+                failed = true;
+            }
+            assertTrue(failed);
+            assertEquals(0, parser.makeCourses("COMP", "1405", "Fall").size());
+            assertEquals(2, stub.lookups.get());
+            assertEquals(1, stub.searches.get());
+        } finally {
+            stub.server.stop(0);
+        }
+    }
+    // Stub is the bwysched pages, every search is held a little so searches overlap if they're let through together
+    private static class Stub {
+        private final HttpServer server;
+        private final AtomicInteger lookups = new AtomicInteger();
+        // counted down by every lookup, which waits until the other term's lookup has come in too
+        private final CountDownLatch together;
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger searches = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger most = new AtomicInteger();
+        // searches that didn't send the term code and session id of the term
+        private final AtomicInteger wrong = new AtomicInteger();
+        private Stub(int terms) throws IOException {
+            together = new CountDownLatch(terms);
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/bwysched.p_select_term", exchange -> {
+                lookups.incrementAndGet();
+                together.countDown();
+                try {
+                    together.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failures.getAndDecrement() > 0) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                respond(exchange, TERMS);
+            });
+            server.createContext("/bwysched.p_course_search", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (!body.contains("term_code=202430&session_id=s3ss10n") &&
+                        !body.contains("term_code=202510&session_id=s3ss10n")) {
+                    wrong.incrementAndGet();
+                }
+                searches.incrementAndGet();
+                most.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                respond(exchange, "<html><body></body></html>");
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+        private static void respond(HttpExchange exchange, String page) throws IOException {
+            byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
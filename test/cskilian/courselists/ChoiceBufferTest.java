@@ -0,0 +1,67 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// every packed set is the set of courses it was made from, in the same order, and none of it can be changed
+public class ChoiceBufferTest {
+    @Test
+    public void setsAreTheSchedulesAdded() {
+        CourseCatalog catalog = Fixtures.catalog(Fixtures.random(2, 4, 3));
+        List<Schedule> schedules = new Solver(catalog.options(null, Constraints.NONE), SortingAlgorithm.MaxMin,
+                Course::getRank, Constraints.NONE).all(null);
+        assertTrue(schedules.size() > 10, "" + schedules.size());
+        // it has to grow several times over
+        ChoiceBuffer buffer = new ChoiceBuffer(1);
+        for (Schedule schedule : schedules) {
+            buffer.append(schedule);
+        }
+        assertEquals(schedules.size(), buffer.size());
+        for (int i = 0; i < schedules.size(); i++) {
+            List<Course> expected = new ArrayList<Course>(schedules.get(i).courses());
+            Set<Course> set = buffer.get(i);
+            assertEquals(expected.size(), set.size());
+            Iterator<Course> courses = set.iterator();
+            for (Course course : expected) {
+                assertSame(course, courses.next(), "set " + i);
+            }
+            assertFalse(courses.hasNext());
+            assertEquals(schedules.get(i).courses(), set);
+            for (Course course : catalog.getAll()) {
+                assertEquals(expected.contains(course), set.contains(course), "set " + i + ", " + course.crn);
+            }
+            assertFalse(set.contains("not a course"));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(schedules.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(-1));
+    }
+    @Test
+    public void viewsCantBeChanged() {
+        Course lecture = Fixtures.course(100, "COMP 1405", "A", "Lecture", 5, "Mon 835 955");
+        Course tutorial = Fixtures.course(101, "COMP 1405", "A1", "Tutorial", 5, "Fri 835 925");
+        Course other = Fixtures.course(200, "MATH 1104", "A", "Lecture", 5, "Tue 835 955");
+        ChoiceBuffer buffer = new ChoiceBuffer(0);
+        buffer.append(Schedule.of(tutorial).merge(Schedule.of(lecture)));
+        Set<Course> set = buffer.get(0);
+        assertEquals(Arrays.asList(lecture, tutorial), new ArrayList<Course>(set));
+        assertThrows(UnsupportedOperationException.class, () -> set.add(other));
+        assertThrows(UnsupportedOperationException.class, () -> set.remove(lecture));
+        assertThrows(UnsupportedOperationException.class, () -> set.clear());
+        assertThrows(UnsupportedOperationException.class, () -> set.removeIf(course -> true));
+        Iterator<Course> courses = set.iterator();
+        courses.next();
+        assertThrows(UnsupportedOperationException.class, () -> courses.remove());
+        assertThrows(UnsupportedOperationException.class, () -> buffer.add(set));
+        assertThrows(UnsupportedOperationException.class, () -> buffer.set(0, set));
+        assertThrows(UnsupportedOperationException.class, () -> buffer.remove(0));
+        assertEquals(1, buffer.size());
+        assertEquals(2, buffer.get(0).size());
+    }
+}
@@ -0,0 +1,121 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+// a graph that's updated section by section has to be the graph that's built again from scratch
+public class ConflictGraphTest {
+    @Test
+    public void updateMatchesRebuild() {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            Map<Integer, Course> courses = new LinkedHashMap<Integer, Course>();
+            for (Course course : Fixtures.random(seed, 5, 3)) {
+                courses.put(course.crn, course);
+            }
+            ConflictGraph graph = ConflictGraph.of(courses.values());
+            int crn = 20000;
+            for (int step = 0; step < 30; step++) {
+                String run = "seed " + seed + ", step " + step;
+                List<Course> removed = new ArrayList<Course>();
+                List<Course> added = new ArrayList<Course>();
+                List<Course> current = new ArrayList<Course>(courses.values());
+                // take some out, move some to other times under the same crn and put new ones in
+                for (int i = random.nextInt(4); i > 0 && !current.isEmpty(); i--) {
+                    Course course = current.remove(random.nextInt(current.size()));
+                    removed.add(course);
+                    courses.remove(course.crn);
+                }
+                for (int i = random.nextInt(3); i > 0 && !current.isEmpty(); i--) {
+                    Course moved = course(current.remove(random.nextInt(current.size())).crn, random);
+                    added.add(moved);
+                    courses.put(moved.crn, moved);
+                }
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    Course course = course(crn++, random);
+                    added.add(course);
+                    courses.put(course.crn, course);
+                }
+                graph = graph.update(removed, added);
+                assertSame(ConflictGraph.of(courses.values()), graph, courses.values(), run);
+                for (Course course : removed) {
+                    assertEquals(-1, graph.id(course), run);
+                }
+            }
+        }
+    }
+    @Test
+    public void catalogKeepsItsGraphCurrent() {
+        List<Course> courses = Fixtures.random(3, 5, 3);
+        CourseCatalog catalog = Fixtures.catalog(courses);
+        catalog.getConflicts();
+        Random random = new Random(3);
+        // removing a lecture takes its tutorials with it, so the graph loses them too
+        catalog = catalog.without(courses.get(0).crn);
+        check(catalog, "without a lecture");
+        catalog = catalog.without(courses.get(courses.size() - 1).crn);
+        check(catalog, "without a tutorial");
+        catalog = catalog.with(course(30000, random));
+        check(catalog, "with a new section");
+        Course moved = courses.get(5);
+        catalog = catalog.with(new Course(moved.crn, moved.subject, moved.section, moved.type, "", moved.getRank(),
+                course(0, random).schedule));
+        check(catalog, "with a section moved");
+    }
+    private static void check(CourseCatalog catalog, String run) {
+        List<Course> courses = new ArrayList<Course>();
+        for (Course course : catalog.getAll()) {
+            if (course.crn != -1) {
+                courses.add(course);
+            }
+        }
+        assertSame(ConflictGraph.of(courses), catalog.getConflicts(), courses, run);
+    }
+    private static void assertSame(ConflictGraph expected, ConflictGraph actual, Collection<Course> courses,
+                                   String run) {
+        assertEquals(expected.size(), actual.size(), run);
+        assertEquals(expected.pairs(), actual.pairs(), run);
+        List<Course> all = new ArrayList<Course>(courses);
+        for (Course c1 : all) {
+            for (Course c2 : all) {
+                if (c1 != c2) {
+                    assertEquals(Schedule.coursesConflict(c1, c2), actual.conflicts(c1, c2),
+                            run + ", " + c1.crn + " and " + c2.crn);
+                    assertEquals(expected.conflicts(c1, c2), actual.conflicts(c1, c2), run);
+                }
+            }
+        }
+        // the bitsets of the updated graph answer the same as the pairs, whatever ids it handed out
+        for (int i = 0; i + 3 <= all.size(); i += 3) {
+            List<Course> set = all.subList(i, i + 3);
+            for (Course course : all) {
+                boolean any = false;
+                for (Course other : set) {
+                    any |= other != course && Schedule.coursesConflict(course, other);
+                }
+                assertEquals(any, actual.conflictsWithAny(course, actual.set(set)), run + ", " + course.crn);
+            }
+        }
+    }
+    // a section of 1 or 2 blocks, some of them off the usual :35 and :05 starts and some in another term
+    private static Course course(int crn, Random random) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        String term = random.nextInt(6) == 0 ? "Winter" : Fixtures.TERM;
+        for (int b = 1 + random.nextInt(2); b > 0; b--) {
+            int start = (8 + random.nextInt(10)) * 100 + random.nextInt(60);
+            int length = 50 + random.nextInt(100);
+            int end = start + length / 60 * 100 + length % 60;
+            if (end % 100 >= 60) {
+                end += 40;
+            }
+            schedule.add(new Block(Day.values()[random.nextInt(5)], term, start, end));
+        }
+        return new Course(crn, "SUBJ 9" + crn % 10, "Z" + crn, "Lecture", "", 1 + random.nextInt(10), schedule);
+    }
+}
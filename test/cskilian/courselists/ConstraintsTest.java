@@ -0,0 +1,41 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// a break of exactly BREAK_MINUTES is still part of the stretch, anything longer ends it
+public class ConstraintsTest {
+    @Test
+    public void breakOfExactlyBreakMinutesJoins() {
+        // 8:35 to 9:55, then 10:10 to 11:25 is 1 stretch of 170 minutes
+        Occupancy joined = occupancy("Mon 835 955", "Mon 1010 1125");
+        assertEquals(15, Constraints.BREAK_MINUTES);
+        assertEquals(170, joined.longestRun(Constraints.BREAK_MINUTES));
+        assertTrue(Constraints.NONE.withMaxConsecutive(170).allows(joined));
+        assertFalse(Constraints.NONE.withMaxConsecutive(165).allows(joined));
+    }
+    @Test
+    public void longerBreakSplits() {
+        // 10:15 is 20 minutes after 9:55, so the 2 classes are stretches of 80 and 70 minutes
+        Occupancy split = occupancy("Mon 835 955", "Mon 1015 1125");
+        assertEquals(80, split.longestRun(Constraints.BREAK_MINUTES));
+        assertTrue(Constraints.NONE.withMaxConsecutive(80).allows(split));
+        assertFalse(Constraints.NONE.withMaxConsecutive(75).allows(split));
+    }
+    @Test
+    public void carletonBreaksJoin() {
+        // the usual 10 minutes between classes never ends a stretch, other days don't join
+        Occupancy day = occupancy("Tue 835 955", "Tue 1005 1125", "Tue 1135 1255", "Wed 1305 1425");
+        assertEquals(260, day.longestRun(Constraints.BREAK_MINUTES));
+        assertEquals(0, Occupancy.EMPTY.longestRun(Constraints.BREAK_MINUTES));
+    }
+    private static Occupancy occupancy(String... blocks) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        for (String block : blocks) {
+            schedule.add(Fixtures.block(Fixtures.TERM, block));
+        }
+        return Occupancy.of(schedule);
+    }
+}
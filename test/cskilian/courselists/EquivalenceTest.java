@@ -0,0 +1,50 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// sections are only grouped when swapping one for another can't change a schedule, lectures under the root included
+public class EquivalenceTest {
+    @Test
+    public void loneLecturesAreGrouped() {
+        CourseCatalog catalog = Fixtures.catalog(Arrays.asList(
+                Fixtures.course(100, "COMP 1405", "A", "Lecture", 5, "Mon 835 955", "Wed 835 955"),
+                Fixtures.course(101, "COMP 1405", "B", "Lecture", 5, "Mon 835 955", "Wed 835 955"),
+                Fixtures.course(102, "COMP 1405", "C", "Lecture", 5, "Tue 835 955", "Thu 835 955"),
+                Fixtures.course(103, "COMP 1405", "D", "Lecture", 7, "Mon 835 955", "Wed 835 955"),
+                Fixtures.course(200, "MATH 1104", "A", "Lecture", 5, "Mon 835 955", "Wed 835 955")));
+        Equivalence equivalence = Equivalence.of(catalog, Course::getRank);
+        assertEquals(1, equivalence.getCollapsed());
+        assertEquals(Arrays.asList(100, 101), crns(equivalence.getAlternatives(catalog.get(101))));
+        assertTrue(equivalence.getCatalog().contains("COMP 1405", "A", "Lecture"));
+        assertFalse(equivalence.getCatalog().contains("COMP 1405", "B", "Lecture"));
+        // other times, another rank or another subject keep a lecture on its own
+        for (int crn : new int[]{102, 103, 200}) {
+            assertEquals(Arrays.asList(crn), crns(equivalence.getAlternatives(catalog.get(crn))));
+        }
+    }
+    @Test
+    public void lecturesWithTutorialsAreNotGrouped() {
+        CourseCatalog catalog = Fixtures.catalog(Arrays.asList(
+                Fixtures.course(100, "COMP 1405", "A", "Lecture", 5, "Mon 835 955"),
+                Fixtures.course(101, "COMP 1405", "B", "Lecture", 5, "Mon 835 955"),
+                Fixtures.course(110, "COMP 1405", "A1", "Tutorial", 5, "Fri 835 925"),
+                Fixtures.course(111, "COMP 1405", "A2", "Tutorial", 5, "Fri 835 925"),
+                Fixtures.course(120, "COMP 1405", "B1", "Tutorial", 5, "Fri 835 925")));
+        Equivalence equivalence = Equivalence.of(catalog, Course::getRank);
+        // the tutorials of A are the same as each other, A and B have different tutorials under them
+        assertEquals(1, equivalence.getCollapsed());
+        assertEquals(Arrays.asList(110, 111), crns(equivalence.getAlternatives(catalog.get(111))));
+        assertEquals(Arrays.asList(100), crns(equivalence.getAlternatives(catalog.get(100))));
+        assertEquals(Arrays.asList(101), crns(equivalence.getAlternatives(catalog.get(101))));
+    }
+    private static List<Integer> crns(List<Course> group) {
+        Integer[] out = new Integer[group.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = group.get(i).crn;
+        }
+        return Arrays.asList(out);
+    }
+}
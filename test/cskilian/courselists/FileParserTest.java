@@ -0,0 +1,87 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// the catalog file is read the same whatever whitespace and typos it has, and whether it's memory-mapped or not
+public class FileParserTest {
+    private static final Path COURSES = Paths.get("courses.txt");
+    @TempDir
+    Path directory;
+    @Test
+    public void irregularLinesAreRead() throws Exception {
+        FileParser parser = new FileParser(COURSES);
+        List<String> comp = render(parser.makeCourses("COMP", "2401", Fixtures.TERM));
+        assertEquals(Arrays.asList(
+                "11056 COMP 2401 B Lecture 0 [Wednesday 1605-1725, Friday 1605-1725]",
+                "11057 COMP 2401 B1 Tutorial 0 [Friday 835-955]",
+                "11058 COMP 2401 B2 Tutorial 0 [Friday 1005-1125]",
+                // Tutoial is a Tutorial
+                "11059 COMP 2401 B3 Tutorial 0 [Friday 1135-1255]"), comp);
+        // a tab and spaces before the days
+        assertEquals(Arrays.asList("11060 COMP 2402 B Lecture 0 [Tuesday 1305-1425, Thursday 1305-1425]"),
+                render(parser.makeCourses("COMP", "2402", Fixtures.TERM)));
+        List<String> stat = render(parser.makeCourses("STAT", "2507", Fixtures.TERM));
+        assertEquals(16, stat.size());
+        // the rows with a space after STAT belong to STAT 2507 too
+        assertTrue(stat.contains("14739 STAT 2507 E2 Laboratory 0 [Monday 2035-2125]"), stat.toString());
+        assertTrue(stat.contains("14743 STAT 2507 E6 Laboratory 0 [Monday 1605-1655]"), stat.toString());
+        assertTrue(stat.contains("14746 STAT 2507 F Lecture 0 [Tuesday 1435-1555, Thursday 1435-1555]"),
+                stat.toString());
+        assertEquals(0, parser.makeCourses("MATH", "1104", Fixtures.TERM).size());
+    }
+    @Test
+    public void rowsOfACrnAreOneCourse() throws Exception {
+        Path file = directory.resolve("courses.txt");
+        Files.write(file, Arrays.asList(
+                "#crn\t#subject\t#number\t#section\t#type\t#date\t#priority",
+                "20000\tCOMP\t1405\tA\tLecture\tMW\t0835:0955\t3",
+                "20001\tCOMP\t1405\tA1\tTutorial\tF\t1135:1225\t0",
+                "20000\tCOMP\t1405\tA\tLecture\tF\t1435:1525\t3",
+                "20002\tCOMP\t1405\tB\tLecture\tX\t0835:0955\t0",
+                "20003\tCOMP\t1405\tC\tLecture\tT"), StandardCharsets.US_ASCII);
+        // the lines with a day that isn't one or with fields missing are skipped
+        assertEquals(Arrays.asList(
+                "20000 COMP 1405 A Lecture 3 [Monday 835-955, Wednesday 835-955, Friday 1435-1525]",
+                "20001 COMP 1405 A1 Tutorial 0 [Friday 1135-1225]"),
+                render(new FileParser(file).makeCourses("COMP", "1405", Fixtures.TERM)));
+    }
+    @Test
+    public void mappedFileIsReadTheSame() throws Exception {
+        Path file = directory.resolve("courses.txt");
+        byte[] courses = Files.readAllBytes(COURSES);
+        // a comment longer than the threshold puts the same courses past it
+        byte[] padding = new byte[(1 << 20) + 2];
+        Arrays.fill(padding, (byte) '#');
+        padding[padding.length - 1] = '\n';
+        byte[] big = Arrays.copyOf(padding, padding.length + courses.length);
+        System.arraycopy(courses, 0, big, padding.length, courses.length);
+        Files.write(file, big);
+        FileParser heap = new FileParser(COURSES);
+        FileParser mapped = new FileParser(file);
+        for (String[] code : new String[][]{{"COMP", "2401"}, {"COMP", "2402"}, {"COMP", "2804"}, {"STAT", "2507"}}) {
+            assertEquals(render(heap.makeCourses(code[0], code[1], Fixtures.TERM)),
+                    render(mapped.makeCourses(code[0], code[1], Fixtures.TERM)), code[0] + " " + code[1]);
+        }
+    }
+    private static List<String> render(Collection<Course> courses) {
+        List<String> out = new ArrayList<String>();
+        for (Course course : courses) {
+            List<String> blocks = new ArrayList<String>();
+            for (Block block : course.schedule) {
+                blocks.add(block.day + " " + block.start + "-" + block.end);
+            }
+            out.add(course.crn + " " + course.subject + " " + course.section + " " + course.type + " " +
+                    course.getRank() + " " + blocks);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,120 @@
+package cskilian.courselists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+// Fixtures makes courses for the tests without a parser fetching anything. Blocks are written like "Mon 835 955", and
+// random catalogs are made the way the benchmark catalog is, so the same seed always makes the same courses
+public class Fixtures {
+    public static final String TERM = "Fall";
+    /**
+     * makes a section of the fall term
+     * @param crn int of the course registration number
+     * @param subject String of the course code, ie. COMP 1405
+     * @param section String of the section, ie. A or A1
+     * @param type String of the type, ie. Lecture or Tutorial
+     * @param rank int of the rank
+     * @param blocks String... of the blocks, ie. "Mon 835 955"
+     * @return Course of the section
+     */
+    public static Course course(int crn, String subject, String section, String type, int rank, String... blocks) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        for (String block : blocks) {
+            schedule.add(block(TERM, block));
+        }
+        return new Course(crn, subject, section, type, "", rank, schedule);
+    }
+    /**
+     * makes a block
+     * @param term String of the term
+     * @param block String of the day, start and end, ie. "Mon 835 955"
+     * @return Block of the time
+     */
+    public static Block block(String term, String block) {
+        String[] fields = block.split(" ");
+        for (Day day : Day.values()) {
+            if (day.name().regionMatches(true, 0, fields[0], 0, 3)) {
+                return new Block(day, term, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+            }
+        }
+        throw new IllegalArgumentException(block);
+    }
+    /**
+     * makes a catalog of courses
+     * @param courses Collection<Course> of the sections
+     * @return CourseCatalog with the Carleton section rules
+     */
+    public static CourseCatalog catalog(Collection<Course> courses) {
+        return CourseCatalog.empty(parser()).with(courses);
+    }
+    /**
+     * makes made-up subjects, every lecture has the same number of tutorials and some of them conflict
+     * @param seed long of the seed of the courses
+     * @param subjects int of the number of subjects
+     * @param sections int of the number of lectures of a subject, and of tutorials of a lecture
+     * @return List<Course> of the lectures followed by the tutorials
+     */
+    public static List<Course> random(long seed, int subjects, int sections) {
+        Random random = new Random(seed);
+        List<Course> lectures = new ArrayList<Course>();
+        List<Course> tutorials = new ArrayList<Course>();
+        int crn = 10000;
+        for (int s = 0; s < subjects; s++) {
+            String subject = "SUBJ " + (1000 + s);
+            for (int l = 0; l < sections; l++) {
+                char letter = (char) ('A' + l);
+                int first = random.nextInt(2);
+                int hour = 8 + random.nextInt(10);
+                Set<Block> schedule = new LinkedHashSet<Block>();
+                schedule.add(new Block(Day.values()[first], TERM, hour * 100 + 35, (hour + 1) * 100 + 55));
+                schedule.add(new Block(Day.values()[first + 2], TERM, hour * 100 + 35, (hour + 1) * 100 + 55));
+                lectures.add(new Course(crn++, subject, "" + letter, "Lecture", "", 1 + random.nextInt(10), schedule));
+                for (int t = 1; t <= sections; t++) {
+                    int day = random.nextInt(5);
+                    int start = 8 + random.nextInt(10);
+                    Set<Block> slot = new LinkedHashSet<Block>();
+                    slot.add(new Block(Day.values()[day], TERM, start * 100 + 35, (start + 1) * 100 + 25));
+                    tutorials.add(new Course(crn++, subject, "" + letter + t, "Tutorial", "", 1 + random.nextInt(10),
+                            slot));
+                }
+            }
+        }
+        List<Course> courses = new ArrayList<Course>(lectures);
+        courses.addAll(tutorials);
+        return courses;
+    }
+    /**
+     * helper for the crns of some schedules, in order, so 2 lists of schedules can be compared
+     * @param schedules List<ScoredSchedule> of schedules
+     * @return List<String> of the crns and score of every schedule
+     */
+    public static List<String> crns(List<ScoredSchedule> schedules) {
+        List<String> out = new ArrayList<String>();
+        for (ScoredSchedule schedule : schedules) {
+            StringBuilder line = new StringBuilder();
+            for (Course course : schedule.schedule.courses()) {
+                line.append(course.crn).append(' ');
+            }
+            out.add(line.append(schedule.score).toString());
+        }
+        return out;
+    }
+    /**
+     * makes a parser with the Carleton section rules that doesn't fetch anything
+     * @return Parser for the course tree
+     */
+    public static Parser parser() {
+        return new Parser() {
+            @Override
+            public boolean subordinate(Course course, Course node) {
+                return CarletonParser.sectionSubordinate(course, node);
+            }
+            @Override
+            public Collection<Course> makeCourses(String subject, String number, String term) {
+                return new ArrayList<Course>();
+            }
+        };
+    }
+}
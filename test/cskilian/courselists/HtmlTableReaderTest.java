@@ -0,0 +1,42 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+// entities are decoded the way a browser shows them, anything that can't be decoded is left as it was
+public class HtmlTableReaderTest {
+    @Test
+    public void decimalAndHexEntities() throws IOException {
+        assertEquals("a/b", cell("a&#47;b"));
+        assertEquals("a/b", cell("a&#x2F;b"));
+        assertEquals("a/b", cell("a&#X2f;b"));
+        assertEquals("Profé & co", cell("Prof&#xE9; &amp; co"));
+    }
+    @Test
+    public void supplementaryCharacters() throws IOException {
+        assertEquals("😀", cell("&#x1F600;"));
+        assertEquals("😀", cell("&#128512;"));
+    }
+    @Test
+    public void undecodableEntitiesStayLiteral() throws IOException {
+        assertEquals("&#x;", cell("&#x;"));
+        assertEquals("&#xZZ;", cell("&#xZZ;"));
+        assertEquals("&#0;", cell("&#0;"));
+        assertEquals("&#xD800;", cell("&#xD800;"));
+        assertEquals("&#9999999;", cell("&#9999999;"));
+        assertEquals("&bogus;", cell("&bogus;"));
+        assertEquals("a & b", cell("a & b"));
+        assertEquals("R&D", cell("R&D"));
+    }
+    @Test
+    public void namedEntitiesAndWhitespace() throws IOException {
+        assertEquals("<a> \"b\"", cell("&lt;a&gt;&nbsp;&nbsp;&quot;b&quot;"));
+        assertEquals("x y", cell("  x \n\t y  "));
+    }
+    private static String cell(String html) throws IOException {
+        HtmlTableReader rows = new HtmlTableReader(
+                new StringReader("<html><table><tr><td>" + html + "</td></tr></table></html>"), 0);
+        assertEquals(true, rows.nextRow());
+        return rows.cell(0).toString();
+    }
+}
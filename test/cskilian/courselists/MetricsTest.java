@@ -0,0 +1,62 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// every number of nanoseconds falls in exactly 1 bucket, the buckets cover everything up to Long.MAX_VALUE without a
+// gap, and a percentile is the top of the bucket its run fell in
+public class MetricsTest {
+    @Test
+    public void bucketsCoverEveryNumber() {
+        // 0 to 7 each have a bucket of their own
+        for (int n = 0; n < 8; n++) {
+            assertEquals(n, Metrics.Histogram.bucket(n));
+            assertEquals(n, Metrics.Histogram.top(n));
+        }
+        // a power of 2 starts a bucket, the number before it ends one
+        for (int bit = 2; bit < 63; bit++) {
+            long power = 1L << bit;
+            int bucket = Metrics.Histogram.bucket(power);
+            assertEquals(4 * (bit - 1), bucket, "2^" + bit);
+            assertEquals(bucket - 1, Metrics.Histogram.bucket(power - 1), "2^" + bit + " - 1");
+            assertEquals(power - 1, Metrics.Histogram.top(bucket - 1), "2^" + bit + " - 1");
+        }
+        int last = Metrics.Histogram.bucket(Long.MAX_VALUE);
+        assertTrue(last < Metrics.Histogram.BUCKETS, "" + last);
+        assertEquals(Long.MAX_VALUE, Metrics.Histogram.top(last));
+        // the top of every bucket is in it, and the number after it is in the next one
+        for (int bucket = 0; bucket < last; bucket++) {
+            long top = Metrics.Histogram.top(bucket);
+            assertEquals(bucket, Metrics.Histogram.bucket(top), "top of " + bucket);
+            assertEquals(bucket + 1, Metrics.Histogram.bucket(top + 1), "after " + bucket);
+        }
+    }
+    @Test
+    public void percentilesAreTopsOfBuckets() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getP99Millis());
+        // 1 to 100 ms, and a negative time that counts as 0
+        for (long ms = 1; ms <= 100; ms++) {
+            histogram.record(ms * 1_000_000);
+        }
+        histogram.record(-5);
+        Metrics.Latency latency = histogram.snapshot();
+        assertEquals(101, latency.getCount());
+        assertEquals(5050.0 / 101, latency.getMeanMillis(), 1e-9);
+        assertEquals(100.0, latency.getMaxMillis());
+        // the 51st run is 50 ms, reported as the top of its bucket
+        long p50 = Metrics.Histogram.top(Metrics.Histogram.bucket(50_000_000));
+        assertEquals(50_331_647, p50);
+        assertEquals(p50 / 1e6, latency.getP50Millis());
+        // the 100th run is 99 ms, the top of its bucket is past the longest run so that's reported instead
+        assertEquals(100.0, latency.getP99Millis());
+        Metrics.Histogram exact = new Metrics.Histogram();
+        for (int i = 0; i < 99; i++) {
+            exact.record(3);
+        }
+        exact.record(6);
+        assertEquals(3 / 1e6, exact.snapshot().getP50Millis());
+        assertEquals(3 / 1e6, exact.snapshot().getP99Millis());
+        assertEquals(6 / 1e6, exact.snapshot().getMaxMillis());
+    }
+}
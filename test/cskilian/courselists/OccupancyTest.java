@@ -0,0 +1,89 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// the bitmaps have to give the same answer as comparing every pair of blocks
+public class OccupancyTest {
+    private static final String[] TERMS = {"Fall", "Winter"};
+    @Test
+    public void endsAreInclusive() {
+        assertConflict(true, "Mon 835 955", "Mon 955 1125");
+        assertConflict(true, "Mon 1005 1125", "Mon 835 1005");
+        assertConflict(false, "Mon 835 955", "Mon 1000 1125");
+        assertConflict(false, "Mon 835 955", "Tue 835 955");
+    }
+    @Test
+    public void offGridTimesFallBackToBlocks() {
+        // both ends round into the same slot, but the blocks are a minute apart
+        assertConflict(false, "Mon 837 957", "Mon 958 1100");
+        assertConflict(true, "Mon 837 957", "Mon 957 1100");
+        assertFalse(Occupancy.of(blocks("Fall", "Mon 837 957")).isExact());
+    }
+    @Test
+    public void termsNeverConflict() {
+        Course fall = new Course(1, "COMP 1405", "A", "Lecture", "", 0, blocks("Fall", "Mon 835 955"));
+        Course winter = new Course(2, "COMP 1405", "A", "Lecture", "", 0, blocks("Winter", "Mon 835 955"));
+        assertFalse(fall.schedule.iterator().next().conflicts(winter.schedule.iterator().next()));
+        assertFalse(Schedule.coursesConflict(fall, winter));
+        assertFalse(fall.occupancy.intersects(winter.occupancy));
+        // a schedule over both terms still conflicts with a section of either
+        Schedule both = Schedule.of(fall).merge(Schedule.of(winter));
+        Course later = new Course(3, "MATH 1104", "A", "Lecture", "", 0, blocks("Winter", "Mon 900 1000"));
+        assertTrue(both.conflicts(Schedule.of(later)));
+    }
+    @Test
+    public void agreesWithBlocks() {
+        Random random = new Random(1405);
+        for (int n = 0; n < 20000; n++) {
+            Course c1 = randomCourse(random, 1);
+            Course c2 = randomCourse(random, 2);
+            boolean expected = false;
+            for (Block b1 : c1.schedule) {
+                for (Block b2 : c2.schedule) {
+                    expected |= b1.conflicts(b2);
+                }
+            }
+            String message = c1.schedule + " " + c2.schedule;
+            assertEquals(expected, Schedule.coursesConflict(c1, c2), message);
+            assertEquals(expected, Schedule.of(c1).conflicts(Schedule.of(c2)), message);
+            if (c1.occupancy.isExact() && c2.occupancy.isExact()) {
+                assertEquals(expected, c1.occupancy.intersects(c2.occupancy), message);
+            } else if (expected) {
+                // rounded bitmaps may only ever say too much, never too little
+                assertTrue(c1.occupancy.intersects(c2.occupancy), message);
+            }
+        }
+    }
+    // a section of 1 to 3 blocks, mostly on 5 minute boundaries, in either term
+    private static Course randomCourse(Random random, int crn) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        for (int b = 1 + random.nextInt(3); b > 0; b--) {
+            int step = random.nextInt(4) == 0 ? 1 : 5;
+            int start = 8 * 60 + step * random.nextInt(10 * 60 / step);
+            int end = start + step * random.nextInt(120 / step);
+            schedule.add(new Block(Day.values()[random.nextInt(3)], TERMS[random.nextInt(TERMS.length)],
+                    start / 60 * 100 + start % 60, end / 60 * 100 + end % 60));
+        }
+        return new Course(crn, "SUBJ " + crn, "A", "Lecture", "", 0, schedule);
+    }
+    private static void assertConflict(boolean expected, String b1, String b2) {
+        Course c1 = Fixtures.course(1, "COMP 1405", "A", "Lecture", 0, b1);
+        Course c2 = Fixtures.course(2, "MATH 1104", "A", "Lecture", 0, b2);
+        assertEquals(expected, c1.schedule.iterator().next().conflicts(c2.schedule.iterator().next()));
+        assertEquals(expected, Schedule.coursesConflict(c1, c2));
+        assertEquals(expected, Schedule.coursesConflict(c2, c1));
+        assertEquals(expected, Schedule.of(c1).conflicts(Schedule.of(c2)));
+    }
+    private static Set<Block> blocks(String term, String... blocks) {
+        Set<Block> schedule = new LinkedHashSet<Block>();
+        for (String block : Arrays.asList(blocks)) {
+            schedule.add(Fixtures.block(term, block));
+        }
+        return schedule;
+    }
+}
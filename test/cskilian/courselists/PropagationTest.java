@@ -0,0 +1,86 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// taking out the sections that can't be in any valid schedule never changes the valid schedules or the best scores
+public class PropagationTest {
+    private static final Constraints[] CONSTRAINTS = {
+            Constraints.NONE,
+            Constraints.NONE.withEarliestStart(1000),
+            Constraints.NONE.withMaxDays(3),
+            Constraints.NONE.withBlocked(Day.values()[0]),
+            Constraints.NONE.withLatestEnd(1600).withMaxConsecutive(180)
+    };
+    @Test
+    public void sameSchedulesWithAndWithoutPropagation() {
+        int eliminated = 0;
+        int solved = 0;
+        for (long seed = 1; seed <= 8; seed++) {
+            CourseCatalog catalog = Fixtures.catalog(Fixtures.random(seed, 4, 3));
+            for (Constraints constraints : CONSTRAINTS) {
+                Propagation propagation = Propagation.of(catalog, constraints);
+                eliminated += propagation.getEliminated().size();
+                for (SortingAlgorithm sorter : SortingAlgorithm.values()) {
+                    String run = sorter + ", seed " + seed + ", " + constraints;
+                    Solver raw = solver(catalog, sorter, constraints);
+                    Solver propagated = solver(propagation.getCatalog(), sorter, constraints);
+                    List<String> every = sorted(raw.all(null));
+                    assertEquals(every, sorted(propagated.all(null)), run);
+                    // the pass only proves there's no schedule, it can miss some that aren't there
+                    assertTrue(propagation.isFeasible() || every.isEmpty(), run);
+                    if (!every.isEmpty()) {
+                        solved++;
+                    }
+                    // a section that was taken out is in none of the valid schedules
+                    for (Schedule schedule : raw.all(null)) {
+                        for (Course course : schedule.courses()) {
+                            assertFalse(propagation.getEliminated().containsKey(course), run + ", " + course.crn);
+                        }
+                    }
+                    for (int k : new int[]{1, 10, every.size() + 1}) {
+                        List<ScoredSchedule> before = raw.top(k);
+                        List<ScoredSchedule> after = propagated.top(k);
+                        // ties can be cut at k in another order once categories shrink, the scores can't change
+                        assertEquals(scores(before), scores(after), run + ", k " + k);
+                        for (ScoredSchedule schedule : after) {
+                            assertTrue(every.contains(render(schedule.schedule.courses())), run + ", k " + k);
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(eliminated > 0, "nothing was taken out");
+        assertTrue(solved > 0, "nothing was solved");
+    }
+    private static Solver solver(CourseCatalog catalog, SortingAlgorithm sorter, Constraints constraints) {
+        return new Solver(catalog.options(null, constraints), sorter, Course::getRank, constraints);
+    }
+    private static List<Float> scores(List<ScoredSchedule> schedules) {
+        List<Float> out = new ArrayList<Float>();
+        for (ScoredSchedule schedule : schedules) {
+            out.add(schedule.score);
+        }
+        return out;
+    }
+    private static List<String> sorted(List<Schedule> schedules) {
+        List<String> out = new ArrayList<String>();
+        for (Schedule schedule : schedules) {
+            out.add(render(schedule.courses()));
+        }
+        Collections.sort(out);
+        return out;
+    }
+    private static String render(Set<Course> choice) {
+        Set<Integer> crns = new TreeSet<Integer>();
+        for (Course course : choice) {
+            crns.add(course.crn);
+        }
+        return crns.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// every section written to a snapshot is read back as it was, by its course code however that's spaced
+public class SnapshotParserTest {
+    @TempDir
+    Path directory;
+    @Test
+    public void sectionsAreReadBack() throws Exception {
+        Path path = directory.resolve("fall.snapshot");
+        // not in order of the course codes, and the sections of a code aren't next to each other
+        SnapshotParser.write(path, Fixtures.TERM, Arrays.asList(
+                course(300, "MATH 1104", "A", "Lecture", "Smith", 4, "Tue 1135 1255", "Thu 1135 1255"),
+                course(100, "COMP 1405", "B", "Lecture", null, 2, "Mon 835 955"),
+                course(400, "ECON1001", "A", "Lecture", "Jones", 0, "Fri 1805 2055"),
+                course(101, "COMP 1405", "B1", "Tutorial", "", 9, "Wed 1435 1525"),
+                course(300, "MATH 1104", "Z", "Lecture", "Twice", 1, "Mon 835 955"),
+                course(200, "COMP 2401", "A", "Lecture", "Smith", 5)));
+        SnapshotParser parser = new SnapshotParser(path);
+        assertEquals(Fixtures.TERM, parser.getTerm());
+        // a crn that was written twice is only kept once
+        assertEquals(5, parser.size());
+        assertEquals(Arrays.asList(
+                "100 COMP 1405 B Lecture null 2 [Monday 835-955]",
+                "101 COMP 1405 B1 Tutorial  9 [Wednesday 1435-1525]"),
+                render(parser.makeCourses("COMP", "1405", Fixtures.TERM)));
+        assertEquals(Arrays.asList("200 COMP 2401 A Lecture Smith 5 []"),
+                render(parser.makeCourses("COMP", "2401", Fixtures.TERM)));
+        assertEquals(Arrays.asList("300 MATH 1104 A Lecture Smith 4 [Tuesday 1135-1255, Thursday 1135-1255]"),
+                render(parser.makeCourses("MATH", "1104", Fixtures.TERM)));
+        // written without a space, looked up with one, or the other way around
+        assertEquals(Arrays.asList("400 ECON1001 A Lecture Jones 0 [Friday 1805-2055]"),
+                render(parser.makeCourses("ECON", "1001", Fixtures.TERM)));
+        assertEquals(render(parser.makeCourses("COMP", "1405", Fixtures.TERM)),
+                render(parser.makeCourses("COMP1405", "", Fixtures.TERM)));
+        assertEquals(0, parser.makeCourses("COMP", "1406", Fixtures.TERM).size());
+        assertEquals(0, parser.makeCourses("AAAA", "1000", Fixtures.TERM).size());
+        assertEquals(0, parser.makeCourses("ZZZZ", "9999", Fixtures.TERM).size());
+        assertEquals(0, parser.makeCourses("COMP", "1405", "Winter").size());
+    }
+    @Test
+    public void otherTermsGoToTheFallback() throws Exception {
+        Path path = directory.resolve("fall.snapshot");
+        SnapshotParser.write(path, Fixtures.TERM, Arrays.asList(
+                course(100, "COMP 1405", "A", "Lecture", "", 0, "Mon 835 955")));
+        List<String> asked = new ArrayList<String>();
+        Parser fallback = new Parser() {
+            @Override
+            public boolean subordinate(Course course, Course node) {
+                return CarletonParser.sectionSubordinate(course, node);
+            }
+            @Override
+            public Collection<Course> makeCourses(String subject, String number, String term) {
+                asked.add(term + " " + subject + " " + number);
+                return Arrays.asList(new Course(900, subject + " " + number, "A", "Lecture", "", 0,
+                        Fixtures.course(0, "", "", "", 0, "Mon 835 955").schedule));
+            }
+        };
+        SnapshotParser parser = new SnapshotParser(path, fallback);
+        assertEquals(Arrays.asList("100 COMP 1405 A Lecture  0 [Monday 835-955]"),
+                render(parser.makeCourses("COMP", "1405", Fixtures.TERM)));
+        assertEquals(Arrays.asList("900 COMP 1405 A Lecture  0 [Monday 835-955]"),
+                render(parser.makeCourses("COMP", "1405", "Winter")));
+        List<Collection<Course>> batch = parser.makeCourses(
+                Arrays.asList(new String[]{"COMP", "1405"}, new String[]{"MATH", "1104"}), "Winter");
+        assertEquals(2, batch.size());
+        assertEquals(Arrays.asList("Winter COMP 1405", "Winter COMP 1405", "Winter MATH 1104"), asked);
+    }
+    @Test
+    public void damagedFileIsRejected() throws Exception {
+        Path path = directory.resolve("fall.snapshot");
+        SnapshotParser.write(path, Fixtures.TERM, Arrays.asList(
+                course(100, "COMP 1405", "A", "Lecture", "Smith", 0, "Mon 835 955"),
+                course(200, "MATH 1104", "A", "Lecture", "Jones", 0, "Tue 835 955")));
+        byte[] data = Files.readAllBytes(path);
+        Path cut = directory.resolve("cut.snapshot");
+        Files.write(cut, Arrays.copyOf(data, data.length - 3));
+        IOException e = assertThrows(IOException.class, () -> new SnapshotParser(cut));
+        assertTrue(e.getMessage().contains("cut short"), e.getMessage());
+        // cut in the middle of the columns
+        Files.write(cut, Arrays.copyOf(data, 60));
+        e = assertThrows(IOException.class, () -> new SnapshotParser(cut));
+        assertTrue(e.getMessage().contains("cut short"), e.getMessage());
+        Files.write(cut, "#crn\tsubject".getBytes());
+        e = assertThrows(IOException.class, () -> new SnapshotParser(cut));
+        assertTrue(e.getMessage().contains("isn't a snapshot"), e.getMessage());
+    }
+    // a section of the fall term with an instructor that may be null
+    private static Course course(int crn, String subject, String section, String type, String instructor, int rank,
+                                 String... blocks) {
+        Course course = Fixtures.course(crn, subject, section, type, rank, blocks);
+        return new Course(crn, subject, section, type, instructor, rank, course.schedule);
+    }
+    private static List<String> render(Collection<Course> courses) {
+        List<String> out = new ArrayList<String>();
+        for (Course course : courses) {
+            List<String> blocks = new ArrayList<String>();
+            for (Block block : course.schedule) {
+                assertEquals(Fixtures.TERM, block.term);
+                blocks.add(block.day + " " + block.start + "-" + block.end);
+            }
+            out.add(course.crn + " " + course.subject + " " + course.section + " " + course.type + " " +
+                    course.instructor + " " + course.getRank() + " " + blocks);
+        }
+        return out;
+    }
+}
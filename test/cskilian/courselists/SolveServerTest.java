@@ -0,0 +1,176 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// concurrent solves of the same course code fetch it once, and what went wrong decides the status every waiter gets
+public class SolveServerTest {
+    // no more than the server has threads for, so every client is waiting at once
+    private static final int CLIENTS = 4;
+    @Test
+    public void sameCodeIsFetchedOnce() throws Exception {
+        Stub stub = new Stub(1);
+        stub.add(Fixtures.course(100, "COMP 1405", "A", "Lecture", 5, "Mon 835 955"),
+                Fixtures.course(101, "COMP 1405", "B", "Lecture", 3, "Tue 835 955"));
+        CoalescingParser coalescing = new CoalescingParser(stub);
+        SolveServer server = new SolveServer(coalescing, 4, 60 * 1000);
+        server.start(0);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < CLIENTS; i++) {
+                responses.add(clients.submit(() -> get(server, "/solve?term=Fall&codes=COMP%201405&top=5")));
+            }
+            // every client but the one fetching waits on that fetch before it's let through
+            await(coalescing, CLIENTS - 1);
+            stub.release.countDown();
+            for (Future<String> response : responses) {
+                String body = response.get();
+                assertTrue(body.startsWith("200 "), body);
+                assertTrue(body.contains("\"complete\":true"), body);
+                assertTrue(body.contains("\"crns\":[101]"), body);
+            }
+            assertEquals(1, stub.fetches.get());
+            assertEquals(1, coalescing.getFetches());
+            assertEquals(0, coalescing.getInFlight());
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+    @Test
+    public void upstreamErrorReachesEveryWaiter() throws Exception {
+        Stub stub = new Stub(1);
+        CoalescingParser coalescing = new CoalescingParser(stub);
+        SolveServer server = new SolveServer(coalescing, 4, 60 * 1000);
+        server.start(0);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < CLIENTS; i++) {
+                responses.add(clients.submit(() -> get(server, "/solve?term=Fall&codes=DOWN%201000")));
+            }
+            await(coalescing, CLIENTS - 1);
+            stub.release.countDown();
+            for (Future<String> response : responses) {
+                String body = response.get();
+                assertTrue(body.startsWith("502 "), body);
+                assertTrue(body.contains("upstream is down"), body);
+            }
+            assertEquals(1, stub.fetches.get());
+            assertEquals(0, coalescing.getInFlight());
+            // nothing of the failed fetch is kept, the next solve asks upstream again
+            assertTrue(get(server, "/solve?term=Fall&codes=DOWN%201000").startsWith("502 "));
+            assertEquals(2, stub.fetches.get());
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+    @Test
+    public void errorsHaveTheirStatus() throws Exception {
+        Stub stub = new Stub(0);
+        stub.add(Fixtures.random(1, 12, 8).toArray(new Course[0]));
+        stub.add(Fixtures.course(200, "BUG 1000", "A", "Lecture", 5, "Mon 835 955"),
+                Fixtures.course(201, "BUG 1000", "A1", "Tutorial", 5, "Fri 835 925"));
+        SolveServer server = new SolveServer(stub, 1, 60 * 1000);
+        server.setQueue(50);
+        server.setBudget(2000, 0);
+        server.start(0);
+        StringBuilder codes = new StringBuilder();
+        for (int s = 0; s < 12; s++) {
+            codes.append(s == 0 ? "" : ",").append("SUBJ%20").append(1000 + s);
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(1);
+        try {
+            assertTrue(get(server, "/solve?codes=COMP%201405").startsWith("400 "));
+            assertTrue(get(server, "/solve?term=Fall&codes=COMP%201405&top=ten").startsWith("400 "));
+            assertTrue(get(server, "/solve?term=Fall&codes=1405").startsWith("400 "));
+            // a bug behind the fetch isn't the upstream's fault
+            String bug = get(server, "/solve?term=Fall&codes=BUG%201000");
+            assertTrue(bug.startsWith("500 "), bug);
+            assertTrue(bug.contains("internal error"), bug);
+            // the first solve holds the only slot until its budget runs out, the second one can't wait that long
+            assertTrue(get(server, "/sections?term=Fall&codes=" + codes).startsWith("200 "));
+            Future<String> slow = clients.submit(() -> get(server, "/solve?term=Fall&top=100&codes=" + codes));
+            Thread.sleep(500);
+            String busy = get(server, "/solve?term=Fall&codes=SUBJ%201000");
+            assertTrue(busy.startsWith("503 "), busy);
+            String body = slow.get();
+            assertTrue(body.startsWith("200 "), body);
+            assertTrue(body.contains("\"complete\":false"), body);
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+    // waits until some fetches are waiting on one that's running
+    private static void await(CoalescingParser coalescing, long coalesced) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (coalescing.getCoalesced() < coalesced) {
+            assertTrue(System.currentTimeMillis() < deadline, "only " + coalescing.getCoalesced() + " are waiting");
+            Thread.sleep(5);
+        }
+    }
+    // sends a GET and answers with the status, a space and the body
+    private static String get(SolveServer server, String path) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        try {
+            int status = connection.getResponseCode();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                in.transferTo(out);
+            }
+            return status + " " + out.toString(StandardCharsets.UTF_8.name());
+        } finally {
+            connection.disconnect();
+        }
+    }
+    // Stub holds every fetch until it's released, subject DOWN always fails and subject BUG can't be put in a tree
+    private static class Stub implements Parser {
+        private final CountDownLatch release;
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final Map<String, List<Course>> courses = new HashMap<String, List<Course>>();
+        private Stub(int held) {
+            this.release = new CountDownLatch(held);
+        }
+        private void add(Course... sections) {
+            for (Course course : sections) {
+                courses.computeIfAbsent(course.subject, s -> new ArrayList<Course>()).add(course);
+            }
+        }
+        @Override
+        public boolean subordinate(Course course, Course node) {
+            if (course.subject.startsWith("BUG")) {
+                throw new IllegalStateException("no tree for " + course.subject);
+            }
+            return CarletonParser.sectionSubordinate(course, node);
+        }
+        @Override
+        public Collection<Course> makeCourses(String subject, String number, String term) throws Exception {
+            fetches.incrementAndGet();
+            release.await();
+            if (subject.equals("DOWN")) {
+                throw new IOException("upstream is down");
+            }
+            List<Course> found = courses.get(subject + " " + number);
+            return found == null ? new ArrayList<Course>() : new ArrayList<Course>(found);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// the best k schedules have to be the start of every valid schedule sorted by score, ties included
+public class SolverTest {
+    @Test
+    public void topIsPrefixOfAll() {
+        for (SortingAlgorithm sorter : SortingAlgorithm.values()) {
+            for (long seed = 1; seed <= 6; seed++) {
+                for (int spread : new int[]{0, 3, 10}) {
+                    for (int parallelism : new int[]{0, 3}) {
+                        String run = sorter + ", seed " + seed + ", ranks up to " + spread + ", parallelism " + parallelism;
+                        Timetable timetable = timetable(seed, spread, sorter, parallelism);
+                        List<String> all = render(timetable.getChoices());
+                        assertTrue(all.size() > 1, run);
+                        for (int k : new int[]{1, 7, 50, all.size() + 1}) {
+                            List<String> top = new ArrayList<String>();
+                            for (ScoredSchedule schedule : timetable.top(k)) {
+                                top.add(render(schedule.schedule.courses()));
+                            }
+                            assertEquals(all.subList(0, Math.min(k, all.size())), top, run + ", k " + k);
+                            List<String> rescored = new ArrayList<String>();
+                            for (ScoredSchedule schedule : timetable.rescore(k)) {
+                                rescored.add(render(schedule.schedule.courses()));
+                            }
+                            assertEquals(top, rescored, run + ", k " + k);
+                        }
+                        // changing a rank keeps the order of the ties, whichever way the options get sorted
+                        timetable.setRank(10000, spread + 5);
+                        timetable.makeChoices();
+                        all = render(timetable.getChoices());
+                        List<String> top = new ArrayList<String>();
+                        for (ScoredSchedule schedule : timetable.top(7)) {
+                            top.add(render(schedule.schedule.courses()));
+                        }
+                        assertEquals(all.subList(0, Math.min(7, all.size())), top, run + " after a new rank");
+                    }
+                }
+            }
+        }
+    }
+    @Test
+    public void iteratorKeepsTheOrderOfTheChoices() {
+        for (SortingAlgorithm sorter : SortingAlgorithm.values()) {
+            for (long seed = 1; seed <= 6; seed++) {
+                for (int spread : new int[]{0, 3, 10}) {
+                    String run = sorter + ", seed " + seed + ", ranks up to " + spread;
+                    Timetable timetable = timetable(seed, spread, sorter, 0);
+                    List<String> all = render(timetable.getChoices());
+                    List<String> iterated = new ArrayList<String>();
+                    for (Iterator<Set<Course>> it = timetable.iterator(); it.hasNext(); ) {
+                        iterated.add(render(it.next()));
+                    }
+                    // ties come out in canonical order too, however the frontier got to them
+                    assertEquals(all, iterated, run);
+                    List<String> streamed = new ArrayList<String>();
+                    timetable.stream().limit(7).forEach(choice -> streamed.add(render(choice)));
+                    List<String> top = new ArrayList<String>();
+                    for (ScoredSchedule schedule : timetable.top(7)) {
+                        top.add(render(schedule.schedule.courses()));
+                    }
+                    assertEquals(top, streamed, run);
+                }
+            }
+        }
+    }
+    @Test
+    public void maxMinBoundPrunes() {
+        Timetable timetable = new Timetable(Fixtures.catalog(Fixtures.random(2, 6, 4)));
+        timetable.setSortingAlgorithm(SortingAlgorithm.MaxMin);
+        timetable.makeChoices();
+        long[] every = visit(timetable, timetable.getChoices().size());
+        long[] best = visit(timetable, 5);
+        assertTrue(best[1] > 0, "pruned " + best[1]);
+        // sumRank / 0.1 pruned nothing here, the spread of the options has to cut the search well short
+        assertTrue(best[0] * 4 < every[0], "visited " + best[0] + " of " + every[0]);
+    }
+    // the nodes visited and the branches pruned by a search for the best k
+    private static long[] visit(Timetable timetable, int k) {
+        long nodes = Metrics.get().get(Metrics.Counter.COMBINATIONS);
+        long pruned = Metrics.get().get(Metrics.Counter.PRUNED_BRANCHES);
+        timetable.top(k);
+        return new long[]{Metrics.get().get(Metrics.Counter.COMBINATIONS) - nodes,
+                Metrics.get().get(Metrics.Counter.PRUNED_BRANCHES) - pruned};
+    }
+    // a catalog of 4 subjects with random ranks from 0 to spread, all the choices made
+    private static Timetable timetable(long seed, int spread, SortingAlgorithm sorter, int parallelism) {
+        List<Course> courses = Fixtures.random(seed, 4, 3);
+        Timetable timetable = new Timetable(Fixtures.catalog(courses));
+        Random random = new Random(seed);
+        for (Course course : courses) {
+            timetable.setRank(course.crn, random.nextInt(spread + 1));
+        }
+        timetable.setSortingAlgorithm(sorter);
+        timetable.setParallelism(parallelism);
+        timetable.makeChoices();
+        return timetable;
+    }
+    private static List<String> render(Collection<Set<Course>> choices) {
+        List<String> out = new ArrayList<String>();
+        for (Set<Course> choice : choices) {
+            out.add(render(choice));
+        }
+        return out;
+    }
+    private static String render(Set<Course> choice) {
+        Set<Integer> crns = new TreeSet<Integer>();
+        for (Course course : choice) {
+            crns.add(course.crn);
+        }
+        return crns.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package cskilian.courselists;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+// a course that can't be taken leaves no valid schedule at all, however the choices are made
+public class TimetableTest {
+    // the only tutorial of COMP 1405 meets during its lecture, MATH 1104 is fine on its own
+    private static List<Course> courses() {
+        return new ArrayList<Course>(Arrays.asList(
+                Fixtures.course(1, "COMP 1405", "A", "Lecture", 5, "Mon 835 955", "Wed 835 955"),
+                Fixtures.course(2, "COMP 1405", "A1", "Tutorial", 5, "Mon 900 1000"),
+                Fixtures.course(3, "MATH 1104", "A", "Lecture", 5, "Tue 835 955"),
+                Fixtures.course(4, "MATH 1104", "A1", "Tutorial", 5, "Fri 835 955")));
+    }
+    @Test
+    public void emptyCategoryHasNoChoices() {
+        CourseCatalog catalog = Fixtures.catalog(courses());
+        for (Category category : catalog.getRoot().getCategories()) {
+            List<Schedule> choices = Timetable.makeChoices(category);
+            if (category.type.equals("COMP 1405")) {
+                assertTrue(choices.isEmpty(), "" + choices.size());
+            } else {
+                assertEquals(1, choices.size());
+            }
+        }
+    }
+    @Test
+    public void emptyCategoryEmptiesEveryPath() {
+        for (int limit : new int[]{0, 10}) {
+            for (int parallelism : new int[]{0, 2}) {
+                Timetable timetable = new Timetable(Fixtures.catalog(courses()));
+                timetable.setLimit(limit);
+                timetable.setParallelism(parallelism);
+                timetable.makeChoices();
+                String path = "limit " + limit + ", parallelism " + parallelism;
+                assertTrue(timetable.getChoices().isEmpty(), path);
+                assertTrue(timetable.top(10).isEmpty(), path);
+                assertEquals(0, timetable.feasible().size(), path);
+            }
+        }
+    }
+    @Test
+    public void emptyCatalogHasNoChoices() {
+        Timetable timetable = new Timetable(Fixtures.parser());
+        timetable.makeChoices();
+        assertTrue(timetable.getChoices().isEmpty());
+        assertTrue(timetable.top(10).isEmpty());
+    }
+    @Test
+    public void removingTheConflictBringsChoicesBack() {
+        Timetable timetable = new Timetable(Fixtures.catalog(courses()));
+        timetable.makeChoices();
+        assertTrue(timetable.getChoices().isEmpty());
+        timetable.remove(2);
+        // COMP 1405 A has no tutorials left, so it's taken on its own
+        assertEquals(1, timetable.getChoices().size());
+        assertEquals(3, timetable.getChoices().iterator().next().size());
+    }
+    @Test
+    public void changesOnlySolveWhenTheChoicesAreAskedFor() {
+        Timetable timetable = new Timetable(Fixtures.parser());
+        timetable.setLimit(10);
+        long nodes = Metrics.get().get(Metrics.Counter.COMBINATIONS);
+        timetable.setCatalog(Fixtures.catalog(Fixtures.random(1, 4, 3)));
+        timetable.setSortingAlgorithm(SortingAlgorithm.Max);
+        timetable.setRank(10000, 10);
+        assertEquals(nodes, Metrics.get().get(Metrics.Counter.COMBINATIONS));
+        List<String> choices = new ArrayList<String>();
+        for (Set<Course> choice : timetable.getChoices()) {
+            choices.add(choice.toString());
+        }
+        assertTrue(Metrics.get().get(Metrics.Counter.COMBINATIONS) > nodes);
+        List<String> top = new ArrayList<String>();
+        for (ScoredSchedule schedule : timetable.top(10)) {
+            top.add(schedule.schedule.courses().toString());
+        }
+        assertEquals(top, choices);
+    }
+    @Test
+    public void feasibleFoundOnAnotherThreadIsKept() throws Exception {
+        Timetable timetable = new Timetable(Fixtures.catalog(Fixtures.random(2, 4, 3)));
+        Callable<Feasible> search = timetable.findFeasible();
+        Feasible found = ForkJoinPool.commonPool().submit(search).get();
+        assertFalse(timetable.isFeasibleKnown());
+        assertTrue(timetable.setFeasible(search, found));
+        assertTrue(timetable.isFeasibleKnown());
+        assertSame(found, timetable.feasible());
+        assertEquals(Fixtures.crns(timetable.top(20)), Fixtures.crns(timetable.rescore(20)));
+        // sets found for another catalog aren't kept
+        search = timetable.findFeasible();
+        found = search.call();
+        timetable.remove(10000);
+        assertFalse(timetable.setFeasible(search, found));
+        assertFalse(timetable.isFeasibleKnown());
+    }
+    @Test
+    public void handleHasWhatItSolvedOn() throws Exception {
+        Timetable timetable = new Timetable(Fixtures.catalog(courses()));
+        timetable.setCollapsing(true);
+        SolveHandle handle = timetable.start(10, 0, 0);
+        assertTrue(handle.join().isEmpty());
+        assertTrue(handle.isComplete());
+        // the pass that ruled out every schedule and the grouping come with the handle
+        assertFalse(handle.getPropagation().isFeasible());
+        assertTrue(handle.getEquivalence() != null);
+        timetable.remove(2);
+        handle = timetable.start(10, 0, 0);
+        assertEquals(1, handle.join().size());
+        assertEquals(Arrays.asList(1), crns(handle.getEquivalence().getAlternatives(Fixtures.course(1, "COMP 1405",
+                "A", "Lecture", 5))));
+    }
+    @Test
+    public void stoppedOptionsAreNotKept() {
+        CourseCatalog catalog = Fixtures.catalog(Fixtures.random(4, 3, 3));
+        Constraints constraints = Constraints.NONE.withEarliestStart(900);
+        assertEquals(null, catalog.options(null, constraints, () -> true));
+        assertEquals(3, catalog.options(null, constraints, () -> false).size());
+    }
+    @Test
+    public void sameRanksKeepTheFeasibleSets() {
+        Timetable timetable = new Timetable(Fixtures.catalog(Fixtures.random(5, 4, 3)));
+        timetable.setCollapsing(true);
+        for (Course course : timetable.getCatalog().getAll()) {
+            timetable.setRank(course.crn, 3);
+        }
+        Feasible feasible = timetable.feasible();
+        for (Course course : timetable.getCatalog().getAll()) {
+            timetable.setRank(course.crn, 3);
+        }
+        assertTrue(timetable.isFeasibleKnown());
+        assertSame(feasible, timetable.feasible());
+    }
+    private static List<Integer> crns(List<Course> courses) {
+        List<Integer> out = new ArrayList<Integer>();
+        for (Course course : courses) {
+            out.add(course.crn);
+        }
+        return out;
+    }
+}